@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+#
+# Latence des votes pendant une vague de connexions.
+#
+# Mesure la latence de POST /votes/{sondage} (médiane et 95e centile) sans charge, puis pendant que FLOOD clients
+# envoient des connexions en boucle (mauvais mot de passe : chaque tentative coûte un bcrypt complet). Avec le hachage
+# borné (sondages.security.password.threads), la latence des votes doit rester proche de celle sans charge ; les
+# connexions en excès sont refusées (métrique sondages.password.hashing.rejected).
+#
+# Prérequis : application lancée, un sondage ouvert et un compte pour voter.
+# Usage : BASE_URL=http://localhost:8081 SONDAGE=1 LOGIN=admin PASSWORD=... scripts/login-flood-benchmark.sh
+
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-http://localhost:8081}
+SONDAGE=${SONDAGE:-1}
+LOGIN=${LOGIN:-admin}
+PASSWORD=${PASSWORD:?Mot de passe du compte utilisé pour voter}
+FLOOD=${FLOOD:-64}
+VOTES=${VOTES:-200}
+
+COOKIES=$(mktemp)
+trap 'rm -f "$COOKIES"; kill $(jobs -p) 2> /dev/null || true' EXIT
+
+curl -s -o /dev/null -c "$COOKIES" -d "username=$LOGIN" -d "password=$PASSWORD" "$BASE_URL/login"
+
+# Votes sous des noms différents (un seul vote par nom et par sondage)
+vote_latencies() {
+    local run=$1
+    for i in $(seq "$VOTES"); do
+        curl -s -o /dev/null -b "$COOKIES" -w '%{time_total}\n' \
+             -d "user=bench-$run-$$-$i" -d "value=true" "$BASE_URL/votes/$SONDAGE"
+    done | sort -n | awk '{t[NR] = $1 * 1000} END {printf "médiane %.1f ms, p95 %.1f ms\n", t[int(NR * 0.5)], t[int(NR * 0.95)]}'
+}
+
+echo "Votes sans charge : $(vote_latencies calme)"
+
+for _ in $(seq "$FLOOD"); do
+    while true; do
+        curl -s -o /dev/null -d "username=$LOGIN" -d "password=mauvais" "$BASE_URL/login" || true
+    done &
+done
+sleep 2
+
+echo "Votes pendant $FLOOD connexions en boucle : $(vote_latencies vague)"
@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+#
+# Mesure du démarrage de l'application : temps jusqu'à la première réponse HTTP et mémoire résidente (RSS) du
+# processus à ce moment, en mode classique, avec Spring AOT, puis avec Spring AOT et l'archive AppCDS.
+#
+# Prérequis : mvn -Pfast-startup package (classes AOT, target/classpath.txt et target/sondages.jsa) et la BDD
+# configurée accessible (ou SPRING_DATASOURCE_URL, etc. dans l'environnement).
+#
+# Usage : scripts/startup-benchmark.sh [nombre d'essais par mode, 5 par défaut]
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+PORT=${PORT:-8081}
+URL="http://localhost:${PORT}/"
+CLASSPATH="target/classes:$(cat target/classpath.txt)"
+MAIN=fr.simplon.sondages.SondagesApplication
+
+declare -A MODES=(
+    [1-classique]=""
+    [2-aot]="-Dspring.aot.enabled=true"
+    [3-aot+cds]="-Dspring.aot.enabled=true -XX:SharedArchiveFile=target/sondages.jsa"
+)
+
+now_ms() { date +%s%3N; }
+
+measure() {
+    local options=$1
+    local start pid elapsed rss
+    start=$(now_ms)
+    # shellcheck disable=SC2086
+    java $options -cp "$CLASSPATH" "$MAIN" --server.port="$PORT" > target/startup-benchmark.log 2>&1 &
+    pid=$!
+    until curl -s -o /dev/null "$URL"; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "L'application s'est arrêtée, voir target/startup-benchmark.log" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    elapsed=$(($(now_ms) - start))
+    rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    echo "$elapsed $((rss / 1024))"
+}
+
+printf '%-12s %28s %14s\n' "Mode" "Première réponse (ms, médiane)" "RSS (Mo)"
+for mode in $(printf '%s\n' "${!MODES[@]}" | sort); do
+    times=()
+    rss=0
+    for _ in $(seq "$RUNS"); do
+        read -r elapsed rss < <(measure "${MODES[$mode]}")
+        times+=("$elapsed")
+    done
+    median=$(printf '%s\n' "${times[@]}" | sort -n | awk '{a[NR]=$1} END {print a[int((NR + 1) / 2)]}')
+    printf '%-12s %28s %14s\n' "${mode#*-}" "$median" "$rss"
+done
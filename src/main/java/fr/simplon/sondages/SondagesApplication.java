@@ -2,14 +2,27 @@ package fr.simplon.sondages;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SondagesApplication
 {
 
+    /**
+     * Propriété système qui arrête l'application dès qu'elle a démarré, pour enregistrer les classes chargées dans
+     * l'archive AppCDS (profil Maven {@code fast-startup}).
+     */
+    static final String TRAINING_RUN = "sondages.startup.training-run";
+
     public static void main(String[] args)
     {
-        SpringApplication.run(SondagesApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(SondagesApplication.class, args);
+        if (Boolean.getBoolean(TRAINING_RUN))
+        {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 
 }
@@ -1,18 +1,31 @@
 package fr.simplon.sondages;
 
+import fr.simplon.sondages.security.BoundedPasswordEncoder;
+import fr.simplon.sondages.security.CachingUserDetailsManager;
+import fr.simplon.sondages.security.TokenAuthenticationFilter;
+import fr.simplon.sondages.security.TokenService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.JdbcUserDetailsManager;
 import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
 
 
 @Configuration
@@ -20,13 +33,18 @@ import javax.sql.DataSource;
 public class SpringSecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, TokenService tokenService) throws Exception {
         return http
                 .csrf().disable() // Pour l'instant on désactive la protection CSRF
+                // Clients de l'API : jeton signé au lieu de la session (voir POST /api/token)
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
                 .authorizeHttpRequests()
                 .requestMatchers(HttpMethod.GET, "/votes/*").authenticated()
                 .requestMatchers(HttpMethod.POST, "/votes/*").authenticated()
+                .requestMatchers(HttpMethod.POST, "/api/sondages/*/ballots").authenticated()
                 .requestMatchers("/admin/**").hasRole("ADMIN")
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .requestMatchers("/users").hasRole("USER")
                 .requestMatchers(HttpMethod.PUT, "/**").permitAll()
                 .requestMatchers(HttpMethod.DELETE, "/**").authenticated()
@@ -44,13 +62,48 @@ public class SpringSecurityConfig {
     @Autowired
     private javax.sql.DataSource dataSource;
 
+    /**
+     * Authentification par nom et mot de passe, utilisée pour délivrer les jetons de l'API.
+     */
     @Bean
-    public UserDetailsManager users(DataSource dataSource) {
-        return new JdbcUserDetailsManager(dataSource);
+    public AuthenticationManager authenticationManager(AuthenticationConfiguration configuration) throws Exception {
+        return configuration.getAuthenticationManager();
     }
 
+    /**
+     * Utilisateurs lus en BDD, avec un cache pour que les vagues de connexions ne sollicitent pas la BDD.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    public UserDetailsManager users(
+            DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${sondages.security.users-cache.ttl:PT5M}") Duration ttl,
+            @Value("${sondages.security.users-cache.negative-ttl:PT10S}") Duration negativeTtl,
+            @Value("${sondages.security.users-cache.max-size:10000}") int maxSize) {
+        CachingUserDetailsManager users =
+                new CachingUserDetailsManager(new JdbcUserDetailsManager(dataSource), ttl, negativeTtl, maxSize);
+        users.bindTo(meterRegistry);
+        return users;
+    }
+
+    /**
+     * Mots de passe hachés avec bcrypt (coût configurable) sur un nombre limité de threads. Les hachages d'un coût
+     * inférieur sont recalculés à la connexion.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${sondages.security.password.bcrypt-strength:10}") int strength,
+            @Value("${sondages.security.password.threads:0}") int threads,
+            @Value("${sondages.security.password.queue-size:64}") int queueSize,
+            @Value("${sondages.security.password.timeout:PT5S}") Duration timeout) {
+        // Seul bcrypt est remplacé : les autres identifiants ({noop}, {pbkdf2}…) restent vérifiés par l'encodeur par
+        // défaut de Spring Security, puis recalculés en bcrypt à la connexion
+        DelegatingPasswordEncoder bcrypt = new DelegatingPasswordEncoder("bcrypt",
+                Map.of("bcrypt", new BCryptPasswordEncoder(strength)));
+        bcrypt.setDefaultPasswordEncoderForMatches(PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(bcrypt, threads, queueSize, timeout);
+        encoder.bindTo(meterRegistry);
+        return encoder;
     }
 }
\ No newline at end of file
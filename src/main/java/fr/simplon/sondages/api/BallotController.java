@@ -0,0 +1,147 @@
+package fr.simplon.sondages.api;
+
+import fr.simplon.sondages.dao.BallotRepository;
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dto.BallotRequest;
+import fr.simplon.sondages.dto.PollResults;
+import fr.simplon.sondages.entity.Ballot;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.outbox.OutboxWriter;
+import fr.simplon.sondages.service.BallotService;
+import fr.simplon.sondages.service.VoterDirectory;
+import fr.simplon.sondages.tally.BallotCodec;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Votes et résultats des sondages à choix et à classement (voir {@link Sondage.Kind}). Les sondages oui/non se votent
+ * avec {@code POST /votes/{id}}.
+ * <p>
+ * Le votant est l'utilisateur authentifié : un seul bulletin par utilisateur et par sondage.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api")
+public class BallotController
+{
+    private SondageRepository mRepository;
+    private BallotRepository  mBallotRepository;
+    private VoterDirectory    mVoterDirectory;
+    private BallotService     mBallotService;
+    private OutboxWriter      mOutbox;
+
+    @Autowired
+    public BallotController(
+            SondageRepository pRepository,
+            BallotRepository pBallotRepository,
+            VoterDirectory pVoterDirectory,
+            BallotService pBallotService,
+            OutboxWriter pOutbox)
+    {
+        mRepository = pRepository;
+        mBallotRepository = pBallotRepository;
+        mVoterDirectory = pVoterDirectory;
+        mBallotService = pBallotService;
+        mOutbox = pOutbox;
+    }
+
+    /**
+     * Enregistre le bulletin de l'utilisateur authentifié.
+     *
+     * @param id        L'identifiant du sondage.
+     * @param request   Les options choisies.
+     * @param principal L'utilisateur authentifié.
+     * @return 201 avec l'adresse des résultats.
+     */
+    @PostMapping(path = "/sondages/{id}/ballots")
+    @Transactional
+    @ApiResponse(responseCode = "201", description = "Le bulletin a été enregistré.")
+    @ApiResponse(responseCode = "400", description = "Choix invalides, sondage oui/non ou sondage fermé.")
+    @ApiResponse(responseCode = "404", description = "Le sondage n'existe pas.")
+    @ApiResponse(responseCode = "409", description = "L'utilisateur a déjà voté pour ce sondage.")
+    public ResponseEntity<?> cast(
+            @PathVariable Long id, @Valid @RequestBody BallotRequest request, Principal principal)
+    {
+        Sondage sondage = mRepository.findById(id).orElseThrow(() -> new RecordNotFoundException(id));
+        if (!sondage.getClosedAt().isAfter(LocalDateTime.now()))
+        {
+            return ResponseEntity.badRequest().body(List.of("Le sondage est fermé"));
+        }
+        byte[] choices;
+        try
+        {
+            choices = BallotCodec.encode(sondage.getKind(), sondage.getOptions().size(), request.choices());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest().body(List.of(e.getMessage()));
+        }
+
+        Integer voterId = mVoterDirectory.idOf(principal.getName());
+        if (mBallotRepository.existsBySondageIdAndVoterId(id, voterId))
+        {
+            return alreadyVoted(principal.getName());
+        }
+        Ballot ballot = mBallotRepository.save(new Ballot(id, voterId, choices, LocalDateTime.now()));
+        mOutbox.ballotCast(ballot, request.choices());
+        mBallotService.cast(id);
+
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()//
+                .path("/api/sondages/{id}/results")//
+                .buildAndExpand(id)//
+                .toUri();
+        return ResponseEntity.created(location).build();
+    }
+
+    /**
+     * @param id L'identifiant d'un sondage à choix ou à classement.
+     * @return Les voix de chaque option ({@link fr.simplon.sondages.dto.PollResults}), et le détail du vote alternatif
+     * pour un sondage à classement.
+     */
+    @GetMapping(path = "/sondages/{id}/results")
+    @ApiResponse(responseCode = "200", description = "Les résultats ont été calculés.")
+    @ApiResponse(responseCode = "400", description = "Le sondage est un sondage oui/non.")
+    @ApiResponse(responseCode = "404", description = "Le sondage n'existe pas.")
+    public ResponseEntity<?> results(@PathVariable Long id)
+    {
+        // Sans transaction ici : BallotService lit le sondage et ses bulletins sur une seule connexion au primaire
+        PollResults results;
+        try
+        {
+            results = mBallotService.results(id).orElseThrow(() -> new RecordNotFoundException(id));
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest()//
+                    .body(List.of("Le décompte d'un sondage oui/non est renvoyé par GET /api/sondages/" + id));
+        }
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * Deux bulletins simultanés du même votant : le second est refusé par l'index unique.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<?> duplicateBallot(Principal principal)
+    {
+        return alreadyVoted(principal == null ? "" : principal.getName());
+    }
+
+    private static ResponseEntity<?> alreadyVoted(String user)
+    {
+        return ResponseEntity.status(HttpStatus.CONFLICT)//
+                .body(List.of(String.format("L'utilisateur %s a déjà voté pour ce sondage.", user)));
+    }
+}
@@ -0,0 +1,34 @@
+package fr.simplon.sondages.api;
+
+import fr.simplon.sondages.dto.HotSondage;
+import fr.simplon.sondages.service.HotSondages;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Sondages très demandés gardés en mémoire par cette instance (réservé aux administrateurs, voir
+ * {@link HotSondages}).
+ */
+@RestController
+public class HotSondagesController
+{
+    private HotSondages mHotSondages;
+
+    @Autowired
+    public HotSondagesController(HotSondages pHotSondages)
+    {
+        mHotSondages = pHotSondages;
+    }
+
+    /**
+     * @return Les sondages chauds, du plus demandé au moins demandé, avec les lectures gardées en mémoire.
+     */
+    @GetMapping(path = "/admin/hot-sondages")
+    public List<HotSondage> hotSondages()
+    {
+        return mHotSondages.hotSet();
+    }
+}
@@ -0,0 +1,88 @@
+package fr.simplon.sondages.api;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import fr.simplon.sondages.dto.SondageDto;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration de la sérialisation des réponses de l'API : filtre des champs demandés ({@code ?fields=}) et encodage
+ * binaire CBOR pour les clients qui envoient {@code Accept: application/cbor}.
+ */
+@Configuration
+public class JsonConfiguration implements WebMvcConfigurer
+{
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> mBuilderProvider;
+
+    public JsonConfiguration(ObjectProvider<Jackson2ObjectMapperBuilder> pBuilderProvider)
+    {
+        mBuilderProvider = pBuilderProvider;
+    }
+
+    /**
+     * Sans paramètre {@code fields}, le filtre des DTO sérialise tous les champs.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsFilterCustomizer()
+    {
+        return builder -> builder.filters(defaultFilters());
+    }
+
+    /**
+     * Remplace le convertisseur CBOR par défaut de Spring par un convertisseur qui partage la configuration Jackson de
+     * Spring Boot (dates ISO, modules, filtres). JSON reste le format par défaut.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters)
+    {
+        converters.removeIf(MappingJackson2CborHttpMessageConverter.class::isInstance);
+        MappingJackson2CborHttpMessageConverter cbor = new MappingJackson2CborHttpMessageConverter(
+                mBuilderProvider.getObject().factory(new CBORFactory()).build());
+        converters.add(cbor);
+    }
+
+    /**
+     * Enveloppe une réponse pour ne sérialiser que les champs demandés par le client.
+     *
+     * @param body   Le ou les DTO à renvoyer.
+     * @param fields Liste de champs séparés par des virgules (null ou vide pour tous les champs).
+     * @return La réponse prête à être sérialisée par Jackson.
+     */
+    public static MappingJacksonValue selectFields(Object body, String fields)
+    {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        if (fields == null || fields.isBlank())
+        {
+            value.setFilters(defaultFilters());
+        }
+        else
+        {
+            Set<String> selected = Arrays.stream(fields.split(","))//
+                    .map(String::trim)//
+                    .filter(f -> !f.isEmpty())//
+                    .collect(Collectors.toSet());
+            value.setFilters(new SimpleFilterProvider().addFilter(SondageDto.FIELDS_FILTER,
+                                                                  SimpleBeanPropertyFilter.filterOutAllExcept(selected)));
+        }
+        return value;
+    }
+
+    private static SimpleFilterProvider defaultFilters()
+    {
+        return new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll());
+    }
+}
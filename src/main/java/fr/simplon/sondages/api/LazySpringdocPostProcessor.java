@@ -0,0 +1,52 @@
+package fr.simplon.sondages.api;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rend paresseux les beans de springdoc : la documentation OpenAPI et Swagger UI ne sont construites qu'à la première
+ * requête sur {@code /api-docs} ou {@code /swagger-ui.html}, pas au démarrage de l'application.
+ * <p>
+ * Désactivable avec {@code sondages.startup.lazy-springdoc=false}. Avec Spring AOT, le choix est figé au build.
+ * </p>
+ */
+@Component
+class LazySpringdocPostProcessor implements BeanFactoryPostProcessor, EnvironmentAware
+{
+    private static final String SPRINGDOC_PACKAGE = "org.springdoc.";
+
+    private Environment mEnvironment;
+
+    @Override
+    public void setEnvironment(Environment pEnvironment)
+    {
+        mEnvironment = pEnvironment;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException
+    {
+        if (!mEnvironment.getProperty("sondages.startup.lazy-springdoc", Boolean.class, true))
+        {
+            return;
+        }
+        for (String name : beanFactory.getBeanDefinitionNames())
+        {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (isSpringdoc(definition.getBeanClassName()) || isSpringdoc(definition.getFactoryBeanName()))
+            {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+
+    private static boolean isSpringdoc(String name)
+    {
+        return name != null && name.startsWith(SPRINGDOC_PACKAGE);
+    }
+}
@@ -1,53 +1,148 @@
 package fr.simplon.sondages.api;
 
 import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dto.DeletionJobStatus;
+import fr.simplon.sondages.dto.SondageDto;
+import fr.simplon.sondages.dto.SondagePatch;
+import fr.simplon.sondages.dto.VoteTally;
 import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.outbox.OutboxWriter;
+import fr.simplon.sondages.service.HomePageSnapshots;
+import fr.simplon.sondages.service.HotSondages;
+import fr.simplon.sondages.service.SondageCounter;
+import fr.simplon.sondages.service.SondageDeletionService;
+import fr.simplon.sondages.service.SondageSearchService;
+import fr.simplon.sondages.service.VoteTallyService;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Contrôleur CRUD pour les sondages.
+ * <p>
+ * Les sondages sont renvoyés sous forme de {@link SondageDto} (jamais les entités JPA), en JSON par défaut ou en CBOR
+ * si le client envoie {@code Accept: application/cbor}. Les lectures acceptent un paramètre optionnel
+ * {@code fields=id,question,closedAt} pour ne recevoir que certains champs.
+ * </p>
+ * <p>
+ * Chaque sondage a une version, renvoyée dans l'en-tête {@code ETag} par {@code GET /sondages/{id}}. Les
+ * modifications ({@code PUT} et {@code PATCH}) acceptent un en-tête {@code If-Match} avec cet ETag et échouent en 412
+ * si le sondage a été modifié entre-temps.
+ * </p>
+ * <p>
+ * Les lectures sont en transaction {@code readOnly} : elles sont envoyées au réplica s'il est configuré.
+ * </p>
  */
 @RestController
 @RequestMapping("/api")
 public class SondageController
 {
-    private SondageRepository mRepository;
+    /** Nombre maximum de résultats par page de recherche. */
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+
+    private SondageRepository    mRepository;
+    private SondageSearchService mSearchService;
+    private SondageCounter       mCounter;
+    private VoteTallyService       mTallyService;
+    private SondageDeletionService mDeletionService;
+    private HotSondages            mHotSondages;
+    private HomePageSnapshots      mSnapshots;
+    private OutboxWriter           mOutbox;
 
     @Autowired
-    public SondageController(SondageRepository pRepository)
+    public SondageController(
+            SondageRepository pRepository,
+            SondageSearchService pSearchService,
+            SondageCounter pCounter,
+            VoteTallyService pTallyService,
+            SondageDeletionService pDeletionService,
+            HotSondages pHotSondages,
+            HomePageSnapshots pSnapshots,
+            OutboxWriter pOutbox)
     {
         mRepository = pRepository;
+        mSearchService = pSearchService;
+        mCounter = pCounter;
+        mTallyService = pTallyService;
+        mDeletionService = pDeletionService;
+        mHotSondages = pHotSondages;
+        mSnapshots = pSnapshots;
+        mOutbox = pOutbox;
     }
 
     @GetMapping(path = "/sondages")
+    @Transactional(readOnly = true)
     @ApiResponse(responseCode = "200", description = "Les ressources ont été trouvées et renvoyées avec succès.")
-    public List<Sondage> sondages()
+    public MappingJacksonValue sondages(@RequestParam(required = false) String fields)
     {
         List<Sondage> all = mRepository.findAll();
-        return all;
+        return JsonConfiguration.selectFields(toDtos(all), fields);
+    }
+
+    /**
+     * Recherche plein texte dans la description et la question des sondages.
+     *
+     * @param q    Les mots recherchés (accents et majuscules ignorés).
+     * @param page Numéro de la page de résultats (commence à 0).
+     * @param size Nombre de résultats par page (borné à {@link #MAX_SEARCH_PAGE_SIZE}).
+     * @param fields Les champs à renvoyer (optionnel, tous par défaut).
+     * @return Les sondages trouvés, du plus pertinent au moins pertinent. L'en-tête {@code X-Total-Count} contient le
+     * nombre total de résultats.
+     */
+    @GetMapping(path = "/sondages/search")
+    @Transactional(readOnly = true)
+    @ApiResponse(responseCode = "200", description = "La recherche a été effectuée avec succès.")
+    public ResponseEntity<MappingJacksonValue> searchSondages(
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "0") Integer page,
+            @RequestParam(required = false, defaultValue = "20") Integer size,
+            @RequestParam(required = false) String fields)
+    {
+        int pageSize = Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+        SondageSearchService.Result result = mSearchService.search(q, Math.max(0, page), pageSize);
+        return ResponseEntity.ok()//
+                .header("X-Total-Count", String.valueOf(result.totalHits()))//
+                .body(JsonConfiguration.selectFields(toDtos(result.sondages()), fields));
     }
 
     @GetMapping(path = "/sondages/{id}")
     @ApiResponse(responseCode = "200", description = "La ressource a été trouvée et renvoyée avec succès.")
     @ApiResponse(responseCode = "404", description = "La ressource n'existe pas.")
-    public ResponseEntity<Sondage> getSondageById(@PathVariable Long id)
+    public ResponseEntity<MappingJacksonValue> getSondageById(
+            @PathVariable Long id, @RequestParam(required = false) String fields)
     {
-        return ResponseEntity.of(mRepository.findById(id));
+        // Lecture partagée entre les requêtes simultanées, gardée en mémoire si le sondage est très demandé
+        Optional<SondageDto> sondage = mHotSondages.load("api-sondage", id, () -> mRepository.findById(id)//
+                .map(s -> SondageDto.of(s, mTallyService.tally(s.getId()))));
+        return sondage//
+                .map(dto -> ResponseEntity.ok()//
+                        .eTag(eTag(dto.version()))//
+                        .body(JsonConfiguration.selectFields(dto, fields)))//
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PostMapping(path = "/sondages")
+    @Transactional
     @ApiResponse(responseCode = "201", description = "La ressource a été créée avec succès.")
     @ApiResponse(responseCode = "400", description = "En cas d'erreur de validation.")
     public ResponseEntity<?> createSondage(
@@ -66,22 +161,32 @@ public class SondageController
         // pour tenter de le modifier.
         sondage.setId(null);
         sondage = mRepository.save(sondage);
+        mOutbox.sondageCreated(sondage);
+        Sondage created = sondage;
+        afterCommit(() -> {
+            mSearchService.indexSondage(created);
+            mCounter.increment();
+            mSnapshots.invalidate();
+        });
 
         // Construction de la réponse
         URI location = ServletUriComponentsBuilder.fromRequest(request)//
                 .path("/{id}")//
                 .buildAndExpand(sondage.getId())//
                 .toUri();
-        return ResponseEntity.created(location).body(sondage);
+        return ResponseEntity.created(location).body(SondageDto.of(sondage, VoteTally.EMPTY));
     }
 
     @PutMapping(path = "/sondages/{id}")
+    @Transactional
     @ApiResponse(responseCode = "200", description = "La ressource a été mise à jour avec succès.")
     @ApiResponse(responseCode = "404", description = "La ressource à mettre à jour n'a pas été trouvée.")
+    @ApiResponse(responseCode = "412", description = "La ressource a été modifiée depuis la lecture indiquée par If-Match.")
     public ResponseEntity<?> updateSondage(
             @PathVariable Long id,
             @RequestBody @Valid Sondage sondage,
             BindingResult validation,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             HttpServletRequest request)
     {
         if (validation.hasErrors())
@@ -93,13 +198,32 @@ public class SondageController
             return ResponseEntity.badRequest().body(errors);
         }
 
-        Sondage updated = mRepository.findById(id).map(s -> {
-            s.setDescription(sondage.getDescription());
-            s.setQuestion(sondage.getQuestion());
-            s.setClosedAt(sondage.getClosedAt());
-            s.setCreatedBy(sondage.getCreatedBy());
-            return mRepository.save(s);
-        }).orElseGet(() -> null);
+        Long expectedVersion = parseIfMatch(ifMatch);
+        Optional<Sondage> current = mRepository.findById(id);
+        if (current.isPresent() && expectedVersion != null && !expectedVersion.equals(current.get().getVersion()))
+        {
+            return preconditionFailed(current.get().getVersion());
+        }
+
+        Sondage updated;
+        try
+        {
+            updated = current.map(s -> {
+                s.setDescription(sondage.getDescription());
+                s.setQuestion(sondage.getQuestion());
+                s.setClosedAt(sondage.getClosedAt());
+                s.setCreatedBy(sondage.getCreatedBy());
+                // Écrit tout de suite pour connaître la nouvelle version (ETag et événement)
+                return mRepository.saveAndFlush(s);
+            }).orElseGet(() -> null);
+        }
+        catch (ObjectOptimisticLockingFailureException e)
+        {
+            // Modifié par une autre requête entre la lecture et l'écriture. La nouvelle version n'est pas visible
+            // dans cette transaction (lecture répétable) : pas d'ETag, le client relit le sondage. L'exception annule
+            // la transaction.
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Sondage modifié entre-temps", e);
+        }
 
         if (updated == null)
         {
@@ -107,19 +231,191 @@ public class SondageController
                     .location(ServletUriComponentsBuilder.fromRequest(request).build().toUri())//
                     .build();
         }
-        return ResponseEntity.ok(updated);
+        mOutbox.sondageUpdated(updated);
+        mHotSondages.changed(id);
+        afterCommit(() -> {
+            mSearchService.indexSondage(updated);
+            mSnapshots.invalidate();
+        });
+        return ResponseEntity.ok()//
+                .eTag(eTag(updated.getVersion()))//
+                .body(SondageDto.of(updated, mTallyService.tally(updated.getId())));
+    }
+
+    /**
+     * Modification partielle d'un sondage : seuls les champs présents dans le corps de la requête sont modifiés, avec
+     * une seule requête {@code UPDATE} conditionnelle (le sondage n'est pas relu avant).
+     *
+     * @param id      L'identifiant du sondage.
+     * @param patch   Les champs à modifier.
+     * @param ifMatch L'ETag de la version modifiée (optionnel, {@code *} ou absent pour modifier sans condition).
+     * @return 204 avec le nouvel ETag si la version attendue était connue.
+     */
+    @PatchMapping(path = "/sondages/{id}")
+    @Transactional
+    @ApiResponse(responseCode = "204", description = "La ressource a été modifiée avec succès.")
+    @ApiResponse(responseCode = "400", description = "En cas d'erreur de validation ou si aucun champ n'est à modifier.")
+    @ApiResponse(responseCode = "404", description = "La ressource à modifier n'a pas été trouvée.")
+    @ApiResponse(responseCode = "412", description = "La ressource a été modifiée depuis la lecture indiquée par If-Match.")
+    public ResponseEntity<?> patchSondage(
+            @PathVariable Long id,
+            @RequestBody @Valid SondagePatch patch,
+            BindingResult validation,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+    {
+        if (validation.hasErrors())
+        {
+            List<String> errors = validation.getAllErrors().stream()//
+                    .map(DefaultMessageSourceResolvable::getDefaultMessage)//
+                    .collect(Collectors.toList());
+
+            return ResponseEntity.badRequest().body(errors);
+        }
+        Long expectedVersion = parseIfMatch(ifMatch);
+        if (patch.isEmpty())
+        {
+            return ResponseEntity.badRequest().body(List.of("Aucun champ à modifier"));
+        }
+
+        if (mRepository.patch(id, expectedVersion, patch) == 0)
+        {
+            // Requête supplémentaire uniquement en cas d'échec, pour distinguer 404 et 412
+            return mRepository.findVersionById(id)//
+                    .map(this::preconditionFailed)//
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        }
+        mOutbox.sondagePatched(id, patch, expectedVersion == null ? null : expectedVersion + 1);
+        mHotSondages.changed(id);
+        afterCommit(() -> {
+            if (patch.changesText())
+            {
+                mSearchService.reindexSondage(id);
+            }
+            mSnapshots.invalidate();
+        });
+        ResponseEntity.HeadersBuilder<?> response = ResponseEntity.noContent();
+        if (expectedVersion != null)
+        {
+            response.eTag(eTag(expectedVersion + 1));
+        }
+        return response.build();
     }
 
     @DeleteMapping(path = "/sondages/{id}")
     @ApiResponse(responseCode = "200", description = "La ressource n'existe pas, requête ignorée.")
+    @ApiResponse(responseCode = "202", description = "La suppression a été lancée en tâche de fond (sondage avec beaucoup de votes).")
     @ApiResponse(responseCode = "204", description = "La ressource a été supprimée avec succès.")
     public ResponseEntity deleteSondage(@PathVariable Long id)
     {
         if (mRepository.existsById(id))
         {
-            mRepository.deleteById(id);
+            if (mDeletionService.requiresAsyncDeletion(id))
+            {
+                DeletionJobStatus job = mDeletionService.deleteAsync(id);
+                URI location = ServletUriComponentsBuilder.fromCurrentContextPath()//
+                        .path("/api/sondages/deletions/{jobId}")//
+                        .buildAndExpand(job.id())//
+                        .toUri();
+                return ResponseEntity.accepted().location(location).body(job);
+            }
+            mDeletionService.delete(id);
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.ok().build();
     }
+
+    @GetMapping(path = "/sondages/deletions/{jobId}")
+    @ApiResponse(responseCode = "200", description = "État de la tâche de suppression.")
+    @ApiResponse(responseCode = "404", description = "La tâche n'existe pas ou est terminée depuis plus d'une heure.")
+    public ResponseEntity<DeletionJobStatus> getDeletionJob(@PathVariable String jobId)
+    {
+        return ResponseEntity.of(mDeletionService.getJob(jobId));
+    }
+
+    /**
+     * @param version La version d'un sondage.
+     * @return L'ETag correspondant (fort, entre guillemets).
+     */
+    static String eTag(Long version)
+    {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Lit la version attendue dans un en-tête {@code If-Match} (seul le premier ETag est pris en compte).
+     *
+     * @param ifMatch La valeur de l'en-tête.
+     * @return La version attendue, null si l'en-tête est absent ou vaut {@code *}.
+     * @throws ResponseStatusException (400) si l'en-tête ne contient pas un ETag produit par ce contrôleur.
+     */
+    static Long parseIfMatch(String ifMatch)
+    {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*"))
+        {
+            return null;
+        }
+        String tag = ifMatch.split(",")[0].trim();
+        if (tag.startsWith("W/"))
+        {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\""))
+        {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try
+        {
+            return Long.parseLong(tag);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "En-tête If-Match invalide", e);
+        }
+    }
+
+    private ResponseEntity<?> preconditionFailed(Long currentVersion)
+    {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)//
+                .eTag(eTag(currentVersion))//
+                .build();
+    }
+
+    /**
+     * Exécute une action après la validation de la transaction en cours (tout de suite s'il n'y en a pas) : l'index de
+     * recherche, le compteur et la page d'accueil ne doivent pas voir un sondage dont l'écriture est annulée.
+     *
+     * @param action L'action à exécuter.
+     */
+    private static void afterCommit(Runnable action)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    action.run();
+                }
+            });
+        }
+        else
+        {
+            action.run();
+        }
+    }
+
+    /**
+     * Convertit des sondages en DTO, avec le décompte de leurs votes calculé en une seule requête d'agrégation.
+     *
+     * @param sondages Les sondages.
+     * @return Les DTO dans le même ordre.
+     */
+    private List<SondageDto> toDtos(List<Sondage> sondages)
+    {
+        Map<Long, VoteTally> tallies = mTallyService.tallies(sondages.stream().map(Sondage::getId).toList());
+        return sondages.stream()//
+                .map(s -> SondageDto.of(s, tallies.getOrDefault(s.getId(), VoteTally.EMPTY)))//
+                .collect(Collectors.toList());
+    }
 }
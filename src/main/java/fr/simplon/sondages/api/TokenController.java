@@ -0,0 +1,64 @@
+package fr.simplon.sondages.api;
+
+import fr.simplon.sondages.dto.TokenRequest;
+import fr.simplon.sondages.security.PasswordHashingBusyException;
+import fr.simplon.sondages.security.TokenService;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Délivrance des jetons d'authentification pour les clients de l'API (sans session).
+ */
+@RestController
+@RequestMapping("/api")
+public class TokenController
+{
+    private AuthenticationManager mAuthenticationManager;
+    private TokenService          mTokenService;
+
+    @Autowired
+    public TokenController(AuthenticationManager pAuthenticationManager, TokenService pTokenService)
+    {
+        mAuthenticationManager = pAuthenticationManager;
+        mTokenService = pTokenService;
+    }
+
+    /**
+     * Vérifie le nom et le mot de passe d'un utilisateur et lui délivre un jeton, à envoyer ensuite dans l'en-tête
+     * {@code Authorization: Bearer ...}.
+     *
+     * @param request Les identifiants.
+     * @return Le jeton et sa date d'expiration.
+     */
+    @PostMapping(path = "/token")
+    @ApiResponse(responseCode = "200", description = "Le jeton a été délivré.")
+    @ApiResponse(responseCode = "401", description = "Identifiants incorrects.")
+    @ApiResponse(responseCode = "503", description = "Trop de connexions en cours, réessayer plus tard.")
+    public ResponseEntity<TokenService.Token> createToken(@Valid @RequestBody TokenRequest request)
+    {
+        try
+        {
+            var authentication = mAuthenticationManager.authenticate(
+                    UsernamePasswordAuthenticationToken.unauthenticated(request.username(), request.password()));
+            return ResponseEntity.ok(mTokenService.issue(authentication));
+        }
+        catch (PasswordHashingBusyException e)
+        {
+            throw e;
+        }
+        catch (AuthenticationException e)
+        {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+}
@@ -2,13 +2,22 @@ package fr.simplon.sondages.api;
 
 import fr.simplon.sondages.dao.SondageRepository;
 import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.dto.VoteTally;
 import fr.simplon.sondages.entity.Sondage;
 import fr.simplon.sondages.entity.Vote;
+import fr.simplon.sondages.entity.Voter;
+import fr.simplon.sondages.outbox.OutboxWriter;
+import fr.simplon.sondages.service.HomePageSnapshots;
+import fr.simplon.sondages.service.HotSondages;
+import fr.simplon.sondages.service.VoteTallyService;
+import fr.simplon.sondages.service.VoterDirectory;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Example;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,11 +26,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 /**
  * Contrôleur des votes.
@@ -31,12 +41,36 @@ public class VoteController
 {
     private SondageRepository mRepository;
     private VoteRepository    mVoteRepository;
+    private VoterDirectory    mVoterDirectory;
+    private HotSondages       mHotSondages;
+    private HomePageSnapshots mSnapshots;
+    private OutboxWriter      mOutbox;
+    private VoteTallyService  mTallyService;
+
+    /**
+     * Sondage et ses votes, partagés entre les requêtes simultanées.
+     */
+    private record VotesView(Sondage sondage, List<Vote> votes)
+    {
+    }
 
     @Autowired
-    public VoteController(SondageRepository pRepository, VoteRepository pVoteRepository)
+    public VoteController(
+            SondageRepository pRepository,
+            VoteRepository pVoteRepository,
+            VoterDirectory pVoterDirectory,
+            HotSondages pHotSondages,
+            HomePageSnapshots pSnapshots,
+            OutboxWriter pOutbox,
+            VoteTallyService pTallyService)
     {
         mRepository = pRepository;
         mVoteRepository = pVoteRepository;
+        mVoterDirectory = pVoterDirectory;
+        mHotSondages = pHotSondages;
+        mSnapshots = pSnapshots;
+        mOutbox = pOutbox;
+        mTallyService = pTallyService;
     }
 
     /**
@@ -49,16 +83,13 @@ public class VoteController
     @GetMapping(path = "/votes/{sondageId}")
     public String votesBySondage(@PathVariable Long sondageId, Model model)
     {
-        Optional<Sondage> sondage = mRepository.findById(sondageId);
-        if (sondage.isPresent())
-        {
-            model.addAttribute("sondage", sondage.get());
-            model.addAttribute("votes", sondage.get().getVotes());
-        }
-        else
-        {
-            throw new RecordNotFoundException(sondageId);
-        }
+        // Lecture partagée entre les requêtes simultanées, gardée en mémoire si le sondage est très demandé
+        VotesView view = mHotSondages.load("votes", sondageId, () -> mRepository.findById(sondageId)//
+                .map(s -> new VotesView(s, mVoteRepository.findBySondageIdWithVoter(sondageId)))//
+                .orElseThrow(() -> new RecordNotFoundException(sondageId)));
+        model.addAttribute("sondage", view.sondage());
+        model.addAttribute("votes", view.votes());
+        model.addAttribute("tallies", Map.of(sondageId, tally(view.votes())));
         return "votes";
     }
 
@@ -72,45 +103,59 @@ public class VoteController
      * @return la vue Thymeleaf d'où vient l'utilisateur.
      */
     @PostMapping(path = "/votes/{sondageId}")
+    @Transactional
     public String vote(
             @PathVariable Long sondageId, @Valid @ModelAttribute Vote vote, BindingResult validation,
             Model model)
     {
-        Sondage sondage = mRepository.getReferenceById(sondageId);
-        if (sondage != null)
+        Sondage sondage = mRepository.findById(sondageId).orElseThrow(() -> new RecordNotFoundException(sondageId));
+        if (sondage.getKind() != Sondage.Kind.YES_NO)
         {
-            model.addAttribute("sondage", sondage);
-            model.addAttribute("vote", vote);
-            model.addAttribute("votes", sondage.getVotes());
+            // Les sondages à choix et à classement se votent avec POST /api/sondages/{id}/ballots
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ce sondage n'est pas un sondage oui/non");
+        }
+        model.addAttribute("sondage", sondage);
+        model.addAttribute("vote", vote);
 
-            if (!validation.hasErrors())
+        if (!validation.hasErrors())
+        {
+            Voter voter = mVoterDirectory.referenceOf(vote.getUser());
+            long existingVotes = mVoteRepository.countBySondageIdAndVoterId(sondageId, voter.getId());
+            if (existingVotes == 0)
             {
-                List<Vote> existingVotes = mVoteRepository.findBySondageAndUser(sondage, vote.getUser());
-                if (existingVotes.isEmpty())
-                {
-                    vote.setSondage(sondage);
-                    vote.setVotedAt(LocalDateTime.now());
-                    mVoteRepository.save(vote);
-                    model.addAttribute("votes", sondage.getVotes());
-                }
-                else
-                {
-                    String message = String.format("L'utilisateur %s a déjà voté %d fois pour ce sondage.",
-                                                   vote.getUser(),
-                                                   existingVotes.size());
-                    model.addAttribute("alreadyVoted", message);
-                }
+                vote.setSondage(sondage);
+                vote.setVoter(voter);
+                vote.setVotedAt(LocalDateTime.now());
+                mVoteRepository.save(vote);
+                mOutbox.voteCreated(vote);
+                mTallyService.voted(sondageId);
+                mHotSondages.changed(sondageId);
+                mSnapshots.voted();
             }
             else
             {
-                model.addAttribute("errors", validation);
+                String message = String.format("L'utilisateur %s a déjà voté %d fois pour ce sondage.",
+                                               vote.getUser(),
+                                               existingVotes);
+                model.addAttribute("alreadyVoted", message);
             }
         }
         else
         {
-            throw new RecordNotFoundException(sondageId);
+            model.addAttribute("errors", validation);
         }
 
+        // Votes relus après l'enregistrement pour afficher le nouveau vote
+        List<Vote> votes = mVoteRepository.findBySondageIdWithVoter(sondageId);
+        model.addAttribute("votes", votes);
+        model.addAttribute("tallies", Map.of(sondageId, tally(votes)));
+
         return "votes";
     }
+
+    private static VoteTally tally(List<Vote> votes)
+    {
+        long countTrue = votes.stream().filter(Vote::getValue).count();
+        return new VoteTally(countTrue, votes.size() - countTrue);
+    }
 }
@@ -0,0 +1,64 @@
+package fr.simplon.sondages.api;
+
+import fr.simplon.sondages.dto.RecountJobStatus;
+import fr.simplon.sondages.service.VoteRecountService;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+
+/**
+ * Recomptage des votes et vérification des décomptes servis (réservé aux administrateurs, voir
+ * {@link VoteRecountService}).
+ */
+@RestController
+public class VoteRecountController
+{
+    private VoteRecountService mRecountService;
+
+    @Autowired
+    public VoteRecountController(VoteRecountService pRecountService)
+    {
+        mRecountService = pRecountService;
+    }
+
+    /**
+     * Lance un recomptage des votes en tâche de fond.
+     *
+     * @param fix Vrai pour corriger les décomptes servis différents, faux (par défaut) pour seulement les signaler.
+     * @return 202 avec l'adresse de l'état du recomptage.
+     */
+    @PostMapping(path = "/admin/recounts")
+    @ApiResponse(responseCode = "202", description = "Le recomptage a été lancé.")
+    @ApiResponse(responseCode = "409", description = "Un recomptage est déjà en cours.")
+    public ResponseEntity<RecountJobStatus> startRecount(
+            @RequestParam(required = false, defaultValue = "false") boolean fix)
+    {
+        return mRecountService.start(fix)//
+                .map(job -> {
+                    URI location = ServletUriComponentsBuilder.fromCurrentContextPath()//
+                            .path("/admin/recounts/{jobId}")//
+                            .buildAndExpand(job.id())//
+                            .toUri();
+                    return ResponseEntity.accepted().location(location).body(job);
+                })//
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)//
+                        .body(mRecountService.current().orElse(null)));
+    }
+
+    @GetMapping(path = "/admin/recounts/{jobId}")
+    @ApiResponse(responseCode = "200", description = "État du recomptage.")
+    @ApiResponse(responseCode = "404", description = "Le recomptage n'existe pas ou est terminé depuis plus d'une heure.")
+    public ResponseEntity<RecountJobStatus> getRecount(@PathVariable String jobId)
+    {
+        return ResponseEntity.of(mRecountService.getJob(jobId));
+    }
+}
@@ -0,0 +1,50 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.entity.Ballot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Accès aux bulletins des sondages à choix et à classement. Le dépouillement ne passe pas par ce dépôt : les bulletins
+ * sont relus par lots sans créer d'entités, voir {@link fr.simplon.sondages.service.BallotService}.
+ */
+public interface BallotRepository extends JpaRepository<Ballot, Long>
+{
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @param voterId   L'identifiant d'un votant.
+     * @return Vrai si le votant a déjà déposé un bulletin pour ce sondage (lu dans l'index unique).
+     */
+    boolean existsBySondageIdAndVoterId(Long sondageId, Integer voterId);
+
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @return Le nombre de bulletins du sondage.
+     */
+    long countBySondageId(Long sondageId);
+
+    /**
+     * Supprime un lot de bulletins d'un sondage dans une transaction courte.
+     *
+     * @param sondageId L'identifiant du sondage.
+     * @param limit     Le nombre maximum de bulletins à supprimer.
+     * @return Le nombre de bulletins supprimés (0 quand le sondage n'a plus de bulletin).
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM ballot WHERE id_sondage = :sondageId LIMIT :limit", nativeQuery = true)
+    int deleteChunkBySondageId(@Param("sondageId") Long sondageId, @Param("limit") int limit);
+
+    /**
+     * Supprime tous les bulletins restants d'un sondage (à appeler dans une transaction).
+     *
+     * @param sondageId L'identifiant du sondage.
+     * @return Le nombre de bulletins supprimés.
+     */
+    @Modifying
+    @Query("DELETE FROM Ballot b WHERE b.sondageId = :sondageId")
+    int deleteAllBySondageId(@Param("sondageId") Long sondageId);
+}
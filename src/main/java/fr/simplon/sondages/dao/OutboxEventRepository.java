@@ -0,0 +1,40 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long>
+{
+    /**
+     * @param afterId  Identifiant du dernier événement déjà lu.
+     * @param pageable Nombre maximum d'événements (la page doit être 0).
+     * @return Les événements suivants, dans l'ordre des identifiants.
+     */
+    List<OutboxEvent> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    /**
+     * @return Identifiant du dernier événement enregistré (0 s'il n'y en a pas).
+     */
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM OutboxEvent e")
+    long findMaxId();
+
+    /**
+     * Supprime les événements publiés à toutes les destinations et plus anciens que la durée de conservation.
+     *
+     * @param maxId  Identifiant du dernier événement publié par toutes les destinations.
+     * @param before Date limite de création.
+     * @return Le nombre d'événements supprimés.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id <= :maxId AND e.createdAt < :before")
+    int deletePublished(@Param("maxId") Long maxId, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,58 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.entity.OutboxOffset;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+public interface OutboxOffsetRepository extends JpaRepository<OutboxOffset, String>
+{
+    /**
+     * Lit la position d'une destination en la verrouillant jusqu'à la fin de la transaction : une seule instance
+     * publie vers une destination à la fois.
+     *
+     * @param sink Le nom de la destination.
+     * @return Sa position, vide si elle n'a jamais été enregistrée.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM OutboxOffset o WHERE o.sink = :sink")
+    Optional<OutboxOffset> findForUpdate(@Param("sink") String sink);
+
+    /**
+     * Crée la position d'une destination (au début du flux) si elle n'existe pas encore.
+     *
+     * @param sink Le nom de la destination.
+     * @return 1 si la position a été créée, 0 si elle existait déjà.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO outbox_offset (sink, last_id, updated_at) VALUES (:sink, 0, CURRENT_TIMESTAMP(6))",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("sink") String sink);
+
+    /**
+     * Avance la position d'une destination après la publication d'un lot. La position ne recule jamais, même si une
+     * autre instance a publié plus loin entre-temps.
+     *
+     * @param sink   Le nom de la destination.
+     * @param lastId Identifiant du dernier événement publié.
+     * @param now    Date de la publication.
+     * @return 1 si la position a avancé, 0 sinon.
+     */
+    @Modifying
+    @Query("UPDATE OutboxOffset o SET o.lastId = :lastId, o.updatedAt = :now WHERE o.sink = :sink AND o.lastId < :lastId")
+    int advance(@Param("sink") String sink, @Param("lastId") long lastId, @Param("now") LocalDateTime now);
+
+    /**
+     * @param sinks Les noms des destinations configurées (une destination retirée ne bloque pas la purge).
+     * @return Identifiant du dernier événement publié par toutes ces destinations (0 s'il n'y en a pas).
+     */
+    @Query("SELECT COALESCE(MIN(o.lastId), 0) FROM OutboxOffset o WHERE o.sink IN :sinks")
+    Long findMinLastId(@Param("sinks") Collection<String> sinks);
+}
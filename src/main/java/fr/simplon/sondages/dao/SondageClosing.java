@@ -0,0 +1,13 @@
+package fr.simplon.sondages.dao;
+
+import java.time.LocalDateTime;
+
+/**
+ * Date de fermeture d'un sondage.
+ *
+ * @param sondageId Identifiant du sondage.
+ * @param closedAt  Date de fermeture.
+ */
+public record SondageClosing(Long sondageId, LocalDateTime closedAt)
+{
+}
@@ -1,18 +1,60 @@
 package fr.simplon.sondages.dao;
 
 import fr.simplon.sondages.entity.Sondage;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface SondageRepository extends JpaRepository<Sondage, Long>
+public interface SondageRepository extends JpaRepository<Sondage, Long>, SondageRepositoryCustom
 {
-    @Query("SELECT s FROM Sondage s ORDER BY CASE WHEN s.closedAt > :now THEN 1 ELSE 2 END, s.closedAt ASC")
-    Page<Sondage> findAllOrderByClosedAt(Pageable pPageable, @Param("now") LocalDateTime now);
+    /**
+     * Lecture des sondages par lots, dans l'ordre des identifiants (pagination par clé, sans OFFSET).
+     *
+     * @param after     Identifiant du dernier sondage du lot précédent (0 pour le premier lot).
+     * @param pPageable Taille du lot.
+     * @return Les sondages d'identifiant strictement supérieur à {@code after}.
+     */
+    @Query("SELECT s FROM Sondage s WHERE s.id > :after ORDER BY s.id ASC")
+    List<Sondage> findBatchAfter(@Param("after") Long after, Pageable pPageable);
+
+    /**
+     * @param id L'identifiant d'un sondage.
+     * @return La version courante du sondage, vide s'il n'existe pas.
+     */
+    @Query("SELECT s.version FROM Sondage s WHERE s.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * @param ids Des identifiants de sondages.
+     * @return La date de fermeture de chaque sondage existant.
+     */
+    @Query("SELECT new fr.simplon.sondages.dao.SondageClosing(s.id, s.closedAt) FROM Sondage s WHERE s.id IN :ids")
+    List<SondageClosing> findClosingByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Suppression d'un sondage sans le charger (ses votes doivent avoir été supprimés avant).
+     *
+     * @param id L'identifiant du sondage.
+     * @return Le nombre de sondages supprimés (0 ou 1).
+     */
+    @Modifying
+    @Query("DELETE FROM Sondage s WHERE s.id = :id")
+    int deleteInBulkById(@Param("id") Long id);
+
+    /**
+     * Suppression des options d'un sondage, que {@link #deleteInBulkById} ne supprime pas.
+     *
+     * @param id L'identifiant du sondage.
+     * @return Le nombre d'options supprimées.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM sondage_option WHERE id_sondage = :id", nativeQuery = true)
+    int deleteOptionsById(@Param("id") Long id);
 
 }
@@ -0,0 +1,40 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.dto.SondagePatch;
+import fr.simplon.sondages.entity.Sondage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+
+/**
+ * Requêtes sur les sondages qui ne s'expriment pas avec une simple méthode de {@link SondageRepository}.
+ */
+public interface SondageRepositoryCustom
+{
+    /**
+     * Retourne une page de sondages avec d'abord les sondages ouverts, puis les sondages fermés, chaque groupe étant
+     * classé par date de fermeture croissante puis par identifiant.
+     * <p>
+     * Le tri est entièrement fait par la BDD avec deux requêtes sur des intervalles de {@code closed_at} qui suivent
+     * l'ordre de l'index {@code (closed_at, id)} : pas de tri en mémoire (filesort) ni de requête de comptage (sauf
+     * pour les pages situées entièrement après le dernier sondage ouvert).
+     * </p>
+     *
+     * @param pPageable Numéro et taille de la page (le tri éventuel du {@link Pageable} est ignoré).
+     * @param now       Instant de référence qui sépare les sondages ouverts des sondages fermés.
+     * @return Les sondages de la page, avec l'information de l'existence d'une page suivante.
+     */
+    Slice<Sondage> findSliceOpenFirst(Pageable pPageable, LocalDateTime now);
+
+    /**
+     * Modifie les champs non nuls d'un sondage avec une seule requête {@code UPDATE}, sans lire le sondage avant, et
+     * incrémente sa version.
+     *
+     * @param id              L'identifiant du sondage.
+     * @param expectedVersion La version attendue du sondage, ou null pour modifier quelle que soit la version.
+     * @param patch           Les champs à modifier (au moins un champ non nul).
+     * @return Le nombre de lignes modifiées : 0 si le sondage n'existe pas ou n'a pas la version attendue.
+     */
+    int patch(Long id, Long expectedVersion, SondagePatch patch);
+}
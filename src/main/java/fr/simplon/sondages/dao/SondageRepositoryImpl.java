@@ -0,0 +1,120 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.dto.SondagePatch;
+import fr.simplon.sondages.entity.Sondage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implémentation de {@link SondageRepositoryCustom}, rattachée à {@link SondageRepository} par Spring Data.
+ */
+class SondageRepositoryImpl implements SondageRepositoryCustom
+{
+    private static final String OPEN_SONDAGES =
+            "SELECT s FROM Sondage s WHERE s.closedAt > :now ORDER BY s.closedAt ASC, s.id ASC";
+
+    private static final String CLOSED_SONDAGES =
+            "SELECT s FROM Sondage s WHERE s.closedAt <= :now ORDER BY s.closedAt ASC, s.id ASC";
+
+    private static final String COUNT_OPEN_SONDAGES =
+            "SELECT COUNT(s) FROM Sondage s WHERE s.closedAt > :now";
+
+    @PersistenceContext
+    private EntityManager mEntityManager;
+
+    @Override
+    public Slice<Sondage> findSliceOpenFirst(Pageable pPageable, LocalDateTime now)
+    {
+        int size = pPageable.getPageSize();
+        long offset = pPageable.getOffset();
+        if (offset > Integer.MAX_VALUE)
+        {
+            // Page au-delà de ce que JPA sait adresser : il n'y a de toute façon pas autant de sondages
+            return new SliceImpl<>(List.of(), pPageable, false);
+        }
+
+        // Une ligne de plus que la taille de page pour savoir s'il existe une page suivante
+        List<Sondage> content = new ArrayList<>(find(OPEN_SONDAGES, now, offset, size + 1));
+        if (content.size() <= size)
+        {
+            long closedOffset;
+            if (!content.isEmpty() || offset == 0L)
+            {
+                // La page contient la fin des sondages ouverts : les sondages fermés commencent au début
+                closedOffset = 0L;
+            }
+            else
+            {
+                // La page est située entièrement après les sondages ouverts
+                long openCount = mEntityManager.createQuery(COUNT_OPEN_SONDAGES, Long.class)//
+                        .setParameter("now", now)//
+                        .getSingleResult();
+                closedOffset = offset - openCount;
+            }
+            content.addAll(find(CLOSED_SONDAGES, now, closedOffset, size + 1 - content.size()));
+        }
+
+        boolean hasNext = content.size() > size;
+        if (hasNext)
+        {
+            content = content.subList(0, size);
+        }
+        return new SliceImpl<>(content, pPageable, hasNext);
+    }
+
+    @Override
+    @Transactional
+    public int patch(Long id, Long expectedVersion, SondagePatch patch)
+    {
+        CriteriaBuilder cb = mEntityManager.getCriteriaBuilder();
+        CriteriaUpdate<Sondage> update = cb.createCriteriaUpdate(Sondage.class);
+        Root<Sondage> root = update.from(Sondage.class);
+        if (patch.description() != null)
+        {
+            update.set(root.<String>get("description"), patch.description());
+        }
+        if (patch.question() != null)
+        {
+            update.set(root.<String>get("question"), patch.question());
+        }
+        if (patch.closedAt() != null)
+        {
+            update.set(root.<LocalDateTime>get("closedAt"), patch.closedAt().truncatedTo(ChronoUnit.SECONDS));
+        }
+        if (patch.createdBy() != null)
+        {
+            update.set(root.<String>get("createdBy"), patch.createdBy());
+        }
+        update.set(root.<Long>get("version"), cb.sum(root.<Long>get("version"), 1L));
+
+        Predicate where = cb.equal(root.get("id"), id);
+        if (expectedVersion != null)
+        {
+            where = cb.and(where, cb.equal(root.get("version"), expectedVersion));
+        }
+        update.where(where);
+        return mEntityManager.createQuery(update).executeUpdate();
+    }
+
+    private List<Sondage> find(String pQuery, LocalDateTime now, long pOffset, int pLimit)
+    {
+        return mEntityManager.createQuery(pQuery, Sondage.class)//
+                .setParameter("now", now)//
+                .setFirstResult(Math.toIntExact(pOffset))//
+                .setMaxResults(pLimit)//
+                .getResultList();
+    }
+}
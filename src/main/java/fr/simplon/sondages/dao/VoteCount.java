@@ -0,0 +1,12 @@
+package fr.simplon.sondages.dao;
+
+/**
+ * Résultat d'agrégation : nombre de votes d'une valeur donnée pour un sondage.
+ *
+ * @param sondageId Identifiant du sondage.
+ * @param value     Valeur des votes comptés.
+ * @param count     Nombre de votes.
+ */
+public record VoteCount(Long sondageId, Boolean value, Long count)
+{
+}
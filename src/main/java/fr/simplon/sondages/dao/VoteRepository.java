@@ -1,14 +1,74 @@
 package fr.simplon.sondages.dao;
 
-import fr.simplon.sondages.entity.Sondage;
 import fr.simplon.sondages.entity.Vote;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * Accès aux votes.
+ * <p>
+ * La table des votes est partitionnée par identifiant de sondage : chaque requête doit filtrer sur
+ * {@code v.sondage.id} (égalité ou {@code IN}) pour que MySQL ne lise que les partitions concernées.
+ * </p>
+ */
 public interface VoteRepository extends JpaRepository<Vote, Long>
 {
-    @Query("SELECT v FROM Vote v WHERE v.sondage = :sondage AND v.user = :user")
-    List<Vote> findBySondageAndUser(Sondage sondage, String user);
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @param voterId   L'identifiant d'un votant.
+     * @return Le nombre de votes du votant pour ce sondage (lu dans l'index {@code idx_vote_sondage_voter}).
+     */
+    @Query("SELECT COUNT(v) FROM Vote v WHERE v.sondage.id = :sondageId AND v.voter.id = :voterId")
+    long countBySondageIdAndVoterId(@Param("sondageId") Long sondageId, @Param("voterId") Integer voterId);
+
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @return Les votes du sondage avec leur votant, en une seule requête.
+     */
+    @Query("SELECT v FROM Vote v JOIN FETCH v.voter WHERE v.sondage.id = :sondageId ORDER BY v.id")
+    List<Vote> findBySondageIdWithVoter(@Param("sondageId") Long sondageId);
+
+    /**
+     * Décompte des votes par sondage et par valeur, calculé par la BDD.
+     *
+     * @param sondageIds Les identifiants des sondages.
+     * @return Une ligne par couple (sondage, valeur) ayant au moins un vote.
+     */
+    @Query("SELECT new fr.simplon.sondages.dao.VoteCount(v.sondage.id, v.value, COUNT(v)) FROM Vote v "
+            + "WHERE v.sondage.id IN :sondageIds GROUP BY v.sondage.id, v.value")
+    List<VoteCount> countBySondageIds(@Param("sondageIds") Collection<Long> sondageIds);
+
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @return Le nombre de votes du sondage.
+     */
+    long countBySondageId(Long sondageId);
+
+    /**
+     * Supprime un lot de votes d'un sondage dans une transaction courte, pour ne pas bloquer la table longtemps.
+     *
+     * @param sondageId L'identifiant du sondage.
+     * @param limit     Le nombre maximum de votes à supprimer.
+     * @return Le nombre de votes supprimés (0 quand le sondage n'a plus de vote).
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM vote WHERE id_sondage = :sondageId LIMIT :limit", nativeQuery = true)
+    int deleteChunkBySondageId(@Param("sondageId") Long sondageId, @Param("limit") int limit);
+
+    /**
+     * Supprime tous les votes restants d'un sondage (à appeler dans une transaction).
+     *
+     * @param sondageId L'identifiant du sondage.
+     * @return Le nombre de votes supprimés.
+     */
+    @Modifying
+    @Query("DELETE FROM Vote v WHERE v.sondage.id = :sondageId")
+    int deleteAllBySondageId(@Param("sondageId") Long sondageId);
 }
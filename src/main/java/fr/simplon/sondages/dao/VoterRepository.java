@@ -0,0 +1,43 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.entity.Voter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface VoterRepository extends JpaRepository<Voter, Integer>
+{
+    /**
+     * @param name Le nom d'un votant.
+     * @return L'identifiant du votant, vide s'il n'a jamais voté.
+     */
+    @Query("SELECT v.id FROM Voter v WHERE v.name = :name")
+    Optional<Integer> findIdByName(@Param("name") String name);
+
+    /**
+     * Relit l'identifiant d'un votant par une lecture verrouillante, qui voit la dernière version validée et non
+     * l'instantané de la transaction en cours (REPEATABLE READ) : après {@link #insertIfAbsent}, le votant créé au même
+     * moment par une autre transaction est trouvé.
+     *
+     * @param name Le nom d'un votant.
+     * @return L'identifiant du votant, vide s'il n'existe pas.
+     */
+    @Query(value = "SELECT id FROM voter WHERE name = :name FOR UPDATE", nativeQuery = true)
+    Optional<Integer> findIdByNameForUpdate(@Param("name") String name);
+
+    /**
+     * Crée un votant s'il n'existe pas encore. L'index unique sur le nom évite les doublons quand deux requêtes créent
+     * le même votant en même temps.
+     *
+     * @param name Le nom du votant.
+     * @return 1 si le votant a été créé, 0 s'il existait déjà.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO voter (name) VALUES (:name)", nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name);
+}
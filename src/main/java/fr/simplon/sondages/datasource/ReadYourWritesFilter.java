@@ -0,0 +1,97 @@
+package fr.simplon.sondages.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Lecture de ses propres écritures malgré le retard du réplica.
+ * <p>
+ * Une requête d'écriture ({@code POST}, {@code PUT}, {@code PATCH}, {@code DELETE}) dépose un cookie qui fait lire
+ * toutes les requêtes du même navigateur sur le primaire pendant la durée configurée : l'utilisateur voit son vote
+ * tout de suite, même si le réplica ne l'a pas encore reçu. Les autres utilisateurs lisent sur le réplica.
+ * </p>
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter
+{
+    /** Nom du cookie, qui contient l'instant (en ms) jusqu'auquel lire sur le primaire. */
+    public static final String COOKIE_NAME = "sondages-primary-until";
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private final Duration mDuration;
+
+    /**
+     * @param pDuration Durée pendant laquelle un navigateur lit sur le primaire après une écriture (supérieure au
+     *                  retard habituel du réplica).
+     */
+    public ReadYourWritesFilter(Duration pDuration)
+    {
+        mDuration = pDuration;
+    }
+
+    /**
+     * @return Vrai si la requête courante doit lire sur le primaire.
+     */
+    public static boolean isPrimaryRequired()
+    {
+        return Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        long now = System.currentTimeMillis();
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        if (write)
+        {
+            Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(now + mDuration.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1L, mDuration.toSeconds()));
+            response.addCookie(cookie);
+        }
+
+        PRIMARY_REQUIRED.set(write || primaryUntil(request) > now);
+        try
+        {
+            chain.doFilter(request, response);
+        }
+        finally
+        {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+
+    private static long primaryUntil(HttpServletRequest request)
+    {
+        if (request.getCookies() != null)
+        {
+            for (Cookie cookie : request.getCookies())
+            {
+                if (COOKIE_NAME.equals(cookie.getName()))
+                {
+                    try
+                    {
+                        return Long.parseLong(cookie.getValue());
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return 0L;
+                    }
+                }
+            }
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,79 @@
+package fr.simplon.sondages.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Lectures sur un réplica MySQL, activées quand {@code sondages.datasource.replica.url} est renseignée.
+ * <p>
+ * Le primaire est configuré comme d'habitude ({@code spring.datasource.*}, {@code spring.datasource.hikari.*}), le
+ * réplica avec {@code sondages.datasource.replica.*} (identifiants du primaire par défaut, pool avec
+ * {@code sondages.datasource.replica.hikari.*}). Les transactions {@code @Transactional(readOnly = true)} vont au
+ * réplica, sauf pour les navigateurs qui viennent d'écrire (voir {@link ReadYourWritesFilter}).
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "sondages.datasource.replica.url")
+public class ReplicaDataSourceConfig
+{
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties)
+    {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("sondages.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            DataSourceProperties properties,
+            @Value("${sondages.datasource.replica.url}") String url,
+            @Value("${sondages.datasource.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${sondages.datasource.replica.password:${spring.datasource.password:}}") String password)
+    {
+        HikariDataSource dataSource = DataSourceBuilder.create(properties.getClassLoader())//
+                .type(HikariDataSource.class)//
+                .driverClassName(properties.determineDriverClassName())//
+                .url(url)//
+                .username(username)//
+                .password(password)//
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * Source de données utilisée par JPA, Spring Data et Spring Security.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primary, @Qualifier("replicaDataSource") DataSource replica)
+    {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica));
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${sondages.datasource.replica.read-your-writes:PT5S}") Duration duration)
+    {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(duration));
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+}
@@ -0,0 +1,47 @@
+package fr.simplon.sondages.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Source de données qui envoie les transactions {@code readOnly} au réplica et tout le reste au primaire.
+ * <p>
+ * Doit être utilisée derrière un {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} : la
+ * connexion n'est alors choisie qu'à la première requête SQL, quand le caractère lecture seule de la transaction est
+ * connu.
+ * </p>
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource
+{
+    /**
+     * Cible d'une connexion.
+     */
+    public enum Target
+    {
+        PRIMARY, REPLICA
+    }
+
+    public ReplicaRoutingDataSource(DataSource pPrimary, DataSource pReplica)
+    {
+        setTargetDataSources(Map.<Object, Object>of(Target.PRIMARY, pPrimary, Target.REPLICA, pReplica));
+        setDefaultTargetDataSource(pPrimary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * @return La cible de la connexion pour la transaction courante.
+     */
+    @Override
+    protected Target determineCurrentLookupKey()
+    {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !ReadYourWritesFilter.isPrimaryRequired())
+        {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+}
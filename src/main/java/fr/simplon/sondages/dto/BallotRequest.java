@@ -0,0 +1,12 @@
+package fr.simplon.sondages.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+/**
+ * Bulletin envoyé par un votant.
+ *
+ * @param choices Les rangs des options choisies (dans l'ordre de préférence pour un sondage à classement).
+ */
+public record BallotRequest(@NotEmpty int[] choices)
+{
+}
@@ -0,0 +1,30 @@
+package fr.simplon.sondages.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * État d'une suppression asynchrone de sondage.
+ *
+ * @param id           Identifiant de la tâche de suppression.
+ * @param sondageId    Identifiant du sondage supprimé.
+ * @param state        État de la tâche.
+ * @param deletedVotes Nombre de votes déjà supprimés.
+ * @param startedAt    Date de prise en compte de la demande.
+ * @param finishedAt   Date de fin de la tâche (null si elle n'est pas terminée).
+ */
+public record DeletionJobStatus(
+        String id,
+        Long sondageId,
+        State state,
+        long deletedVotes,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt)
+{
+    /**
+     * États possibles d'une tâche de suppression.
+     */
+    public enum State
+    {
+        PENDING, RUNNING, DONE, FAILED
+    }
+}
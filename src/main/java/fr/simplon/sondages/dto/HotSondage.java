@@ -0,0 +1,16 @@
+package fr.simplon.sondages.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Sondage très demandé gardé en mémoire.
+ *
+ * @param sondageId Identifiant du sondage.
+ * @param frequency Fréquence d'accès récente estimée (0 à 15).
+ * @param pinned    Lectures dont le résultat est en mémoire.
+ * @param closedAt  Date de fermeture du sondage (null si elle n'a pas encore été lue).
+ */
+public record HotSondage(Long sondageId, int frequency, List<String> pinned, LocalDateTime closedAt)
+{
+}
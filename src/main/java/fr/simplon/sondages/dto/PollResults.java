@@ -0,0 +1,36 @@
+package fr.simplon.sondages.dto;
+
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.tally.InstantRunoff;
+
+import java.util.List;
+
+/**
+ * Résultats d'un sondage à choix ou à classement.
+ *
+ * @param sondageId Identifiant du sondage.
+ * @param kind      Type du sondage.
+ * @param ballots   Nombre de bulletins.
+ * @param options   Voix de chaque option (premières préférences pour un sondage à classement).
+ * @param winner    Option gagnante du vote alternatif (sondage à classement uniquement, null sinon ou sans bulletin).
+ * @param rounds    Tours du vote alternatif (sondage à classement uniquement, null sinon).
+ */
+public record PollResults(
+        Long sondageId,
+        Sondage.Kind kind,
+        long ballots,
+        List<OptionResult> options,
+        Integer winner,
+        List<InstantRunoff.Round> rounds)
+{
+    /**
+     * Voix d'une option.
+     *
+     * @param index Rang de l'option, utilisé dans les bulletins.
+     * @param label Libellé de l'option.
+     * @param count Nombre de voix.
+     */
+    public record OptionResult(int index, String label, long count)
+    {
+    }
+}
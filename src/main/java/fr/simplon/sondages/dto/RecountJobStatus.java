@@ -0,0 +1,48 @@
+package fr.simplon.sondages.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * État d'un recomptage des votes.
+ *
+ * @param id              Identifiant de la tâche.
+ * @param state           État de la tâche.
+ * @param fix             Vrai si les décomptes servis faux sont corrigés.
+ * @param scannedVotes    Nombre de votes déjà lus.
+ * @param sondages        Nombre de sondages recomptés (0 tant que la lecture n'est pas terminée).
+ * @param differenceCount Nombre de sondages dont le décompte servi est différent du recomptage.
+ * @param differences     Détail des différences (les premières seulement).
+ * @param startedAt       Date de prise en compte de la demande.
+ * @param finishedAt      Date de fin de la tâche (null si elle n'est pas terminée).
+ */
+public record RecountJobStatus(
+        String id,
+        State state,
+        boolean fix,
+        long scannedVotes,
+        long sondages,
+        long differenceCount,
+        List<Difference> differences,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt)
+{
+    /**
+     * États possibles d'un recomptage.
+     */
+    public enum State
+    {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * Sondage dont le décompte servi est différent du recomptage.
+     *
+     * @param sondageId  Identifiant du sondage.
+     * @param recounted  Décompte recalculé à partir des votes.
+     * @param served     Décompte servi par l'application.
+     */
+    public record Difference(Long sondageId, VoteTally recounted, VoteTally served)
+    {
+    }
+}
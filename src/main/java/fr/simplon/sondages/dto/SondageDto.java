@@ -0,0 +1,58 @@
+package fr.simplon.sondages.dto;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import fr.simplon.sondages.entity.Sondage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Représentation d'un sondage renvoyée par l'API REST, avec le décompte de ses votes.
+ * <p>
+ * Les champs sérialisés peuvent être restreints par le client avec le paramètre {@code fields}, voir
+ * {@link #FIELDS_FILTER}.
+ * </p>
+ *
+ * @param id          Identifiant du sondage.
+ * @param description Description du sondage.
+ * @param question    Question posée.
+ * @param createdAt   Date de création.
+ * @param closedAt    Date de fermeture des votes.
+ * @param createdBy   Auteur du sondage.
+ * @param kind        Type du sondage.
+ * @param options     Options d'un sondage à choix ou à classement (vide pour un sondage oui/non).
+ * @param countTrue   Nombre de votes "pour" (sondage oui/non).
+ * @param countFalse  Nombre de votes "contre" (sondage oui/non).
+ * @param version     Version du sondage (même valeur que l'ETag).
+ */
+@JsonFilter(SondageDto.FIELDS_FILTER)
+public record SondageDto(
+        Long id,
+        String description,
+        String question,
+        LocalDateTime createdAt,
+        LocalDateTime closedAt,
+        String createdBy,
+        Sondage.Kind kind,
+        List<String> options,
+        long countTrue,
+        long countFalse,
+        Long version)
+{
+    /** Identifiant du filtre Jackson utilisé pour ne sérialiser que les champs demandés. */
+    public static final String FIELDS_FILTER = "sondageFields";
+
+    /**
+     * Construit le DTO d'un sondage.
+     *
+     * @param sondage Le sondage.
+     * @param tally   Le décompte des votes du sondage.
+     * @return Le DTO.
+     */
+    public static SondageDto of(Sondage sondage, VoteTally tally)
+    {
+        return new SondageDto(sondage.getId(), sondage.getDescription(), sondage.getQuestion(),
+                              sondage.getCreatedAt(), sondage.getClosedAt(), sondage.getCreatedBy(),
+                              sondage.getKind(), List.copyOf(sondage.getOptions()), tally.countTrue(), tally.countFalse(), sondage.getVersion());
+    }
+}
@@ -0,0 +1,38 @@
+package fr.simplon.sondages.dto;
+
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+
+/**
+ * Modification partielle d'un sondage : seuls les champs non nuls sont modifiés.
+ *
+ * @param description Nouvelle description.
+ * @param question    Nouvelle question.
+ * @param closedAt    Nouvelle date de fermeture.
+ * @param createdBy   Nouvel auteur (non vide).
+ */
+public record SondagePatch(
+        @Size(min = 3, max = 120) String description,
+        @Size(min = 3, max = 120) String question,
+        @Future LocalDateTime closedAt,
+        @Pattern(regexp = "(?s).*\\S.*", message = "ne doit pas être vide") String createdBy)
+{
+    /**
+     * @return Vrai si aucun champ n'est à modifier.
+     */
+    public boolean isEmpty()
+    {
+        return description == null && question == null && closedAt == null && createdBy == null;
+    }
+
+    /**
+     * @return Vrai si un champ indexé par la recherche plein texte est modifié.
+     */
+    public boolean changesText()
+    {
+        return description != null || question != null;
+    }
+}
@@ -0,0 +1,13 @@
+package fr.simplon.sondages.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Demande de jeton d'authentification.
+ *
+ * @param username Le nom de l'utilisateur.
+ * @param password Son mot de passe.
+ */
+public record TokenRequest(@NotBlank String username, @NotBlank String password)
+{
+}
@@ -0,0 +1,23 @@
+package fr.simplon.sondages.dto;
+
+/**
+ * Décompte des votes d'un sondage.
+ *
+ * @param countTrue  Nombre de votes "pour".
+ * @param countFalse Nombre de votes "contre".
+ */
+public record VoteTally(long countTrue, long countFalse)
+{
+    /** Décompte d'un sondage sans vote. */
+    public static final VoteTally EMPTY = new VoteTally(0L, 0L);
+
+    /**
+     * @param value La valeur du vote à ajouter.
+     * @param count Le nombre de votes à ajouter.
+     * @return Un nouveau décompte incluant les votes ajoutés.
+     */
+    public VoteTally plus(boolean value, long count)
+    {
+        return value ? new VoteTally(countTrue + count, countFalse) : new VoteTally(countTrue, countFalse + count);
+    }
+}
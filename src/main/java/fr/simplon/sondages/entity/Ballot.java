@@ -0,0 +1,73 @@
+package fr.simplon.sondages.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bulletin d'un votant pour un sondage à choix ou à classement (voir {@link Sondage.Kind}).
+ * <p>
+ * Les options choisies sont stockées sous forme compacte, voir {@link fr.simplon.sondages.tally.BallotCodec}. Le
+ * sondage et le votant ne sont référencés que par leur identifiant : les bulletins ne sont jamais chargés avec leur
+ * sondage, ils sont relus par lots par {@link fr.simplon.sondages.service.BallotService} pour le dépouillement.
+ * </p>
+ */
+@Entity
+@Table(name = "ballot",
+       uniqueConstraints = @UniqueConstraint(name = "uk_ballot_sondage_voter", columnNames = {"id_sondage", "id_voter"}),
+       indexes = @Index(name = "idx_ballot_sondage_id", columnList = "id_sondage, id"))
+public class Ballot
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "id_sondage", nullable = false, updatable = false)
+    private Long sondageId;
+
+    @Column(name = "id_voter", nullable = false, updatable = false)
+    private Integer voterId;
+
+    @Column(nullable = false, updatable = false, length = 64)
+    private byte[] choices;
+
+    @Column(name = "voted_at", nullable = false, updatable = false)
+    private LocalDateTime votedAt;
+
+    public Ballot(Long pSondageId, Integer pVoterId, byte[] pChoices, LocalDateTime pVotedAt)
+    {
+        sondageId = pSondageId;
+        voterId = pVoterId;
+        choices = pChoices;
+        votedAt = pVotedAt;
+    }
+
+    public Ballot()
+    {
+    }
+
+    public Long getId()
+    {
+        return id;
+    }
+
+    public Long getSondageId()
+    {
+        return sondageId;
+    }
+
+    public Integer getVoterId()
+    {
+        return voterId;
+    }
+
+    public byte[] getChoices()
+    {
+        return choices;
+    }
+
+    public LocalDateTime getVotedAt()
+    {
+        return votedAt;
+    }
+}
@@ -0,0 +1,109 @@
+package fr.simplon.sondages.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Événement de modification d'un sondage ou d'un vote, enregistré dans la même transaction que la modification (voir
+ * {@link fr.simplon.sondages.outbox.OutboxWriter}). Les identifiants sont croissants : ils servent de position dans
+ * le flux des événements.
+ */
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent
+{
+    /**
+     * Type d'événement.
+     */
+    public enum Type
+    {
+        SONDAGE_CREATED, SONDAGE_UPDATED, SONDAGE_DELETED, VOTE_CREATED,
+        /** Bulletin d'un sondage à choix ou à classement, identifiant du bulletin dans {@code vote_id}. */
+        BALLOT_CREATED;
+
+        /**
+         * @return Vrai pour la création, la modification ou la suppression d'un sondage, faux pour un vote ou un
+         * bulletin.
+         */
+        public boolean isSondageChange()
+        {
+            return this != VOTE_CREATED && this != BALLOT_CREATED;
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Type type;
+
+    @Column(name = "sondage_id", nullable = false)
+    private Long sondageId;
+
+    @Column(name = "vote_id")
+    private Long voteId;
+
+    /** Contenu de l'événement en JSON. */
+    @Column(nullable = false, length = 8000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /** Identifiant de l'instance qui a écrit l'événement. */
+    @Column(length = 64)
+    private String origin;
+
+    public OutboxEvent(
+            Type pType, Long pSondageId, Long pVoteId, String pPayload, LocalDateTime pCreatedAt, String pOrigin)
+    {
+        type = pType;
+        sondageId = pSondageId;
+        voteId = pVoteId;
+        payload = pPayload;
+        createdAt = pCreatedAt;
+        origin = pOrigin;
+    }
+
+    public OutboxEvent()
+    {
+    }
+
+    public Long getId()
+    {
+        return id;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public Long getSondageId()
+    {
+        return sondageId;
+    }
+
+    public Long getVoteId()
+    {
+        return voteId;
+    }
+
+    public String getPayload()
+    {
+        return payload;
+    }
+
+    public LocalDateTime getCreatedAt()
+    {
+        return createdAt;
+    }
+
+    public String getOrigin()
+    {
+        return origin;
+    }
+}
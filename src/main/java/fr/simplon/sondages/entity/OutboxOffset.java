@@ -0,0 +1,59 @@
+package fr.simplon.sondages.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position d'une destination dans le flux des événements : identifiant du dernier {@link OutboxEvent} publié.
+ */
+@Entity
+@Table(name = "outbox_offset")
+public class OutboxOffset
+{
+    @Id
+    @Column(length = 64)
+    private String sink;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public OutboxOffset(String pSink, Long pLastId, LocalDateTime pUpdatedAt)
+    {
+        sink = pSink;
+        lastId = pLastId;
+        updatedAt = pUpdatedAt;
+    }
+
+    public OutboxOffset()
+    {
+    }
+
+    public String getSink()
+    {
+        return sink;
+    }
+
+    public Long getLastId()
+    {
+        return lastId;
+    }
+
+    public void setLastId(Long pLastId)
+    {
+        lastId = pLastId;
+    }
+
+    public LocalDateTime getUpdatedAt()
+    {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime pUpdatedAt)
+    {
+        updatedAt = pUpdatedAt;
+    }
+}
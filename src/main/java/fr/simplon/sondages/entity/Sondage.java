@@ -1,20 +1,44 @@
 package fr.simplon.sondages.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
-import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.data.annotation.CreatedDate;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_sondage_closed_at", columnList = "closedAt, id"))
 public class Sondage
 {
+    /** Nombre maximum d'options d'un sondage à choix ou à classement (un bit par option dans un {@code long}). */
+    public static final int MAX_OPTIONS = 64;
+
+    /**
+     * Type de sondage : les votes oui/non sont enregistrés dans la table {@code vote}, les autres sous forme de
+     * bulletins ({@link Ballot}).
+     */
+    public enum Kind
+    {
+        /** Question fermée, un vote "pour" ou "contre" par votant. */
+        YES_NO,
+        /** Une seule option choisie parmi {@link #getOptions()}. */
+        SINGLE_CHOICE,
+        /** Une ou plusieurs options choisies parmi {@link #getOptions()}. */
+        MULTIPLE_CHOICE,
+        /** Options classées par ordre de préférence, dépouillement par vote alternatif (instant runoff). */
+        RANKED
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -39,9 +63,39 @@ public class Sondage
     @NotBlank
     private String createdBy;
 
+    /**
+     * Version de la ligne, incrémentée à chaque modification (verrouillage optimiste). Exposée aux clients de l'API
+     * sous forme d'ETag.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16, updatable = false)
+    private Kind kind = Kind.YES_NO;
+
+    /**
+     * Libellés des options d'un sondage à choix ou à classement, dans l'ordre : un bulletin désigne une option par son
+     * rang dans cette liste. Vide pour un sondage oui/non.
+     */
+    @ElementCollection
+    @CollectionTable(name = "sondage_option",
+                     joinColumns = @JoinColumn(name = "id_sondage",
+                                               foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT)))
+    @OrderColumn(name = "option_index")
+    @Column(name = "label", nullable = false)
+    @BatchSize(size = 100)
+    @Size(max = MAX_OPTIONS)
+    private List<@NotBlank @Size(max = 255) String> options = new ArrayList<>();
+
+    /**
+     * Votes du sondage. Pas de cascade : les votes sont supprimés par lots avant le sondage, voir
+     * {@link fr.simplon.sondages.service.SondageDeletionService}.
+     */
     @OneToMany(mappedBy = "sondage")
     @OrderBy("votedAt DESC")
-    @Cascade(org.hibernate.annotations.CascadeType.DELETE)
     private Collection<Vote> votes;
 
     public Sondage()
@@ -135,6 +189,48 @@ public class Sondage
         createdBy = pCreatedBy;
     }
 
+    public Long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(Long pVersion)
+    {
+        version = pVersion;
+    }
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    public void setKind(Kind pKind)
+    {
+        kind = pKind;
+    }
+
+    public List<String> getOptions()
+    {
+        return options;
+    }
+
+    public void setOptions(List<String> pOptions)
+    {
+        options = pOptions == null ? new ArrayList<>() : new ArrayList<>(pOptions);
+    }
+
+    /**
+     * @return Vrai si le nombre d'options correspond au type du sondage : aucune pour un sondage oui/non, de 2 à
+     * {@link #MAX_OPTIONS} sinon.
+     */
+    @AssertTrue(message = "Un sondage oui/non n'a pas d'option, les autres en ont de 2 à " + MAX_OPTIONS)
+    @JsonIgnore
+    public boolean isOptionsValid()
+    {
+        int count = options == null ? 0 : options.size();
+        return kind == null || (kind == Kind.YES_NO ? count == 0 : count >= 2 && count <= MAX_OPTIONS);
+    }
+
     public Collection<Vote> getVotes()
     {
         return votes;
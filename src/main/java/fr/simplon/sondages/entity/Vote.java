@@ -7,7 +7,16 @@ import jakarta.validation.constraints.NotNull;
 
 import java.time.LocalDateTime;
 
+/**
+ * Vote d'un utilisateur pour un sondage.
+ * <p>
+ * La table est partitionnée par sondage sous MySQL (voir {@code db/upgrade/034-vote-partitions.sql}) : MySQL
+ * n'accepte pas de clé étrangère sur une table partitionnée, l'intégrité est assurée par l'application (les votes sont
+ * supprimés avant leur sondage).
+ * </p>
+ */
 @Entity
+@Table(indexes = @Index(name = "idx_vote_sondage_voter", columnList = "id_sondage, id_voter"))
 public class Vote
 {
     @Id
@@ -15,7 +24,8 @@ public class Vote
     private Long id;
 
     @ManyToOne(optional = false)
-    @JoinColumn(name = "id_sondage", referencedColumnName = "id", nullable = false)
+    @JoinColumn(name = "id_sondage", referencedColumnName = "id", nullable = false,
+                foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @JsonIgnore
     private Sondage sondage;
 
@@ -26,18 +36,28 @@ public class Vote
     @Column(nullable = false)
     private LocalDateTime votedAt;
 
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "id_voter", referencedColumnName = "id", nullable = false,
+                foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    @JsonIgnore
+    private Voter voter;
+
+    /**
+     * Nom du votant saisi dans le formulaire de vote. Non stocké : le vote ne référence que l'identifiant du votant.
+     */
     @NotNull
     @NotBlank
-    @Column(nullable = false)
+    @Transient
     private String user;
 
-    public Vote(Long pId, Sondage pSondage, Boolean pValue, LocalDateTime pVotedAt, String pUser)
+    public Vote(Long pId, Sondage pSondage, Boolean pValue, LocalDateTime pVotedAt, Voter pVoter)
     {
         id = pId;
         sondage = pSondage;
         value = pValue;
         votedAt = pVotedAt;
-        user = pUser;
+        voter = pVoter;
+        user = pVoter.getName();
     }
 
     public Vote()
@@ -84,8 +104,25 @@ public class Vote
         votedAt = pVotedAt;
     }
 
+    public Voter getVoter()
+    {
+        return voter;
+    }
+
+    public void setVoter(Voter pVoter)
+    {
+        voter = pVoter;
+    }
+
+    /**
+     * @return Le nom saisi dans le formulaire, ou à défaut celui du votant enregistré.
+     */
     public String getUser()
     {
+        if (user == null && voter != null)
+        {
+            user = voter.getName();
+        }
         return user;
     }
 
@@ -0,0 +1,53 @@
+package fr.simplon.sondages.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.BatchSize;
+
+/**
+ * Votant. Le nom n'est stocké qu'une fois ici ; chaque vote ne référence que l'identifiant entier (4 octets) du
+ * votant.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_voter_name", columnNames = "name"))
+@BatchSize(size = 100)
+public class Voter
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @NotBlank
+    @Column(nullable = false)
+    private String name;
+
+    public Voter(Integer pId, String pName)
+    {
+        id = pId;
+        name = pName;
+    }
+
+    public Voter()
+    {
+    }
+
+    public Integer getId()
+    {
+        return id;
+    }
+
+    public void setId(Integer pId)
+    {
+        id = pId;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String pName)
+    {
+        name = pName;
+    }
+}
@@ -0,0 +1,132 @@
+package fr.simplon.sondages.outbox;
+
+import fr.simplon.sondages.dao.OutboxEventRepository;
+import fr.simplon.sondages.entity.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Synchronisation des caches locaux entre les instances de l'application, par la BDD partagée : la table
+ * {@code outbox_event} est relue toutes les {@code sondages.cluster.poll-interval} et les événements écrits par les
+ * autres instances sont transmis aux {@link ClusterChangeListener} (compteur de sondages, index de recherche, décomptes
+ * des votes, page d'accueil précalculée).
+ * <p>
+ * Un événement est visible par les autres instances au plus tard {@code poll-interval} après la validation de sa
+ * transaction. Comme dans {@link OutboxRelay}, un identifiant peut manquer pendant qu'une transaction est en cours : la
+ * position n'avance pas au-delà tant qu'il manque depuis moins de {@code sondages.outbox.gap-timeout}, et les
+ * événements suivants déjà transmis sont mémorisés pour ne pas l'être deux fois.
+ * </p>
+ * <p>
+ * Au démarrage, la lecture commence après le dernier événement existant : les caches sont alors construits à partir de
+ * la BDD.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "sondages.cluster.sync.enabled", matchIfMissing = true)
+public class ClusterChangeFeed
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterChangeFeed.class);
+
+    private final OutboxEventRepository       mEvents;
+    private final List<ClusterChangeListener> mListeners;
+    private final String                      mOrigin;
+    private final int                         mBatchSize;
+    private final OutboxGaps                  mGaps;
+    /** Identifiants supérieurs à {@code mLastId} déjà lus (après un identifiant manquant). */
+    private final NavigableSet<Long>          mSeen = new TreeSet<>();
+    /** Identifiant jusqu'auquel tous les événements ont été lus. */
+    private       long                        mLastId;
+
+    @Autowired
+    public ClusterChangeFeed(
+            OutboxEventRepository pEvents,
+            List<ClusterChangeListener> pListeners,
+            InstanceId pInstanceId,
+            @Value("${sondages.outbox.batch-size:500}") int pBatchSize,
+            @Value("${sondages.outbox.gap-timeout:PT5S}") Duration pGapTimeout)
+    {
+        mEvents = pEvents;
+        mListeners = pListeners;
+        mOrigin = pInstanceId.value();
+        mBatchSize = pBatchSize;
+        mGaps = new OutboxGaps(pGapTimeout);
+        mLastId = pEvents.findMaxId();
+    }
+
+    /**
+     * Transmet aux caches les événements écrits par les autres instances depuis le dernier appel.
+     */
+    @Scheduled(fixedDelayString = "${sondages.cluster.poll-interval:PT1S}")
+    public synchronized void sync()
+    {
+        try
+        {
+            while (poll() == mBatchSize)
+            {
+                // Lots complets : il reste probablement des événements
+            }
+        }
+        catch (RuntimeException e)
+        {
+            LOG.warn("Lecture des modifications des autres instances impossible, nouvel essai plus tard", e);
+        }
+    }
+
+    /**
+     * Lit le lot suivant et avance la position.
+     *
+     * @return Le nombre de nouveaux événements lus.
+     */
+    private int poll()
+    {
+        List<OutboxEvent> events = mEvents.findByIdGreaterThanOrderByIdAsc(mLastId, PageRequest.of(0, mBatchSize));
+        List<OutboxEvent> remote = new ArrayList<>();
+        int read = 0;
+        for (OutboxEvent event : events)
+        {
+            if (mSeen.add(event.getId()))
+            {
+                read++;
+                if (!mOrigin.equals(event.getOrigin()))
+                {
+                    remote.add(event);
+                }
+            }
+        }
+        if (!remote.isEmpty())
+        {
+            for (ClusterChangeListener listener : mListeners)
+            {
+                try
+                {
+                    listener.onRemoteChanges(remote);
+                }
+                catch (RuntimeException e)
+                {
+                    LOG.warn("Modifications des autres instances non prises en compte par {}",
+                             listener.getClass().getSimpleName(), e);
+                }
+            }
+        }
+
+        List<OutboxEvent> contiguous = mGaps.publishable(mLastId, events);
+        if (!contiguous.isEmpty())
+        {
+            mLastId = contiguous.get(contiguous.size() - 1).getId();
+            mSeen.headSet(mLastId, true).clear();
+        }
+        return read;
+    }
+}
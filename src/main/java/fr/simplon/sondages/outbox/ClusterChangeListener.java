@@ -0,0 +1,20 @@
+package fr.simplon.sondages.outbox;
+
+import fr.simplon.sondages.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Cache local tenu à jour des modifications faites par les autres instances (voir {@link ClusterChangeFeed}).
+ * <p>
+ * Les modifications faites par cette instance ne sont pas transmises : le cache les prend en compte lui-même.
+ * </p>
+ */
+public interface ClusterChangeListener
+{
+    /**
+     * @param events Les événements écrits par les autres instances, dans l'ordre des identifiants (chaque événement
+     *               n'est transmis qu'une fois).
+     */
+    void onRemoteChanges(List<OutboxEvent> events);
+}
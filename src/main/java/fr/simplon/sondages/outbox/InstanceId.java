@@ -0,0 +1,11 @@
+package fr.simplon.sondages.outbox;
+
+/**
+ * Identifiant de cette instance de l'application, enregistré avec chaque événement qu'elle écrit
+ * ({@code sondages.instance-id}, aléatoire s'il n'est pas renseigné).
+ *
+ * @param value L'identifiant (64 caractères au plus).
+ */
+public record InstanceId(String value)
+{
+}
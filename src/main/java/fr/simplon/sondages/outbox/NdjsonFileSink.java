@@ -0,0 +1,48 @@
+package fr.simplon.sondages.outbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publication des événements dans un fichier local, un objet JSON par ligne (NDJSON). Chaque lot est écrit sur le
+ * disque ({@code fsync}) avant que la position de la destination avance.
+ */
+public class NdjsonFileSink implements OutboxSink
+{
+    private final Path mPath;
+
+    public NdjsonFileSink(Path pPath)
+    {
+        mPath = pPath;
+    }
+
+    @Override
+    public String name()
+    {
+        return "file";
+    }
+
+    @Override
+    public void publish(String ndjson) throws IOException
+    {
+        if (mPath.getParent() != null)
+        {
+            Files.createDirectories(mPath.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(mPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.APPEND))
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(ndjson.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package fr.simplon.sondages.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Destinations des événements de modification ({@code sondages.outbox.*}) : fichier NDJSON local et/ou webhook. Sans
+ * destination, les événements sont enregistrés mais pas publiés.
+ */
+@Configuration
+public class OutboxConfig
+{
+    @Bean
+    public InstanceId instanceId(@Value("${sondages.instance-id:}") String id)
+    {
+        return new InstanceId(id.isBlank() ? UUID.randomUUID().toString() : id);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "sondages.outbox.file.path")
+    public OutboxSink ndjsonFileSink(@Value("${sondages.outbox.file.path}") Path path)
+    {
+        return new NdjsonFileSink(path);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "sondages.outbox.webhook.url")
+    public OutboxSink webhookSink(
+            @Value("${sondages.outbox.webhook.url}") URI url,
+            @Value("${sondages.outbox.webhook.timeout:PT10S}") Duration timeout)
+    {
+        return new WebhookSink(url, timeout);
+    }
+}
@@ -0,0 +1,69 @@
+package fr.simplon.sondages.outbox;
+
+import fr.simplon.sondages.entity.OutboxEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Identifiants manquants dans le flux {@code outbox_event}, pour un lecteur (une destination de {@link OutboxRelay} ou
+ * {@link ClusterChangeFeed}).
+ * <p>
+ * Un identifiant manquant appartient à une transaction en cours ou annulée. Il est attendu pendant le délai indiqué,
+ * compté à partir du moment où ce lecteur l'a vu manquer pour la première fois, sur l'horloge monotone locale
+ * ({@link System#nanoTime()}) : la date {@code created_at} est celle de l'instance qui a écrit l'événement, dont
+ * l'horloge peut être décalée.
+ * </p>
+ */
+final class OutboxGaps
+{
+    private final long                     mTimeoutNanos;
+    /** Identifiant de l'événement lu après chaque trou → instant où le trou a été vu pour la première fois. */
+    private final NavigableMap<Long, Long> mFirstSeen = new TreeMap<>();
+
+    OutboxGaps(Duration pTimeout)
+    {
+        mTimeoutNanos = pTimeout.toNanos();
+    }
+
+    /**
+     * @param lastId Identifiant du dernier événement lu.
+     * @param events Les événements suivants, dans l'ordre des identifiants.
+     * @return Les premiers événements, jusqu'au premier identifiant manquant depuis moins longtemps que le délai.
+     */
+    List<OutboxEvent> publishable(long lastId, List<OutboxEvent> events)
+    {
+        return publishable(lastId, events, System.nanoTime());
+    }
+
+    /**
+     * @param lastId Identifiant du dernier événement lu.
+     * @param events Les événements suivants, dans l'ordre des identifiants.
+     * @param now    L'instant de la lecture ({@link System#nanoTime()}).
+     * @return Les premiers événements, jusqu'au premier identifiant manquant depuis moins longtemps que le délai.
+     */
+    synchronized List<OutboxEvent> publishable(long lastId, List<OutboxEvent> events, long now)
+    {
+        // Trous déjà franchis
+        mFirstSeen.headMap(lastId, true).clear();
+        long expected = lastId + 1;
+        int end = events.size();
+        for (int i = 0; i < events.size(); i++)
+        {
+            OutboxEvent event = events.get(i);
+            if (event.getId() != expected)
+            {
+                // Tous les trous du lot sont datés dès la première lecture, pas seulement le premier
+                long since = mFirstSeen.computeIfAbsent(event.getId(), id -> now);
+                if (end == events.size() && now - since < mTimeoutNanos)
+                {
+                    end = i;
+                }
+            }
+            expected = event.getId() + 1;
+        }
+        return events.subList(0, end);
+    }
+}
@@ -0,0 +1,177 @@
+package fr.simplon.sondages.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fr.simplon.sondages.dao.OutboxEventRepository;
+import fr.simplon.sondages.dao.OutboxOffsetRepository;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.entity.OutboxOffset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publication des événements de {@code outbox_event} vers les destinations configurées ({@link OutboxSink}), par lots
+ * de {@code sondages.outbox.batch-size}.
+ * <p>
+ * Chaque destination a sa position dans le flux ({@code outbox_offset}). Le lot est lu en verrouillant sa ligne, la
+ * transaction est validée avant l'envoi (aucun verrou n'est gardé pendant un appel réseau), puis la position est
+ * avancée dans une seconde transaction courte : la publication reprend après le dernier lot livré après un arrêt ou
+ * une erreur. Un lot peut être livré deux fois (deux instances, arrêt entre l'envoi et l'avancée de la position), les
+ * destinations dédoublonnent par identifiant.
+ * </p>
+ * <p>
+ * Les identifiants sont attribués à l'insertion, mais les transactions ne sont pas validées dans cet ordre : un
+ * événement peut apparaître après un événement d'identifiant supérieur. La publication s'arrête donc au premier
+ * identifiant manquant, sauf s'il manque depuis plus de {@code sondages.outbox.gap-timeout} (transaction annulée),
+ * compté sur l'horloge locale depuis que le relais l'a vu manquer ({@link OutboxGaps}).
+ * </p>
+ */
+@Service
+public class OutboxRelay
+{
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    private final OutboxEventRepository   mEvents;
+    private final OutboxOffsetRepository  mOffsets;
+    private final List<OutboxSink>        mSinks;
+    private final ObjectMapper            mObjectMapper;
+    private final TransactionTemplate     mTransactionTemplate;
+    private final int                     mBatchSize;
+    private final Duration                mGapTimeout;
+    private final Duration                mRetention;
+    private final Map<String, OutboxGaps> mGaps = new ConcurrentHashMap<>();
+    private       LocalDateTime           mLastPurge = LocalDateTime.MIN;
+
+    @Autowired
+    public OutboxRelay(
+            OutboxEventRepository pEvents,
+            OutboxOffsetRepository pOffsets,
+            List<OutboxSink> pSinks,
+            ObjectMapper pObjectMapper,
+            PlatformTransactionManager pTransactionManager,
+            @Value("${sondages.outbox.batch-size:500}") int pBatchSize,
+            @Value("${sondages.outbox.gap-timeout:PT5S}") Duration pGapTimeout,
+            @Value("${sondages.outbox.retention:P7D}") Duration pRetention)
+    {
+        mEvents = pEvents;
+        mOffsets = pOffsets;
+        mSinks = pSinks;
+        mObjectMapper = pObjectMapper;
+        mTransactionTemplate = new TransactionTemplate(pTransactionManager);
+        mBatchSize = pBatchSize;
+        mGapTimeout = pGapTimeout;
+        mRetention = pRetention;
+    }
+
+    /**
+     * Publie les nouveaux événements vers chaque destination, puis supprime de temps en temps ceux que toutes les
+     * destinations ont reçus.
+     */
+    @Scheduled(fixedDelayString = "${sondages.outbox.poll-interval:PT1S}")
+    public void relay()
+    {
+        for (OutboxSink sink : mSinks)
+        {
+            try
+            {
+                while (publishBatch(sink) == mBatchSize)
+                {
+                    // Lots complets : il reste probablement des événements
+                }
+            }
+            catch (RuntimeException e)
+            {
+                LOG.warn("Publication des événements vers {} impossible, nouvel essai plus tard", sink.name(), e);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (mLastPurge.plus(PURGE_INTERVAL).isBefore(now))
+        {
+            mLastPurge = now;
+            // Sans destination, les événements ne servent qu'à la synchronisation des instances (ClusterChangeFeed)
+            Long published = mSinks.isEmpty() ? Long.valueOf(Long.MAX_VALUE)
+                    : mOffsets.findMinLastId(mSinks.stream().map(OutboxSink::name).toList());
+            int deleted = mEvents.deletePublished(published, now.minus(mRetention));
+            LOG.debug("{} événements publiés supprimés", deleted);
+        }
+    }
+
+    /**
+     * Publie le lot suivant vers une destination.
+     *
+     * @return Le nombre d'événements publiés.
+     */
+    int publishBatch(OutboxSink sink)
+    {
+        List<OutboxEvent> events = mTransactionTemplate.execute(status -> {
+            mOffsets.insertIfAbsent(sink.name());
+            OutboxOffset offset = mOffsets.findForUpdate(sink.name()).orElseThrow();
+            List<OutboxEvent> next = mEvents.findByIdGreaterThanOrderByIdAsc(offset.getLastId(),
+                                                                             PageRequest.of(0, mBatchSize));
+            // Rien encore publié vers cette destination : le flux commence au premier événement de la table (les
+            // identifiants précédents ont pu être purgés ou appartenir à des transactions annulées)
+            long lastId = offset.getLastId() == 0 && !next.isEmpty() ? next.get(0).getId() - 1 : offset.getLastId();
+            return mGaps.computeIfAbsent(sink.name(), name -> new OutboxGaps(mGapTimeout)).publishable(lastId, next);
+        });
+        if (events == null || events.isEmpty())
+        {
+            return 0;
+        }
+        try
+        {
+            sink.publish(toNdjson(events));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        long lastId = events.get(events.size() - 1).getId();
+        mTransactionTemplate.executeWithoutResult(status -> mOffsets.advance(sink.name(), lastId, LocalDateTime.now()));
+        return events.size();
+    }
+
+    private String toNdjson(List<OutboxEvent> events)
+    {
+        StringBuilder ndjson = new StringBuilder();
+        try
+        {
+            for (OutboxEvent event : events)
+            {
+                ObjectNode line = mObjectMapper.createObjectNode();
+                line.put("id", event.getId());
+                line.put("type", event.getType().name());
+                line.put("sondageId", event.getSondageId());
+                if (event.getVoteId() != null)
+                {
+                    line.put("voteId", event.getVoteId());
+                }
+                line.put("createdAt", event.getCreatedAt().toString());
+                line.set("payload", mObjectMapper.readTree(event.getPayload()));
+                ndjson.append(mObjectMapper.writeValueAsString(line)).append('\n');
+            }
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        return ndjson.toString();
+    }
+}
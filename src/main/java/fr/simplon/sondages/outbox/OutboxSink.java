@@ -0,0 +1,26 @@
+package fr.simplon.sondages.outbox;
+
+import java.io.IOException;
+
+/**
+ * Destination des événements publiés par {@link OutboxRelay}.
+ * <p>
+ * Les événements sont livrés au moins une fois : après une erreur ou un arrêt pendant la publication, le même lot est
+ * publié de nouveau. Les destinataires dédoublonnent avec l'identifiant de chaque événement (croissant).
+ * </p>
+ */
+public interface OutboxSink
+{
+    /**
+     * @return Nom unique de la destination, sous lequel sa position dans le flux est enregistrée.
+     */
+    String name();
+
+    /**
+     * Publie un lot d'événements.
+     *
+     * @param ndjson Les événements, un objet JSON par ligne, dans l'ordre de leurs identifiants.
+     * @throws IOException Si le lot n'a pas pu être publié (il sera publié de nouveau plus tard).
+     */
+    void publish(String ndjson) throws IOException;
+}
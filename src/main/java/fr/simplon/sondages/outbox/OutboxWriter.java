@@ -0,0 +1,147 @@
+package fr.simplon.sondages.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.simplon.sondages.dao.OutboxEventRepository;
+import fr.simplon.sondages.dto.SondagePatch;
+import fr.simplon.sondages.entity.Ballot;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.entity.Vote;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Enregistrement des événements de modification des sondages et des votes dans la table {@code outbox_event}.
+ * <p>
+ * Chaque méthode doit être appelée dans la transaction de la modification : l'événement est enregistré si et seulement
+ * si la modification l'est. {@link OutboxRelay} publie ensuite les événements vers les destinations configurées.
+ * </p>
+ */
+@Service
+@Transactional
+public class OutboxWriter
+{
+    private final OutboxEventRepository mRepository;
+    private final ObjectMapper          mObjectMapper;
+    private final String                mOrigin;
+
+    @Autowired
+    public OutboxWriter(OutboxEventRepository pRepository, ObjectMapper pObjectMapper, InstanceId pInstanceId)
+    {
+        mRepository = pRepository;
+        mObjectMapper = pObjectMapper;
+        mOrigin = pInstanceId.value();
+    }
+
+    /**
+     * @param sondage Un sondage qui vient d'être créé.
+     */
+    public void sondageCreated(Sondage sondage)
+    {
+        write(OutboxEvent.Type.SONDAGE_CREATED, sondage.getId(), null, toMap(sondage));
+    }
+
+    /**
+     * @param sondage Un sondage qui vient d'être modifié (version incluse : l'entité doit avoir été écrite en BDD).
+     */
+    public void sondageUpdated(Sondage sondage)
+    {
+        write(OutboxEvent.Type.SONDAGE_UPDATED, sondage.getId(), null, toMap(sondage));
+    }
+
+    /**
+     * @param id         L'identifiant d'un sondage qui vient d'être modifié partiellement.
+     * @param patch      Les champs modifiés.
+     * @param newVersion La nouvelle version du sondage, null si elle n'est pas connue.
+     */
+    public void sondagePatched(Long id, SondagePatch patch, Long newVersion)
+    {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", id);
+        putIfNotNull(payload, "description", patch.description());
+        putIfNotNull(payload, "question", patch.question());
+        putIfNotNull(payload, "closedAt", patch.closedAt());
+        putIfNotNull(payload, "createdBy", patch.createdBy());
+        putIfNotNull(payload, "version", newVersion);
+        write(OutboxEvent.Type.SONDAGE_UPDATED, id, null, payload);
+    }
+
+    /**
+     * @param id L'identifiant d'un sondage qui vient d'être supprimé avec ses votes.
+     */
+    public void sondageDeleted(Long id)
+    {
+        write(OutboxEvent.Type.SONDAGE_DELETED, id, null, Map.of("id", id));
+    }
+
+    /**
+     * @param vote Un vote qui vient d'être enregistré.
+     */
+    public void voteCreated(Vote vote)
+    {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", vote.getId());
+        payload.put("sondageId", vote.getSondage().getId());
+        payload.put("user", vote.getUser());
+        payload.put("value", vote.getValue());
+        payload.put("votedAt", vote.getVotedAt());
+        write(OutboxEvent.Type.VOTE_CREATED, vote.getSondage().getId(), vote.getId(), payload);
+    }
+
+    /**
+     * @param ballot  Un bulletin qui vient d'être enregistré.
+     * @param choices Les options choisies, dans l'ordre de préférence pour un sondage à classement.
+     */
+    public void ballotCast(Ballot ballot, int[] choices)
+    {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", ballot.getId());
+        payload.put("sondageId", ballot.getSondageId());
+        payload.put("voterId", ballot.getVoterId());
+        payload.put("choices", choices);
+        payload.put("votedAt", ballot.getVotedAt());
+        write(OutboxEvent.Type.BALLOT_CREATED, ballot.getSondageId(), ballot.getId(), payload);
+    }
+
+    private void write(OutboxEvent.Type type, Long sondageId, Long voteId, Map<String, Object> payload)
+    {
+        try
+        {
+            mRepository.save(new OutboxEvent(type, sondageId, voteId, mObjectMapper.writeValueAsString(payload),
+                                             LocalDateTime.now(), mOrigin));
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> toMap(Sondage sondage)
+    {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", sondage.getId());
+        payload.put("description", sondage.getDescription());
+        payload.put("question", sondage.getQuestion());
+        payload.put("createdAt", sondage.getCreatedAt());
+        payload.put("closedAt", sondage.getClosedAt());
+        payload.put("createdBy", sondage.getCreatedBy());
+        payload.put("kind", sondage.getKind());
+        payload.put("options", sondage.getOptions());
+        payload.put("version", sondage.getVersion());
+        return payload;
+    }
+
+    private static void putIfNotNull(Map<String, Object> payload, String key, Object value)
+    {
+        if (value != null)
+        {
+            payload.put(key, value);
+        }
+    }
+}
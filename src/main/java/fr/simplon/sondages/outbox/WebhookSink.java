@@ -0,0 +1,55 @@
+package fr.simplon.sondages.outbox;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Publication des événements par un {@code POST} ({@code application/x-ndjson}) vers l'URL d'un service abonné. Le
+ * lot est considéré comme livré si le service répond 2xx.
+ */
+public class WebhookSink implements OutboxSink
+{
+    private final URI        mUrl;
+    private final Duration   mTimeout;
+    private final HttpClient mClient;
+
+    public WebhookSink(URI pUrl, Duration pTimeout)
+    {
+        mUrl = pUrl;
+        mTimeout = pTimeout;
+        mClient = HttpClient.newBuilder().connectTimeout(pTimeout).build();
+    }
+
+    @Override
+    public String name()
+    {
+        return "webhook";
+    }
+
+    @Override
+    public void publish(String ndjson) throws IOException
+    {
+        HttpRequest request = HttpRequest.newBuilder(mUrl)//
+                .timeout(mTimeout)//
+                .header("Content-Type", "application/x-ndjson")//
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson))//
+                .build();
+        try
+        {
+            HttpResponse<Void> response = mClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2)
+            {
+                throw new IOException("Réponse " + response.statusCode() + " de " + mUrl);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Publication interrompue", e);
+        }
+    }
+}
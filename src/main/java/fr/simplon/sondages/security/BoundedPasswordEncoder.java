@@ -0,0 +1,140 @@
+package fr.simplon.sondages.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hachage et vérification des mots de passe (bcrypt, volontairement coûteux en CPU) sur un nombre limité de threads.
+ * <p>
+ * Une vague de connexions ne peut occuper que {@code threads} cœurs : les autres requêtes (votes, pages) gardent du
+ * CPU. Au-delà de {@code queueSize} demandes en attente, ou après {@code timeout} d'attente, la demande est refusée
+ * avec une {@link PasswordHashingBusyException}.
+ * </p>
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder
+{
+    private final PasswordEncoder    mDelegate;
+    private final ThreadPoolExecutor mExecutor;
+    private final long               mTimeoutNanos;
+    private final AtomicLong         mRejected = new AtomicLong();
+
+    /**
+     * @param pDelegate  L'encodeur qui fait le travail.
+     * @param pThreads   Nombre de threads de hachage (0 pour la moitié des cœurs).
+     * @param pQueueSize Nombre maximum de demandes en attente.
+     * @param pTimeout   Attente maximum d'un résultat.
+     */
+    public BoundedPasswordEncoder(PasswordEncoder pDelegate, int pThreads, int pQueueSize, Duration pTimeout)
+    {
+        mDelegate = pDelegate;
+        mTimeoutNanos = pTimeout.toNanos();
+        int threads = pThreads > 0 ? pThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                           new ArrayBlockingQueue<>(Math.max(1, pQueueSize)), r -> {
+            Thread thread = new Thread(r, "password-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Publie la file d'attente et le nombre de refus.
+     *
+     * @param registry Le registre Micrometer.
+     */
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("sondages.password.hashing.queue", mExecutor, e -> e.getQueue().size())//
+                .description("Mots de passe en attente de hachage")//
+                .register(registry);
+        Gauge.builder("sondages.password.hashing.active", mExecutor, ThreadPoolExecutor::getActiveCount)//
+                .description("Mots de passe en cours de hachage")//
+                .register(registry);
+        FunctionCounter.builder("sondages.password.hashing.rejected", mRejected, AtomicLong::get)//
+                .description("Hachages refusés (file pleine ou attente trop longue)")//
+                .register(registry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword)
+    {
+        return run(() -> mDelegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword)
+    {
+        return run(() -> mDelegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Vrai si le hachage a été fait avec un algorithme ou un coût différent de la configuration actuelle : Spring
+     * Security le recalcule alors à la connexion (voir {@link CachingUserDetailsManager#updatePassword}).
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword)
+    {
+        return mDelegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Arrête les threads de hachage (appelée par Spring à l'arrêt de l'application).
+     */
+    public void shutdown()
+    {
+        mExecutor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task)
+    {
+        Future<T> future;
+        try
+        {
+            future = mExecutor.submit(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            mRejected.incrementAndGet();
+            throw new PasswordHashingBusyException("Trop de connexions en cours, veuillez réessayer");
+        }
+        try
+        {
+            return future.get(mTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            future.cancel(true);
+            mRejected.incrementAndGet();
+            throw new PasswordHashingBusyException("Trop de connexions en cours, veuillez réessayer");
+        }
+        catch (InterruptedException e)
+        {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Hachage du mot de passe interrompu");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException cause)
+            {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
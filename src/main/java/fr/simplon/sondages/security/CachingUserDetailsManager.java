@@ -0,0 +1,239 @@
+package fr.simplon.sondages.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.provisioning.UserDetailsManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des utilisateurs devant un {@link UserDetailsManager} (JDBC) : une vague de connexions ne coûte qu'une
+ * lecture des tables {@code users}/{@code authorities} par utilisateur et par {@code ttl}.
+ * <p>
+ * Au plus {@code maxSize} utilisateurs sont gardés en mémoire (les moins récemment utilisés sont oubliés en premier),
+ * ainsi que les noms inconnus pendant {@code negativeTtl} (plus court) pour ne pas interroger la BDD à chaque
+ * tentative. Toute modification faite par ce gestionnaire (création, modification, suppression, changement de mot de
+ * passe) retire l'utilisateur du cache, et un utilisateur lu pendant une modification n'y est pas gardé ; les
+ * modifications faites par une autre instance sont vues au plus tard après {@code ttl} ({@code negativeTtl} pour un
+ * utilisateur créé).
+ * </p>
+ * <p>
+ * Chaque appel renvoie une copie : Spring Security efface le mot de passe de l'utilisateur après l'authentification.
+ * Les succès et échecs du cache sont publiés dans la métrique {@code cache.gets} ({@code cache=users}).
+ * </p>
+ * <p>
+ * Implémente aussi {@link UserDetailsPasswordService} : quand le coût de hachage configuré augmente, Spring Security
+ * enregistre un nouveau hachage du mot de passe à la connexion suivante de chaque utilisateur.
+ * </p>
+ */
+public class CachingUserDetailsManager implements UserDetailsManager, UserDetailsPasswordService
+{
+    private final UserDetailsManager      mDelegate;
+    private final long                    mTtlNanos;
+    private final long                    mNegativeTtlNanos;
+    private final Map<String, CachedUser> mCache;
+    /** Incrémenté à chaque oubli : un utilisateur lu pendant une modification n'est pas gardé. */
+    private final AtomicLong              mGeneration = new AtomicLong();
+    private final AtomicLong              mHits       = new AtomicLong();
+    private final AtomicLong              mMisses     = new AtomicLong();
+
+    /**
+     * Utilisateur en cache ({@code user} null si l'utilisateur n'existe pas).
+     */
+    private record CachedUser(UserDetails user, long expiresAt)
+    {
+    }
+
+    public CachingUserDetailsManager(UserDetailsManager pDelegate, Duration pTtl, Duration pNegativeTtl, int pMaxSize)
+    {
+        mDelegate = pDelegate;
+        mTtlNanos = pTtl.toNanos();
+        mNegativeTtlNanos = Math.min(pNegativeTtl.toNanos(), mTtlNanos);
+        mCache = new LinkedHashMap<>(Math.min(pMaxSize, 1024), 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest)
+            {
+                return size() > pMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Publie les métriques du cache.
+     *
+     * @param registry Le registre Micrometer.
+     */
+    public void bindTo(MeterRegistry registry)
+    {
+        FunctionCounter.builder("cache.gets", mHits, AtomicLong::get)//
+                .tags("cache", "users", "result", "hit")//
+                .description("Utilisateurs trouvés dans le cache")//
+                .register(registry);
+        FunctionCounter.builder("cache.gets", mMisses, AtomicLong::get)//
+                .tags("cache", "users", "result", "miss")//
+                .description("Utilisateurs lus en BDD")//
+                .register(registry);
+        Gauge.builder("cache.size", this, CachingUserDetailsManager::size)//
+                .tags("cache", "users")//
+                .register(registry);
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException
+    {
+        UserDetails user = lookup(username);
+        if (user == null)
+        {
+            throw new UsernameNotFoundException(username);
+        }
+        return User.withUserDetails(user).build();
+    }
+
+    @Override
+    public boolean userExists(String username)
+    {
+        return lookup(username) != null;
+    }
+
+    @Override
+    public void createUser(UserDetails user)
+    {
+        try
+        {
+            mDelegate.createUser(user);
+        }
+        finally
+        {
+            evict(user.getUsername());
+        }
+    }
+
+    @Override
+    public void updateUser(UserDetails user)
+    {
+        try
+        {
+            mDelegate.updateUser(user);
+        }
+        finally
+        {
+            evict(user.getUsername());
+        }
+    }
+
+    @Override
+    public void deleteUser(String username)
+    {
+        try
+        {
+            mDelegate.deleteUser(username);
+        }
+        finally
+        {
+            evict(username);
+        }
+    }
+
+    /**
+     * Remplace le hachage du mot de passe d'un utilisateur (rehachage à la connexion, même mot de passe).
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword)
+    {
+        UserDetails updated = User.withUserDetails(user).password(newPassword).build();
+        updateUser(updated);
+        return User.withUserDetails(updated).build();
+    }
+
+    /**
+     * Change le mot de passe de l'utilisateur connecté (voir {@link UserDetailsManager#changePassword}).
+     */
+    @Override
+    public void changePassword(String oldPassword, String newPassword)
+    {
+        try
+        {
+            mDelegate.changePassword(oldPassword, newPassword);
+        }
+        finally
+        {
+            // Le nom de l'utilisateur connecté n'est pas connu ici : tout le cache est vidé (opération rare)
+            synchronized (mCache)
+            {
+                mGeneration.incrementAndGet();
+                mCache.clear();
+            }
+        }
+    }
+
+    /**
+     * @param username Le nom d'un utilisateur.
+     */
+    public void evict(String username)
+    {
+        synchronized (mCache)
+        {
+            mGeneration.incrementAndGet();
+            mCache.remove(username);
+        }
+    }
+
+    /**
+     * @return Le nombre d'utilisateurs (connus ou inconnus) en cache.
+     */
+    public int size()
+    {
+        synchronized (mCache)
+        {
+            return mCache.size();
+        }
+    }
+
+    /**
+     * @return L'utilisateur (depuis le cache ou la BDD), null s'il n'existe pas.
+     */
+    private UserDetails lookup(String username)
+    {
+        long now = System.nanoTime();
+        CachedUser cached;
+        synchronized (mCache)
+        {
+            cached = mCache.get(username);
+        }
+        if (cached != null && now - cached.expiresAt() < 0)
+        {
+            mHits.incrementAndGet();
+            return cached.user();
+        }
+
+        mMisses.incrementAndGet();
+        long generation = mGeneration.get();
+        UserDetails user;
+        try
+        {
+            // Copie gardée en cache, à l'abri de l'effacement du mot de passe
+            user = User.withUserDetails(mDelegate.loadUserByUsername(username)).build();
+        }
+        catch (UsernameNotFoundException e)
+        {
+            user = null;
+        }
+        synchronized (mCache)
+        {
+            if (mGeneration.get() == generation)
+            {
+                mCache.put(username, new CachedUser(user, now + (user != null ? mTtlNanos : mNegativeTtlNanos)));
+            }
+        }
+        return user;
+    }
+}
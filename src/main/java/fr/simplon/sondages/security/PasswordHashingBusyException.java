@@ -0,0 +1,18 @@
+package fr.simplon.sondages.security;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Trop de mots de passe sont en cours de hachage : la demande est refusée plutôt que d'attendre indéfiniment.
+ * Une connexion refusée est traitée comme un échec d'authentification, les autres requêtes reçoivent une 503.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingBusyException extends AuthenticationServiceException
+{
+    public PasswordHashingBusyException(String pMessage)
+    {
+        super(pMessage);
+    }
+}
@@ -0,0 +1,64 @@
+package fr.simplon.sondages.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authentification des requêtes qui portent un jeton {@code Authorization: Bearer ...} (voir {@link TokenService}).
+ * <p>
+ * L'utilisateur n'est placé que dans le contexte de sécurité de la requête : aucune session HTTP n'est créée, une
+ * requête peut être traitée par n'importe quelle instance. Un jeton invalide ou expiré reçoit une 401. Les requêtes sans
+ * jeton continuent vers la connexion par formulaire.
+ * </p>
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter
+{
+    private static final String BEARER = "Bearer ";
+
+    private final TokenService mTokenService;
+
+    public TokenAuthenticationFilter(TokenService pTokenService)
+    {
+        mTokenService = pTokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER, 0, BEARER.length()))
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        var authentication = mTokenService.verify(header.substring(BEARER.length()).trim());
+        if (authentication.isEmpty())
+        {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication.get());
+        SecurityContextHolder.setContext(context);
+        try
+        {
+            chain.doFilter(request, response);
+        }
+        finally
+        {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package fr.simplon.sondages.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Jetons d'authentification signés (HMAC-SHA256) pour les clients de l'API, vérifiés sans session ni accès à la BDD.
+ * <p>
+ * Un jeton contient le nom de l'utilisateur, ses rôles et sa date d'expiration, suivis de leur signature :
+ * {@code base64(nom).expiration.base64(rôles).base64(signature)}. Toutes les instances doivent partager la même clé
+ * ({@code sondages.security.token.secret}, en base64) ; sans clé, une clé aléatoire est générée et les jetons ne sont
+ * valables que sur cette instance jusqu'à son arrêt.
+ * </p>
+ * <p>
+ * Un jeton reste valable jusqu'à son expiration ({@code sondages.security.token.ttl}), même si le mot de passe ou les
+ * rôles de l'utilisateur changent.
+ * </p>
+ */
+@Service
+public class TokenService
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec    mKey;
+    private final Duration         mTtl;
+    private final Clock            mClock;
+    private final ThreadLocal<Mac> mMac;
+
+    /**
+     * Jeton signé.
+     *
+     * @param value     Le jeton, à envoyer dans l'en-tête {@code Authorization: Bearer ...}.
+     * @param expiresAt Sa date d'expiration.
+     */
+    public record Token(String value, Instant expiresAt)
+    {
+    }
+
+    @Autowired
+    public TokenService(
+            @Value("${sondages.security.token.secret:}") String pSecret,
+            @Value("${sondages.security.token.ttl:PT1H}") Duration pTtl)
+    {
+        this(decodeOrGenerate(pSecret), pTtl, Clock.systemUTC());
+    }
+
+    TokenService(byte[] pSecret, Duration pTtl, Clock pClock)
+    {
+        mKey = new SecretKeySpec(pSecret, ALGORITHM);
+        mTtl = pTtl;
+        mClock = pClock;
+        mMac = ThreadLocal.withInitial(() -> {
+            try
+            {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(mKey);
+                return mac;
+            }
+            catch (GeneralSecurityException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * @param authentication Un utilisateur authentifié.
+     * @return Un jeton pour cet utilisateur et ses rôles.
+     */
+    public Token issue(Authentication authentication)
+    {
+        Instant expiresAt = mClock.instant().plus(mTtl);
+        String authorities = authentication.getAuthorities().stream()//
+                .map(GrantedAuthority::getAuthority)//
+                .collect(Collectors.joining(","));
+        String payload = encode(authentication.getName()) + "." + expiresAt.getEpochSecond() + "." + encode(authorities);
+        return new Token(payload + "." + ENCODER.encodeToString(sign(payload)), expiresAt);
+    }
+
+    /**
+     * @param token Un jeton reçu d'un client.
+     * @return L'utilisateur authentifié par le jeton, vide si le jeton est invalide ou expiré.
+     */
+    public Optional<Authentication> verify(String token)
+    {
+        int signatureStart = token.lastIndexOf('.');
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 4 || signatureStart < 0)
+        {
+            return Optional.empty();
+        }
+        try
+        {
+            String payload = token.substring(0, signatureStart);
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(parts[3]))
+                    || mClock.instant().getEpochSecond() >= Long.parseLong(parts[1]))
+            {
+                return Optional.empty();
+            }
+            return Optional.of(UsernamePasswordAuthenticationToken.authenticated(
+                    decode(parts[0]), null, AuthorityUtils.commaSeparatedStringToAuthorityList(decode(parts[2]))));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Base64 ou date invalide
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String payload)
+    {
+        return mMac.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String encode(String value)
+    {
+        return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value)
+    {
+        return new String(DECODER.decode(value), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decodeOrGenerate(String secret)
+    {
+        if (secret == null || secret.isBlank())
+        {
+            LOG.warn("sondages.security.token.secret absent : les jetons ne seront valables que sur cette instance");
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            return random;
+        }
+        return Base64.getDecoder().decode(secret.trim());
+    }
+}
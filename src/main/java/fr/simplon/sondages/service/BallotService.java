@@ -0,0 +1,292 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dto.PollResults;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.outbox.ClusterChangeListener;
+import fr.simplon.sondages.tally.ChoiceTally;
+import fr.simplon.sondages.tally.InstantRunoff;
+import fr.simplon.sondages.tally.RankedTally;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Dépouillement des sondages à choix et à classement.
+ * <p>
+ * Le décompte de chaque sondage consulté est gardé en mémoire ({@code sondages.ballots.cache-size} sondages au plus,
+ * les moins récemment consultés sont oubliés en premier) et mis à jour de façon incrémentale : seuls les bulletins
+ * d'identifiant supérieur au dernier bulletin lu sont relus, sur le primaire dans la transaction qui lit le sondage,
+ * en flux JDBC par lots de {@code sondages.ballots.fetch-size} lignes et sans créer d'entité. Le décompte est relu
+ * après chaque bulletin enregistré par cette instance ou par une autre (voir
+ * {@link fr.simplon.sondages.outbox.ClusterChangeFeed}), et au plus tard toutes les
+ * {@code sondages.ballots.refresh-interval}.
+ * </p>
+ * <p>
+ * Un bulletin peut être validé après un bulletin d'identifiant supérieur : comme pour les événements de l'outbox, la
+ * position n'avance que jusqu'aux bulletins de plus de {@code sondages.outbox.gap-timeout}, et les bulletins plus
+ * récents déjà comptés sont mémorisés pour ne pas l'être deux fois.
+ * </p>
+ * <p>
+ * Le vote alternatif n'est recalculé que si de nouveaux bulletins ont été comptés depuis le dernier calcul.
+ * </p>
+ */
+@Service
+public class BallotService implements ClusterChangeListener
+{
+    private final SondageRepository   mRepository;
+    private final JdbcTemplate        mJdbcTemplate;
+    private final TransactionTemplate mPrimary;
+    private final Duration            mGapTimeout;
+    private final long                mRefreshNanos;
+    private final Map<Long, Tally>    mTallies;
+
+    @Autowired
+    public BallotService(
+            SondageRepository pRepository,
+            JdbcTemplate pJdbcTemplate,
+            PlatformTransactionManager pTransactionManager,
+            @Value("${sondages.ballots.cache-size:1000}") int pCacheSize,
+            @Value("${sondages.ballots.fetch-size:1000}") int pFetchSize,
+            @Value("${sondages.ballots.refresh-interval:PT5S}") Duration pRefreshInterval,
+            @Value("${sondages.outbox.gap-timeout:PT5S}") Duration pGapTimeout)
+    {
+        mRepository = pRepository;
+        mJdbcTemplate = new JdbcTemplate(pJdbcTemplate.getDataSource());
+        mJdbcTemplate.setFetchSize(pFetchSize);
+        // Transaction séparée en lecture-écriture : jamais routée vers le réplica, même appelée d'une lecture
+        mPrimary = new TransactionTemplate(pTransactionManager);
+        mPrimary.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        mGapTimeout = pGapTimeout;
+        mRefreshNanos = pRefreshInterval.toNanos();
+        mTallies = new LinkedHashMap<>(Math.min(pCacheSize, 1024), 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Tally> eldest)
+            {
+                return size() > pCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Lit le sondage et ses nouveaux bulletins dans une seule transaction sur le primaire. À appeler hors transaction :
+     * une transaction déjà ouverte garderait sa connexion pendant que celle-ci en prend une seconde.
+     *
+     * @param sondageId L'identifiant d'un sondage à choix ou à classement.
+     * @return Les résultats du sondage, à jour des bulletins validés, vide si le sondage n'existe pas.
+     * @throws IllegalArgumentException Si le sondage est un sondage oui/non.
+     */
+    public Optional<PollResults> results(Long sondageId)
+    {
+        return mPrimary.execute(status -> mRepository.findById(sondageId).map(this::results));
+    }
+
+    private PollResults results(Sondage sondage)
+    {
+        if (sondage.getKind() == Sondage.Kind.YES_NO)
+        {
+            throw new IllegalArgumentException("Le sondage " + sondage.getId() + " est un sondage oui/non");
+        }
+        Tally tally = tally(sondage);
+        synchronized (tally)
+        {
+            refresh(sondage.getId(), tally);
+            return tally.results(sondage);
+        }
+    }
+
+    /**
+     * Prend en compte un bulletin enregistré dans la transaction courante : le décompte du sondage sera relu après la
+     * validation de la transaction.
+     *
+     * @param sondageId L'identifiant du sondage.
+     */
+    public void cast(Long sondageId)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    markDirty(sondageId);
+                }
+            });
+        }
+        else
+        {
+            markDirty(sondageId);
+        }
+    }
+
+    /**
+     * Relit les décomptes des sondages qui ont reçu des bulletins des autres instances, oublie ceux des sondages
+     * supprimés.
+     */
+    @Override
+    public void onRemoteChanges(List<OutboxEvent> events)
+    {
+        for (OutboxEvent event : events)
+        {
+            if (event.getType() == OutboxEvent.Type.BALLOT_CREATED)
+            {
+                markDirty(event.getSondageId());
+            }
+            else if (event.getType() == OutboxEvent.Type.SONDAGE_DELETED)
+            {
+                synchronized (mTallies)
+                {
+                    mTallies.remove(event.getSondageId());
+                }
+            }
+        }
+    }
+
+    private void markDirty(Long sondageId)
+    {
+        Tally tally;
+        synchronized (mTallies)
+        {
+            tally = mTallies.get(sondageId);
+        }
+        if (tally != null)
+        {
+            tally.dirty = true;
+        }
+    }
+
+    private Tally tally(Sondage sondage)
+    {
+        synchronized (mTallies)
+        {
+            return mTallies.computeIfAbsent(sondage.getId(),
+                                            id -> new Tally(sondage.getKind(), sondage.getOptions().size()));
+        }
+    }
+
+    /**
+     * Compte les bulletins validés depuis la dernière lecture (appelé avec le verrou du décompte, dans la transaction
+     * de {@link #results(Long)}).
+     */
+    private void refresh(Long sondageId, Tally tally)
+    {
+        long now = System.nanoTime();
+        if (!tally.dirty && now - tally.refreshedAt < mRefreshNanos)
+        {
+            return;
+        }
+        // Remis à faux avant la lecture : un bulletin validé pendant la lecture redemande une relecture
+        tally.dirty = false;
+        tally.refreshedAt = now;
+        Timestamp settled = Timestamp.valueOf(LocalDateTime.now().minus(mGapTimeout));
+        long[] mark = {tally.mark};
+        boolean[] contiguous = {true};
+        RowCallbackHandler handler = rs -> {
+            long id = rs.getLong(1);
+            if (tally.seen.add(id))
+            {
+                tally.add(rs.getBytes(2));
+            }
+            // Tous les bulletins antérieurs sont validés : la position peut avancer
+            if (contiguous[0] && rs.getTimestamp(3).before(settled))
+            {
+                mark[0] = id;
+            }
+            else
+            {
+                contiguous[0] = false;
+            }
+        };
+        mJdbcTemplate.query("SELECT id, choices, voted_at FROM ballot WHERE id_sondage = ? AND id > ? ORDER BY id",
+                            handler, sondageId, tally.mark);
+        tally.mark = mark[0];
+        tally.seen.headSet(mark[0], true).clear();
+    }
+
+    /**
+     * Décompte en mémoire d'un sondage.
+     */
+    private static final class Tally
+    {
+        private final    Sondage.Kind         kind;
+        private final    ChoiceTally          choices;
+        private final    RankedTally          ranked;
+        /** Identifiants supérieurs à {@code mark} déjà comptés. */
+        private final    NavigableSet<Long>   seen          = new TreeSet<>();
+        private volatile boolean              dirty         = true;
+        /** Identifiant jusqu'auquel tous les bulletins sont comptés. */
+        private          long                 mark;
+        private          long                 refreshedAt;
+        /** Dernier vote alternatif calculé, et nombre de bulletins pris en compte. */
+        private          InstantRunoff.Result runoff;
+        private          long                 runoffBallots = -1L;
+
+        Tally(Sondage.Kind pKind, int pOptionCount)
+        {
+            kind = pKind;
+            choices = pKind == Sondage.Kind.RANKED ? null : new ChoiceTally(pOptionCount);
+            ranked = pKind == Sondage.Kind.RANKED ? new RankedTally(pOptionCount) : null;
+        }
+
+        void add(byte[] ballot)
+        {
+            if (ranked != null)
+            {
+                ranked.add(ballot);
+            }
+            else
+            {
+                choices.add(ballot);
+            }
+        }
+
+        PollResults results(Sondage sondage)
+        {
+            List<String> labels = sondage.getOptions();
+            if (ranked == null)
+            {
+                return new PollResults(sondage.getId(), kind, choices.ballots(), options(labels, choices.counts()),
+                                       null, null);
+            }
+            if (runoffBallots != ranked.ballots())
+            {
+                runoff = InstantRunoff.run(ranked.snapshot());
+                runoffBallots = ranked.ballots();
+            }
+            return new PollResults(sondage.getId(), kind, ranked.ballots(),
+                                   options(labels, runoff.rounds().get(0).counts()),
+                                   runoff.winner() < 0 ? null : runoff.winner(), runoff.rounds());
+        }
+
+        private static List<PollResults.OptionResult> options(List<String> labels, long[] counts)
+        {
+            List<PollResults.OptionResult> options = new ArrayList<>(labels.size());
+            for (int i = 0; i < labels.size(); i++)
+            {
+                options.add(new PollResults.OptionResult(i, labels.get(i), i < counts.length ? counts[i] : 0L));
+            }
+            return options;
+        }
+    }
+}
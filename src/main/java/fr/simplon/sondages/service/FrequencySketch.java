@@ -0,0 +1,99 @@
+package fr.simplon.sondages.service;
+
+/**
+ * Estimation de la fréquence d'accès récente de chaque clé en mémoire constante (count-min sketch, comme le filtre
+ * d'admission TinyLFU).
+ * <p>
+ * Chaque clé a un compteur (plafonné à 15) dans chacune des 4 lignes de la table ; sa fréquence estimée est le plus
+ * petit de ses compteurs. Seuls les plus petits compteurs sont incrémentés, ce qui limite la surestimation due aux
+ * collisions. Après {@code 10 × capacité} accès, tous les compteurs sont divisés par deux : les clés qui ne sont plus
+ * demandées perdent leur fréquence.
+ * </p>
+ * <p>
+ * Les méthodes sont synchronisées : chaque appel ne lit que 4 compteurs.
+ * </p>
+ */
+public class FrequencySketch
+{
+    private static final int    DEPTH     = 4;
+    private static final int    MAX_COUNT = 15;
+    private static final long[] SEEDS     = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+            0xD6E8FEB86659FD93L};
+
+    private final int[] mTable;
+    private final int   mMask;
+    private final int   mSampleSize;
+    private       int   mAdditions;
+
+    /**
+     * @param pCapacity Nombre approximatif de clés distinctes à suivre.
+     */
+    public FrequencySketch(int pCapacity)
+    {
+        int width = Integer.highestOneBit(Math.max(16, pCapacity - 1) << 1);
+        mTable = new int[DEPTH * width];
+        mMask = width - 1;
+        mSampleSize = 10 * Math.max(16, pCapacity);
+    }
+
+    /**
+     * Enregistre un accès à une clé.
+     *
+     * @param key La clé.
+     * @return La fréquence estimée de la clé, accès inclus.
+     */
+    public synchronized int increment(long key)
+    {
+        int min = frequency(key);
+        if (min < MAX_COUNT)
+        {
+            for (int row = 0; row < DEPTH; row++)
+            {
+                int index = index(key, row);
+                if (mTable[index] == min)
+                {
+                    mTable[index]++;
+                }
+            }
+            min++;
+        }
+        if (++mAdditions >= mSampleSize)
+        {
+            reset();
+        }
+        return min;
+    }
+
+    /**
+     * @param key Une clé.
+     * @return La fréquence estimée de la clé (entre 0 et 15).
+     */
+    public synchronized int frequency(long key)
+    {
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++)
+        {
+            min = Math.min(min, mTable[index(key, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * Divise tous les compteurs par deux.
+     */
+    private void reset()
+    {
+        for (int i = 0; i < mTable.length; i++)
+        {
+            mTable[i] >>>= 1;
+        }
+        mAdditions >>>= 1;
+    }
+
+    private int index(long key, int row)
+    {
+        long hash = (key + row) * SEEDS[row];
+        hash ^= hash >>> 32;
+        return row * (mMask + 1) + ((int) hash & mMask);
+    }
+}
@@ -0,0 +1,292 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.outbox.ClusterChangeListener;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Premières pages de la page d'accueil précalculées ({@code sondages.home.snapshot-pages}, taille de page par défaut).
+ * <p>
+ * Deux niveaux sont gardés pour chaque page :
+ * <ul>
+ *     <li>les données du modèle (sondages, décomptes, pagination), utilisées par {@code WebController} pour tous les
+ *     utilisateurs tant qu'aucun sondage n'a changé ;</li>
+ *     <li>le HTML de la page, servi tel quel aux visiteurs anonymes, même s'il est en cours de régénération.</li>
+ * </ul>
+ * Une création, modification ou suppression de sondage invalide les données tout de suite ; un vote ne fait que
+ * demander une régénération. Dans les deux cas, les pages sont régénérées en tâche de fond au plus une fois par
+ * {@code sondages.home.snapshot-debounce}, par une requête HTTP locale, ainsi qu'à la fermeture du prochain sondage
+ * affiché (qui change l'ordre et l'affichage des sondages). Les modifications et votes des autres instances sont
+ * pris en compte de la même façon (voir {@link fr.simplon.sondages.outbox.ClusterChangeFeed}).
+ * </p>
+ */
+@Service
+public class HomePageSnapshots implements ApplicationListener<WebServerInitializedEvent>, ClusterChangeListener
+{
+    /** En-tête des requêtes de régénération, qui contient un jeton propre à cette instance. */
+    public static final String REFRESH_HEADER = "X-Snapshot-Refresh";
+
+    private static final Logger LOG = LoggerFactory.getLogger(HomePageSnapshots.class);
+
+    private final int                         mPages;
+    private final long                        mDebounceMillis;
+    private final String                      mRefreshToken  = UUID.randomUUID().toString();
+    private final AtomicLong                  mGeneration    = new AtomicLong();
+    private final AtomicBoolean               mRefreshQueued = new AtomicBoolean();
+    private final Map<Integer, ModelSnapshot> mModels        = new ConcurrentHashMap<>();
+    private final Map<Integer, Html>          mHtml          = new ConcurrentHashMap<>();
+    private final HttpClient                  mClient        = HttpClient.newBuilder()//
+            .connectTimeout(Duration.ofSeconds(5))//
+            .build();
+    private final ScheduledExecutorService    mScheduler     = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "home-page-snapshots");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int                mPort = -1;
+    private          LocalDateTime      mNextClosing;
+    private          ScheduledFuture<?> mClosingRefresh;
+
+    /**
+     * Données du modèle d'une page.
+     */
+    private record ModelSnapshot(Map<String, Object> attributes, long generation)
+    {
+    }
+
+    /**
+     * HTML d'une page.
+     *
+     * @param body        Le contenu.
+     * @param contentType Le type du contenu (avec l'encodage).
+     */
+    public record Html(byte[] body, String contentType)
+    {
+    }
+
+    @Autowired
+    public HomePageSnapshots(
+            @Value("${sondages.home.snapshot-pages:3}") int pPages,
+            @Value("${sondages.home.snapshot-debounce:PT2S}") Duration pDebounce)
+    {
+        mPages = pPages;
+        mDebounceMillis = pDebounce.toMillis();
+    }
+
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event)
+    {
+        if (mPages > 0)
+        {
+            mPort = event.getWebServer().getPort();
+            requestRefresh(0L);
+        }
+    }
+
+    /**
+     * @param page Un numéro de page (taille de page par défaut).
+     * @return Vrai si la page est précalculée.
+     */
+    public boolean isSnapshotPage(int page)
+    {
+        return page >= 0 && page < mPages;
+    }
+
+    /**
+     * @return La version courante des données, à lire avant de calculer une page à enregistrer.
+     */
+    public long generation()
+    {
+        return mGeneration.get();
+    }
+
+    /**
+     * @param page Un numéro de page.
+     * @return Les attributs du modèle de la page, null s'ils ne sont pas à jour.
+     */
+    public Map<String, Object> model(int page)
+    {
+        ModelSnapshot snapshot = mModels.get(page);
+        return snapshot != null && snapshot.generation() == mGeneration.get() ? snapshot.attributes() : null;
+    }
+
+    /**
+     * Enregistre les attributs du modèle d'une page, s'ils sont encore à jour.
+     *
+     * @param page        Le numéro de la page.
+     * @param attributes  Les attributs du modèle (non modifiables).
+     * @param generation  La version des données lue avant le calcul de la page.
+     * @param nextClosing La date de fermeture du premier sondage ouvert de la page (peut être null).
+     */
+    public void storeModel(int page, Map<String, Object> attributes, long generation, LocalDateTime nextClosing)
+    {
+        if (generation == mGeneration.get())
+        {
+            mModels.put(page, new ModelSnapshot(Map.copyOf(attributes), generation));
+            if (nextClosing != null)
+            {
+                scheduleClosing(nextClosing);
+            }
+        }
+    }
+
+    /**
+     * @param page Un numéro de page.
+     * @return Le HTML de la page (éventuellement en cours de régénération), null s'il n'a pas encore été calculé.
+     */
+    public Html html(int page)
+    {
+        return mHtml.get(page);
+    }
+
+    /**
+     * Enregistre le HTML d'une page, s'il est encore à jour.
+     */
+    public void storeHtml(int page, Html html, long generation)
+    {
+        if (generation == mGeneration.get())
+        {
+            mHtml.put(page, html);
+        }
+    }
+
+    /**
+     * @param headerValue La valeur de l'en-tête {@link #REFRESH_HEADER} d'une requête.
+     * @return Vrai si la requête est une régénération demandée par cette instance.
+     */
+    public boolean isRefreshRequest(String headerValue)
+    {
+        return mRefreshToken.equals(headerValue);
+    }
+
+    /**
+     * Prend en compte une création, modification ou suppression de sondage : les données du modèle ne sont plus
+     * utilisées, le HTML est régénéré en tâche de fond.
+     */
+    public void invalidate()
+    {
+        mGeneration.incrementAndGet();
+        mModels.clear();
+        requestRefresh(mDebounceMillis);
+    }
+
+    /**
+     * Prend en compte un vote : les pages seront régénérées en tâche de fond.
+     */
+    public void voted()
+    {
+        requestRefresh(mDebounceMillis);
+    }
+
+    @Override
+    public void onRemoteChanges(List<OutboxEvent> events)
+    {
+        if (events.stream().anyMatch(e -> e.getType().isSondageChange()))
+        {
+            invalidate();
+        }
+        else
+        {
+            voted();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        mScheduler.shutdownNow();
+    }
+
+    private void requestRefresh(long delayMillis)
+    {
+        if (mPages > 0 && mRefreshQueued.compareAndSet(false, true))
+        {
+            mScheduler.schedule(this::refresh, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void scheduleClosing(LocalDateTime closedAt)
+    {
+        if (mNextClosing != null && !closedAt.isBefore(mNextClosing))
+        {
+            return;
+        }
+        if (mClosingRefresh != null)
+        {
+            mClosingRefresh.cancel(false);
+        }
+        mNextClosing = closedAt;
+        long delay = Math.max(0L, Duration.between(LocalDateTime.now(), closedAt).toMillis()) + 1L;
+        mClosingRefresh = mScheduler.schedule(() -> {
+            synchronized (this)
+            {
+                mNextClosing = null;
+            }
+            invalidate();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Régénère les pages en les demandant au serveur (sans utilisateur connecté).
+     */
+    private void refresh()
+    {
+        mRefreshQueued.set(false);
+        if (mPort < 0)
+        {
+            return;
+        }
+        mGeneration.incrementAndGet();
+        mModels.clear();
+        for (int page = 0; page < mPages; page++)
+        {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + mPort + "/?page=" + page))//
+                    .header(REFRESH_HEADER, mRefreshToken)//
+                    .timeout(Duration.ofSeconds(10))//
+                    .build();
+            try
+            {
+                HttpResponse<Void> response = mClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200)
+                {
+                    LOG.warn("Régénération de la page d'accueil {} : statut {}", page, response.statusCode());
+                }
+            }
+            catch (IOException e)
+            {
+                LOG.warn("Régénération de la page d'accueil {} impossible", page, e);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
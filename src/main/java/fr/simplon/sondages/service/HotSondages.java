@@ -0,0 +1,372 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.SondageClosing;
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.datasource.ReadYourWritesFilter;
+import fr.simplon.sondages.dto.HotSondage;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.outbox.ClusterChangeListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sondages les plus demandés gardés en mémoire avec leurs décomptes et leurs votes.
+ * <p>
+ * Chaque lecture d'un sondage par identifiant ({@code /fragments/sondages/{id}}, {@code /votes/{id}},
+ * {@code /api/sondages/{id}}) est comptée dans un {@link FrequencySketch}. Un sondage lu au moins
+ * {@code sondages.hot.min-frequency} fois récemment entre dans l'ensemble des sondages chauds
+ * ({@code sondages.hot.max-size} au plus) ; quand l'ensemble est plein, il remplace le sondage le moins demandé
+ * seulement s'il est plus demandé que lui (admission TinyLFU). Le résultat de chaque lecture d'un sondage chaud est
+ * gardé jusqu'à la prochaine modification ou au prochain vote (de cette instance ou d'une autre, voir
+ * {@link fr.simplon.sondages.outbox.ClusterChangeFeed}), au plus {@code sondages.hot.ttl} (retard du réplica) ; les
+ * autres lectures, et celles des requêtes qui doivent lire sur le primaire ({@link ReadYourWritesFilter}), passent par
+ * {@link ReadCoalescer}.
+ * </p>
+ * <p>
+ * Les sondages chauds qui ferment dans moins de {@code sondages.hot.prefetch-window} (ou viennent de fermer) sont
+ * relus en tâche de fond : les nombreuses requêtes qui suivent la fermeture trouvent les résultats en mémoire.
+ * Métriques {@code cache.gets} et {@code cache.size} ({@code cache=hot-sondages}) ; l'ensemble est visible sur
+ * {@code /admin/hot-sondages}.
+ * </p>
+ */
+@Service
+public class HotSondages implements ClusterChangeListener
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HotSondages.class);
+
+    private final    ReadCoalescer     mCoalescer;
+    private final    SondageRepository mRepository;
+    private final    FrequencySketch   mSketch;
+    private final    int               mMaxSize;
+    private final    int               mMinFrequency;
+    private final    Duration          mPrefetchWindow;
+    private final    long              mTtlNanos;
+    private final    Map<Long, Pinned> mHot    = new ConcurrentHashMap<>();
+    private final    AtomicLong        mHits   = new AtomicLong();
+    private final    AtomicLong        mMisses = new AtomicLong();
+    /** Fréquence du sondage chaud le moins demandé lors du dernier refus, remise à zéro à chaque relecture. */
+    private volatile int               mAdmissionFloor;
+
+    private record PinnedValue(Object value, long expiresAt)
+    {
+    }
+
+    /**
+     * Résultats des lectures d'un sondage chaud.
+     */
+    private static final class Pinned
+    {
+        private final    Map<String, PinnedValue> values  = new HashMap<>();
+        private final    Map<String, Supplier<?>> loaders = new ConcurrentHashMap<>();
+        private          long                     generation;
+        private volatile LocalDateTime            closedAt;
+
+        /**
+         * @return Le résultat gardé de la lecture, null s'il n'y en a pas ou s'il a expiré.
+         */
+        synchronized Object get(String name)
+        {
+            PinnedValue pinned = values.get(name);
+            return pinned != null && System.nanoTime() - pinned.expiresAt() < 0 ? pinned.value() : null;
+        }
+
+        synchronized long generation()
+        {
+            return generation;
+        }
+
+        /**
+         * Garde le résultat d'une lecture, sauf si le sondage a changé pendant la lecture.
+         */
+        synchronized void store(String name, Object value, long readGeneration, long expiresAt)
+        {
+            if (generation == readGeneration)
+            {
+                values.put(name, new PinnedValue(value, expiresAt));
+            }
+        }
+
+        synchronized void clear()
+        {
+            generation++;
+            values.clear();
+        }
+
+        synchronized List<String> names()
+        {
+            long now = System.nanoTime();
+            return values.entrySet().stream()//
+                    .filter(e -> now - e.getValue().expiresAt() < 0)//
+                    .map(Map.Entry::getKey)//
+                    .sorted()//
+                    .toList();
+        }
+    }
+
+    @Autowired
+    public HotSondages(
+            ReadCoalescer pCoalescer,
+            SondageRepository pRepository,
+            MeterRegistry pRegistry,
+            @Value("${sondages.hot.sketch-size:10000}") int pSketchSize,
+            @Value("${sondages.hot.max-size:100}") int pMaxSize,
+            @Value("${sondages.hot.min-frequency:4}") int pMinFrequency,
+            @Value("${sondages.hot.prefetch-window:PT1M}") Duration pPrefetchWindow,
+            @Value("${sondages.hot.ttl:PT30S}") Duration pTtl)
+    {
+        mCoalescer = pCoalescer;
+        mRepository = pRepository;
+        mSketch = new FrequencySketch(pSketchSize);
+        mMaxSize = pMaxSize;
+        mMinFrequency = pMinFrequency;
+        mPrefetchWindow = pPrefetchWindow;
+        mTtlNanos = pTtl.toNanos();
+        FunctionCounter.builder("cache.gets", mHits, AtomicLong::get)//
+                .tags("cache", "hot-sondages", "result", "hit")//
+                .description("Lectures de sondages chauds trouvées en mémoire")//
+                .register(pRegistry);
+        FunctionCounter.builder("cache.gets", mMisses, AtomicLong::get)//
+                .tags("cache", "hot-sondages", "result", "miss")//
+                .description("Lectures de sondages chauds faites en BDD")//
+                .register(pRegistry);
+        Gauge.builder("cache.size", mHot, Map::size)//
+                .tags("cache", "hot-sondages")//
+                .register(pRegistry);
+    }
+
+    /**
+     * Lecture d'un sondage, gardée en mémoire si le sondage est très demandé.
+     *
+     * @param name   Le nom de la lecture (une par URL).
+     * @param id     L'identifiant du sondage.
+     * @param loader La lecture, exécutée dans une transaction en lecture seule.
+     * @return Le résultat de la lecture.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V load(String name, Long id, Supplier<V> loader)
+    {
+        if (ReadYourWritesFilter.isPrimaryRequired())
+        {
+            // Valeurs gardées éventuellement lues sur le réplica : la requête lit elle-même sur le primaire
+            return mCoalescer.load(name, id, loader);
+        }
+        Pinned pinned = access(id);
+        if (pinned == null)
+        {
+            return mCoalescer.load(name, id, loader);
+        }
+        Object value = pinned.get(name);
+        if (value != null)
+        {
+            mHits.incrementAndGet();
+            return (V) value;
+        }
+        mMisses.incrementAndGet();
+        pinned.loaders.put(name, loader);
+        return (V) load(pinned, name, id, loader);
+    }
+
+    /**
+     * Prend en compte une modification du sondage ou un vote : les lectures gardées sont oubliées à la validation de
+     * la transaction en cours (tout de suite s'il n'y en a pas).
+     *
+     * @param id L'identifiant du sondage.
+     */
+    public void changed(Long id)
+    {
+        afterCommit(() -> {
+            Pinned pinned = mHot.get(id);
+            if (pinned != null)
+            {
+                pinned.clear();
+            }
+        });
+    }
+
+    /**
+     * Prend en compte la suppression d'un sondage.
+     *
+     * @param id L'identifiant du sondage.
+     */
+    public void deleted(Long id)
+    {
+        afterCommit(() -> mHot.remove(id));
+    }
+
+    @Override
+    public void onRemoteChanges(List<OutboxEvent> events)
+    {
+        for (OutboxEvent event : events)
+        {
+            if (event.getType() == OutboxEvent.Type.SONDAGE_DELETED)
+            {
+                deleted(event.getSondageId());
+            }
+            else if (event.getType() != OutboxEvent.Type.BALLOT_CREATED)
+            {
+                changed(event.getSondageId());
+            }
+        }
+    }
+
+    /**
+     * @return Les sondages chauds, du plus demandé au moins demandé.
+     */
+    public List<HotSondage> hotSet()
+    {
+        return mHot.entrySet().stream()//
+                .map(e -> new HotSondage(e.getKey(), mSketch.frequency(e.getKey()), e.getValue().names(),
+                                         e.getValue().closedAt))//
+                .sorted(Comparator.comparingInt(HotSondage::frequency).reversed()
+                                .thenComparing(HotSondage::sondageId))//
+                .toList();
+    }
+
+    /**
+     * Relit les dates de fermeture des sondages chauds, retire ceux qui ont été supprimés et relit les résultats
+     * manquants de ceux qui ferment bientôt ou viennent de fermer.
+     */
+    @Scheduled(fixedDelayString = "${sondages.hot.prefetch-interval:PT5S}")
+    public void prefetch()
+    {
+        mAdmissionFloor = 0;
+        if (mHot.isEmpty())
+        {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Set<Long> existing = new HashSet<>();
+        for (SondageClosing closing : mRepository.findClosingByIds(List.copyOf(mHot.keySet())))
+        {
+            existing.add(closing.sondageId());
+            Pinned pinned = mHot.get(closing.sondageId());
+            if (pinned == null)
+            {
+                continue;
+            }
+            pinned.closedAt = closing.closedAt();
+            if (closing.closedAt().isAfter(now.minus(mPrefetchWindow))
+                    && closing.closedAt().isBefore(now.plus(mPrefetchWindow)))
+            {
+                pinned.loaders.forEach((name, loader) -> {
+                    if (pinned.get(name) == null)
+                    {
+                        try
+                        {
+                            load(pinned, name, closing.sondageId(), loader);
+                        }
+                        catch (RuntimeException e)
+                        {
+                            LOG.debug("Préchargement de {} pour le sondage {} impossible", name,
+                                      closing.sondageId(), e);
+                        }
+                    }
+                });
+            }
+        }
+        mHot.keySet().retainAll(existing);
+    }
+
+    /**
+     * Compte un accès et fait entrer le sondage dans l'ensemble des sondages chauds s'il est assez demandé.
+     *
+     * @return Les lectures gardées du sondage, null s'il n'est pas chaud.
+     */
+    private Pinned access(Long id)
+    {
+        int frequency = mSketch.increment(id);
+        Pinned pinned = mHot.get(id);
+        if (pinned != null || frequency < mMinFrequency || frequency <= mAdmissionFloor)
+        {
+            return pinned;
+        }
+        return admit(id, frequency);
+    }
+
+    private synchronized Pinned admit(Long id, int frequency)
+    {
+        Pinned pinned = mHot.get(id);
+        if (pinned != null)
+        {
+            return pinned;
+        }
+        if (mHot.size() >= mMaxSize)
+        {
+            Long victim = null;
+            int victimFrequency = Integer.MAX_VALUE;
+            for (Long hotId : mHot.keySet())
+            {
+                int hotFrequency = mSketch.frequency(hotId);
+                if (hotFrequency < victimFrequency)
+                {
+                    victim = hotId;
+                    victimFrequency = hotFrequency;
+                }
+            }
+            if (victim == null || victimFrequency >= frequency)
+            {
+                // Les prochains candidats moins demandés sont refusés sans parcourir l'ensemble
+                mAdmissionFloor = victimFrequency;
+                return null;
+            }
+            mHot.remove(victim);
+        }
+        pinned = new Pinned();
+        mHot.put(id, pinned);
+        return pinned;
+    }
+
+    private Object load(Pinned pinned, String name, Long id, Supplier<?> loader)
+    {
+        long generation = pinned.generation();
+        long expiresAt = System.nanoTime() + mTtlNanos;
+        Object value = mCoalescer.load(name, id, loader);
+        // Un sondage absent n'est pas gardé : il peut être créé ensuite
+        if (value != null && !(value instanceof Optional<?> optional && optional.isEmpty()))
+        {
+            pinned.store(name, value, generation, expiresAt);
+        }
+        return value;
+    }
+
+    private static void afterCommit(Runnable action)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    action.run();
+                }
+            });
+        }
+        else
+        {
+            action.run();
+        }
+    }
+}
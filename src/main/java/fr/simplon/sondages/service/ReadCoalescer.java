@@ -0,0 +1,70 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.datasource.ReadYourWritesFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lectures très demandées (un sondage populaire qui vient de fermer) regroupées par {@link SingleFlight} : les
+ * requêtes simultanées pour le même sondage partagent une seule lecture en BDD.
+ * <p>
+ * La lecture est faite dans une transaction en lecture seule (réplica s'il est configuré) ouverte par le premier
+ * appelant ; les autres attendent sans transaction, donc sans occuper de connexion. Une requête qui doit lire sur le
+ * primaire ({@link ReadYourWritesFilter}) fait sa propre lecture : elle ne peut ni recevoir le résultat d'une lecture
+ * sur le réplica, ni partager le sien. Métrique {@code sondages.coalescing.loads{name, result=executed|coalesced}}.
+ * </p>
+ */
+@Service
+public class ReadCoalescer
+{
+    private final TransactionTemplate                       mReadOnly;
+    private final MeterRegistry                             mRegistry;
+    private final Map<String, SingleFlight<Object, Object>> mFlights = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReadCoalescer(PlatformTransactionManager pTransactionManager, MeterRegistry pRegistry)
+    {
+        mReadOnly = new TransactionTemplate(pTransactionManager);
+        mReadOnly.setReadOnly(true);
+        mRegistry = pRegistry;
+    }
+
+    /**
+     * @param name   Le nom de la lecture (une par URL), utilisé dans les métriques.
+     * @param key    L'identifiant lu.
+     * @param loader La lecture.
+     * @return Le résultat de la lecture, éventuellement partagé avec d'autres requêtes.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V load(String name, Object key, Supplier<V> loader)
+    {
+        if (ReadYourWritesFilter.isPrimaryRequired())
+        {
+            return mReadOnly.execute(status -> loader.get());
+        }
+        return (V) mFlights.computeIfAbsent(name, this::register)
+                .load(key, () -> mReadOnly.execute(status -> loader.get()));
+    }
+
+    private SingleFlight<Object, Object> register(String name)
+    {
+        SingleFlight<Object, Object> flight = new SingleFlight<>();
+        FunctionCounter.builder("sondages.coalescing.loads", flight, SingleFlight::executed)//
+                .tags("name", name, "result", "executed")//
+                .description("Lectures exécutées en BDD")//
+                .register(mRegistry);
+        FunctionCounter.builder("sondages.coalescing.loads", flight, SingleFlight::coalesced)//
+                .tags("name", name, "result", "coalesced")//
+                .description("Lectures partagées avec une lecture en cours")//
+                .register(mRegistry);
+        return flight;
+    }
+}
@@ -0,0 +1,85 @@
+package fr.simplon.sondages.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Regroupement des chargements identiques simultanés : le premier appelant pour une clé exécute le chargement, ceux
+ * qui arrivent pendant ce chargement attendent et reçoivent le même résultat (ou la même exception).
+ * <p>
+ * Rien n'est gardé après la fin du chargement : ce n'est pas un cache, un appel qui arrive ensuite recharge.
+ * </p>
+ *
+ * @param <K> Type des clés.
+ * @param <V> Type des résultats, partagés entre les appelants (à ne pas modifier).
+ */
+public class SingleFlight<K, V>
+{
+    private final ConcurrentMap<K, CompletableFuture<V>> mInFlight  = new ConcurrentHashMap<>();
+    private final AtomicLong                             mExecuted  = new AtomicLong();
+    private final AtomicLong                             mCoalesced = new AtomicLong();
+
+    /**
+     * @param key    La clé du chargement.
+     * @param loader Le chargement, exécuté dans le thread appelant s'il n'y en a pas déjà un en cours pour la clé.
+     * @return Le résultat du chargement.
+     */
+    public V load(K key, Supplier<V> loader)
+    {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> current = mInFlight.putIfAbsent(key, mine);
+        if (current != null)
+        {
+            mCoalesced.incrementAndGet();
+            try
+            {
+                return current.join();
+            }
+            catch (CompletionException e)
+            {
+                if (e.getCause() instanceof RuntimeException cause)
+                {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        mExecuted.incrementAndGet();
+        try
+        {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        }
+        catch (RuntimeException | Error e)
+        {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            mInFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return Le nombre de chargements exécutés.
+     */
+    public long executed()
+    {
+        return mExecuted.get();
+    }
+
+    /**
+     * @return Le nombre d'appels qui ont reçu le résultat d'un chargement déjà en cours.
+     */
+    public long coalesced()
+    {
+        return mCoalesced.get();
+    }
+}
@@ -0,0 +1,109 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.outbox.ClusterChangeListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compteur du nombre total de sondages, gardé en mémoire pour éviter un {@code COUNT(*)} à chaque affichage de page.
+ * <p>
+ * Le compteur est incrémenté/décrémenté par les contrôleurs lors des créations et suppressions, et par
+ * {@link fr.simplon.sondages.outbox.ClusterChangeFeed} pour celles des autres instances. Il est relu en BDD quand il
+ * est plus ancien que la durée configurée ({@code sondages.pagination.count-refresh}) pour corriger les écarts
+ * restants (modifications faites directement en BDD).
+ * </p>
+ */
+@Service
+public class SondageCounter implements ClusterChangeListener
+{
+    private static final long UNKNOWN = -1L;
+
+    private final SondageRepository mRepository;
+    private final long              mRefreshNanos;
+    private final AtomicLong        mCount       = new AtomicLong(UNKNOWN);
+    private volatile long           mLoadedAt;
+
+    @Autowired
+    public SondageCounter(
+            SondageRepository pRepository,
+            @Value("${sondages.pagination.count-refresh:PT1M}") Duration pRefresh)
+    {
+        mRepository = pRepository;
+        mRefreshNanos = pRefresh.toNanos();
+    }
+
+    /**
+     * @return Le nombre total de sondages (relu en BDD si la valeur en mémoire est trop ancienne).
+     */
+    public long count()
+    {
+        long count = mCount.get();
+        if (count == UNKNOWN || System.nanoTime() - mLoadedAt > mRefreshNanos)
+        {
+            count = refresh();
+        }
+        return count;
+    }
+
+    /**
+     * Relit le nombre de sondages en BDD.
+     *
+     * @return Le nombre de sondages.
+     */
+    public long refresh()
+    {
+        long count = mRepository.count();
+        mCount.set(count);
+        mLoadedAt = System.nanoTime();
+        return count;
+    }
+
+    /**
+     * Prend en compte la création d'un sondage.
+     */
+    public void increment()
+    {
+        add(1);
+    }
+
+    /**
+     * Prend en compte la suppression d'un sondage.
+     */
+    public void decrement()
+    {
+        add(-1);
+    }
+
+    /**
+     * Prend en compte les créations et suppressions faites par les autres instances.
+     */
+    @Override
+    public void onRemoteChanges(List<OutboxEvent> events)
+    {
+        long delta = 0;
+        for (OutboxEvent event : events)
+        {
+            if (event.getType() == OutboxEvent.Type.SONDAGE_CREATED)
+            {
+                delta++;
+            }
+            else if (event.getType() == OutboxEvent.Type.SONDAGE_DELETED)
+            {
+                delta--;
+            }
+        }
+        add(delta);
+    }
+
+    private void add(long delta)
+    {
+        mCount.updateAndGet(c -> c == UNKNOWN ? UNKNOWN : Math.max(0L, c + delta));
+    }
+}
@@ -0,0 +1,261 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.BallotRepository;
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.dto.DeletionJobStatus;
+import fr.simplon.sondages.outbox.OutboxWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suppression des sondages, de leurs votes et de leurs bulletins.
+ * <p>
+ * Les votes puis les bulletins sont supprimés par lots ({@code sondages.deletion.chunk-size}) avec des {@code DELETE}
+ * ensemblistes, chacun dans sa propre transaction : aucun vote n'est chargé en mémoire et les verrous ne sont tenus que le temps d'un lot.
+ * Le sondage est supprimé à la fin, dans la même transaction que les éventuels votes arrivés pendant la suppression.
+ * </p>
+ * <p>
+ * Si la table des votes est partitionnée ({@link VotePartitionMaintenance} activée) et que le sondage est le dernier
+ * de sa tranche, ses votes ne sont pas effacés : la partition est retirée après la suppression du sondage.
+ * </p>
+ * <p>
+ * Les sondages qui ont plus de {@code sondages.deletion.async-threshold} votes ou bulletins sont supprimés en tâche de fond, une
+ * suppression à la fois ; l'état des tâches est conservé une heure après leur fin.
+ * </p>
+ */
+@Service
+public class SondageDeletionService
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SondageDeletionService.class);
+
+    /** Durée de conservation de l'état d'une tâche terminée. */
+    private static final Duration JOB_RETENTION = Duration.ofHours(1);
+
+    private final SondageRepository        mRepository;
+    private final VoteRepository           mVoteRepository;
+    private final BallotRepository         mBallotRepository;
+    private final SondageSearchService     mSearchService;
+    private final SondageCounter           mCounter;
+    private final HomePageSnapshots        mSnapshots;
+    private final HotSondages              mHotSondages;
+    private final OutboxWriter             mOutbox;
+    private final TransactionTemplate      mTransactionTemplate;
+    private final int                      mChunkSize;
+    private final long                     mAsyncThreshold;
+    /** Maintenance des partitions de la table des votes, null si elle est désactivée. */
+    private final VotePartitionMaintenance mPartitions;
+
+    private final ExecutorService          mExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "sondage-deletion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, DeletionJob> mJobs     = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SondageDeletionService(
+            SondageRepository pRepository,
+            VoteRepository pVoteRepository,
+            BallotRepository pBallotRepository,
+            SondageSearchService pSearchService,
+            SondageCounter pCounter,
+            HomePageSnapshots pSnapshots,
+            HotSondages pHotSondages,
+            OutboxWriter pOutbox,
+            PlatformTransactionManager pTransactionManager,
+            ObjectProvider<VotePartitionMaintenance> pPartitions,
+            @Value("${sondages.deletion.chunk-size:5000}") int pChunkSize,
+            @Value("${sondages.deletion.async-threshold:20000}") long pAsyncThreshold)
+    {
+        mRepository = pRepository;
+        mVoteRepository = pVoteRepository;
+        mBallotRepository = pBallotRepository;
+        mSearchService = pSearchService;
+        mCounter = pCounter;
+        mSnapshots = pSnapshots;
+        mHotSondages = pHotSondages;
+        mOutbox = pOutbox;
+        mTransactionTemplate = new TransactionTemplate(pTransactionManager);
+        mChunkSize = pChunkSize;
+        mAsyncThreshold = pAsyncThreshold;
+        mPartitions = pPartitions.getIfAvailable();
+    }
+
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @return Vrai si le sondage a trop de votes pour être supprimé pendant la requête HTTP.
+     */
+    public boolean requiresAsyncDeletion(Long sondageId)
+    {
+        // Les votes d'une partition retirée ne coûtent rien à supprimer
+        long votes = freedPartition(sondageId).isPresent() ? 0L : mVoteRepository.countBySondageId(sondageId);
+        return votes + mBallotRepository.countBySondageId(sondageId) > mAsyncThreshold;
+    }
+
+    /**
+     * Supprime un sondage et ses votes pendant la requête courante.
+     *
+     * @param sondageId L'identifiant du sondage.
+     * @return Vrai si le sondage existait et a été supprimé.
+     */
+    public boolean delete(Long sondageId)
+    {
+        return delete(sondageId, new AtomicLong());
+    }
+
+    /**
+     * Lance la suppression d'un sondage en tâche de fond.
+     *
+     * @param sondageId L'identifiant du sondage.
+     * @return L'état initial de la tâche de suppression.
+     */
+    public DeletionJobStatus deleteAsync(Long sondageId)
+    {
+        purgeFinishedJobs();
+        DeletionJob job = new DeletionJob(UUID.randomUUID().toString(), sondageId);
+        mJobs.put(job.id, job);
+        mExecutor.execute(() -> {
+            job.state = DeletionJobStatus.State.RUNNING;
+            DeletionJobStatus.State result = DeletionJobStatus.State.DONE;
+            try
+            {
+                delete(sondageId, job.deletedVotes);
+            }
+            catch (RuntimeException e)
+            {
+                LOG.error("Échec de la suppression du sondage {}", sondageId, e);
+                result = DeletionJobStatus.State.FAILED;
+            }
+            job.finishedAt = LocalDateTime.now();
+            job.state = result;
+        });
+        return job.toStatus();
+    }
+
+    /**
+     * @param jobId L'identifiant d'une tâche de suppression.
+     * @return L'état de la tâche, vide si elle n'existe pas (ou plus).
+     */
+    public Optional<DeletionJobStatus> getJob(String jobId)
+    {
+        return Optional.ofNullable(mJobs.get(jobId)).map(DeletionJob::toStatus);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        mExecutor.shutdownNow();
+    }
+
+    private boolean delete(Long sondageId, AtomicLong deletedVotes)
+    {
+        Optional<VotePartitionMaintenance.Partition> freed = freedPartition(sondageId);
+        int deleted;
+        if (freed.isEmpty())
+        {
+            do
+            {
+                deleted = mVoteRepository.deleteChunkBySondageId(sondageId, mChunkSize);
+                deletedVotes.addAndGet(deleted);
+            }
+            while (deleted == mChunkSize);
+        }
+        do
+        {
+            deleted = mBallotRepository.deleteChunkBySondageId(sondageId, mChunkSize);
+            deletedVotes.addAndGet(deleted);
+        }
+        while (deleted == mChunkSize);
+
+        Boolean removed = mTransactionTemplate.execute(status -> {
+            if (freed.isEmpty())
+            {
+                deletedVotes.addAndGet(mVoteRepository.deleteAllBySondageId(sondageId));
+            }
+            deletedVotes.addAndGet(mBallotRepository.deleteAllBySondageId(sondageId));
+            mRepository.deleteOptionsById(sondageId);
+            boolean sondageDeleted = mRepository.deleteInBulkById(sondageId) > 0;
+            if (sondageDeleted)
+            {
+                mOutbox.sondageDeleted(sondageId);
+            }
+            return sondageDeleted;
+        });
+        if (Boolean.TRUE.equals(removed))
+        {
+            freed.ifPresent(this::dropPartition);
+            mSearchService.removeSondage(sondageId);
+            mCounter.decrement();
+            mSnapshots.invalidate();
+            mHotSondages.deleted(sondageId);
+            return true;
+        }
+        return false;
+    }
+
+    private Optional<VotePartitionMaintenance.Partition> freedPartition(Long sondageId)
+    {
+        return mPartitions == null ? Optional.empty() : mPartitions.partitionFreedBy(sondageId);
+    }
+
+    private void dropPartition(VotePartitionMaintenance.Partition partition)
+    {
+        try
+        {
+            mPartitions.dropIfEmpty(partition);
+        }
+        catch (RuntimeException e)
+        {
+            // Les votes restants ne sont plus visibles (sondage supprimé), la maintenance retirera la partition
+            LOG.warn("Partition {} de la table vote non retirée", partition.name(), e);
+        }
+    }
+
+    private void purgeFinishedJobs()
+    {
+        LocalDateTime limit = LocalDateTime.now().minus(JOB_RETENTION);
+        mJobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(limit));
+    }
+
+    /**
+     * Tâche de suppression en cours ou terminée.
+     */
+    private static final class DeletionJob
+    {
+        private final    String                  id;
+        private final    Long                    sondageId;
+        private final    LocalDateTime           startedAt    = LocalDateTime.now();
+        private final    AtomicLong              deletedVotes = new AtomicLong();
+        private volatile DeletionJobStatus.State state        = DeletionJobStatus.State.PENDING;
+        private volatile LocalDateTime           finishedAt;
+
+        DeletionJob(String pId, Long pSondageId)
+        {
+            id = pId;
+            sondageId = pSondageId;
+        }
+
+        DeletionJobStatus toStatus()
+        {
+            return new DeletionJobStatus(id, sondageId, state, deletedVotes.get(), startedAt, finishedAt);
+        }
+    }
+}
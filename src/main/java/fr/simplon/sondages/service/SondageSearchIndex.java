@@ -0,0 +1,504 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.entity.Sondage;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Index inversé en mémoire sur la description et la question des sondages.
+ * <p>
+ * Chaque sondage indexé reçoit un numéro de document dense. Les listes de postings sont des tableaux d'entiers
+ * triés par numéro de document (un nouveau document a toujours le plus grand numéro), accompagnés du poids du terme
+ * dans le document. Une mise à jour supprime l'ancien document (pierre tombale) et en ajoute un nouveau ; les postings
+ * sont compactés quand les pierres tombales dépassent un quart des documents.
+ * </p>
+ * <p>
+ * Les termes sont normalisés pour le français : minuscules, accents supprimés, mots vides ignorés. Un terme de la
+ * question pèse plus qu'un terme de la description. Le score d'un document est la somme des poids de ses termes
+ * pondérés par leur IDF.
+ * </p>
+ */
+public class SondageSearchIndex
+{
+    /** Poids d'un terme trouvé dans la question. */
+    static final int QUESTION_WEIGHT = 2;
+
+    /** Poids d'un terme trouvé dans la description. */
+    static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "au", "aux", "avec", "ce", "ces", "c", "d", "dans", "de", "des", "du", "elle", "en", "est", "et",
+            "il", "ils", "j", "je", "l", "la", "le", "les", "leur", "lui", "m", "ma", "mais", "me", "mes", "n", "ne",
+            "nos", "notre", "nous", "on", "ou", "par", "pas", "pour", "qu", "que", "qui", "s", "sa", "se", "ses",
+            "son", "sur", "t", "ta", "te", "tes", "ton", "tu", "un", "une", "vos", "votre", "vous", "y");
+
+    private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> mPostings       = new HashMap<>();
+    private final Map<Long, Integer>    mDocBySondageId = new HashMap<>();
+    private       long[]                mSondageIdByDoc = new long[1024];
+    private final BitSet                mDeletedDocs    = new BitSet();
+    private       int                   mDocCount;
+    private       int                   mDeletedCount;
+
+    /**
+     * Résultat d'une recherche : une page d'identifiants de sondages classés par pertinence décroissante.
+     *
+     * @param ids        Les identifiants des sondages de la page demandée.
+     * @param totalHits  Le nombre total de sondages correspondant à la recherche.
+     */
+    public record Hits(List<Long> ids, int totalHits)
+    {
+    }
+
+    /**
+     * Ajoute ou remplace un sondage dans l'index.
+     *
+     * @param sondage Le sondage à indexer (doit avoir un identifiant).
+     */
+    public void index(Sondage sondage)
+    {
+        index(sondage.getId(), sondage.getDescription(), sondage.getQuestion());
+    }
+
+    /**
+     * Ajoute ou remplace un sondage dans l'index.
+     *
+     * @param pId          L'identifiant du sondage.
+     * @param pDescription La description du sondage.
+     * @param pQuestion    La question du sondage.
+     */
+    public void index(long pId, String pDescription, String pQuestion)
+    {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String term : tokenize(pDescription))
+        {
+            weights.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(pQuestion))
+        {
+            weights.merge(term, QUESTION_WEIGHT, Integer::sum);
+        }
+
+        mLock.writeLock().lock();
+        try
+        {
+            removeLocked(pId);
+            int doc = mDocCount++;
+            if (doc == mSondageIdByDoc.length)
+            {
+                mSondageIdByDoc = Arrays.copyOf(mSondageIdByDoc, doc * 2);
+            }
+            mSondageIdByDoc[doc] = pId;
+            mDocBySondageId.put(pId, doc);
+            weights.forEach((term, weight) -> mPostings.computeIfAbsent(term, t -> new Postings()).add(doc, weight));
+            compactIfNeeded();
+        }
+        finally
+        {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire un sondage de l'index. Sans effet si le sondage n'est pas indexé.
+     *
+     * @param pId L'identifiant du sondage.
+     */
+    public void remove(long pId)
+    {
+        mLock.writeLock().lock();
+        try
+        {
+            removeLocked(pId);
+            compactIfNeeded();
+        }
+        finally
+        {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vide complètement l'index.
+     */
+    public void clear()
+    {
+        mLock.writeLock().lock();
+        try
+        {
+            mPostings.clear();
+            mDocBySondageId.clear();
+            mSondageIdByDoc = new long[1024];
+            mDeletedDocs.clear();
+            mDocCount = 0;
+            mDeletedCount = 0;
+        }
+        finally
+        {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre de sondages indexés.
+     */
+    public int size()
+    {
+        mLock.readLock().lock();
+        try
+        {
+            return mDocBySondageId.size();
+        }
+        finally
+        {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recherche les sondages correspondant à une requête en texte libre.
+     *
+     * @param pQuery La requête (plusieurs mots possibles, un sondage doit contenir au moins un des mots).
+     * @param pPage  Numéro de la page demandée (commence à 0).
+     * @param pSize  Nombre de résultats par page.
+     * @return Les identifiants des sondages de la page, du plus pertinent au moins pertinent.
+     */
+    public Hits search(String pQuery, int pPage, int pSize)
+    {
+        List<String> terms = tokenize(pQuery).stream().distinct().toList();
+        if (terms.isEmpty() || pSize <= 0 || pPage < 0)
+        {
+            return new Hits(Collections.emptyList(), 0);
+        }
+
+        mLock.readLock().lock();
+        try
+        {
+            int liveDocs = mDocBySondageId.size();
+            boolean hasDeleted = mDeletedCount > 0;
+            List<Postings> matching = new ArrayList<>(terms.size());
+            long postingCount = 0L;
+            for (String term : terms)
+            {
+                Postings postings = mPostings.get(term);
+                if (postings != null)
+                {
+                    matching.add(postings);
+                    postingCount += postings.size;
+                }
+            }
+
+            // Scores des seuls documents touchés par la requête : au plus un par posting
+            DocScores scores = new DocScores((int) Math.min(postingCount, liveDocs));
+            for (Postings postings : matching)
+            {
+                float idf = (float) Math.log(1.0 + (double) liveDocs / postings.size);
+                int[] docs = postings.docs;
+                byte[] weights = postings.weights;
+                for (int i = 0; i < postings.size; i++)
+                {
+                    int doc = docs[i];
+                    if (hasDeleted && mDeletedDocs.get(doc))
+                    {
+                        continue;
+                    }
+                    scores.add(doc, idf * weights[i]);
+                }
+            }
+
+            long start = (long) pPage * pSize;
+            if (start >= scores.size)
+            {
+                return new Hits(Collections.emptyList(), scores.size);
+            }
+
+            // Sélection des (page + 1) * size meilleurs documents avec un tas binaire borné
+            TopDocs top = new TopDocs((int) Math.min(start + pSize, Integer.MAX_VALUE));
+            int[] keys = scores.keys;
+            float[] values = scores.values;
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (keys[i] != 0)
+                {
+                    top.offer(keys[i] - 1, values[i]);
+                }
+            }
+
+            int[] ranked = top.drainDescending();
+            List<Long> ids = new ArrayList<>(pSize);
+            for (int i = (int) start; i < ranked.length; i++)
+            {
+                ids.add(mSondageIdByDoc[ranked[i]]);
+            }
+            return new Hits(ids, scores.size);
+        }
+        finally
+        {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Découpe un texte en termes normalisés : minuscules, sans accents, sans mots vides.
+     *
+     * @param pText Le texte à découper (peut être null).
+     * @return La liste des termes dans l'ordre du texte.
+     */
+    static List<String> tokenize(String pText)
+    {
+        if (pText == null || pText.isBlank())
+        {
+            return Collections.emptyList();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(pText, Normalizer.Form.NFD)).replaceAll("");
+        folded = folded.toLowerCase(Locale.FRENCH).replace("œ", "oe").replace("æ", "ae");
+        List<String> terms = new ArrayList<>();
+        for (String token : SEPARATORS.split(folded))
+        {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token))
+            {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Scores des documents d'une recherche : table à adressage ouvert (sondage linéaire) de numéros de documents vers
+     * des {@code float}, sans objet par document. Dimensionnée dès la création pour rester à moitié vide au plus.
+     */
+    private static final class DocScores
+    {
+        /** Numéro de document + 1, 0 pour une case libre. */
+        private final int[]   keys;
+        private final float[] values;
+        private final int     mask;
+        private       int     size;
+
+        DocScores(int pExpected)
+        {
+            int capacity = Math.max(4, Integer.highestOneBit(Math.max(1, Math.min(pExpected, 1 << 28))) << 2);
+            keys = new int[capacity];
+            values = new float[capacity];
+            mask = capacity - 1;
+        }
+
+        void add(int pDoc, float pScore)
+        {
+            int key = pDoc + 1;
+            int hash = pDoc * 0x9E3779B9;
+            int i = (hash ^ (hash >>> 16)) & mask;
+            while (keys[i] != key)
+            {
+                if (keys[i] == 0)
+                {
+                    keys[i] = key;
+                    size++;
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            values[i] += pScore;
+        }
+    }
+
+    /**
+     * Tas binaire minimum de numéros de documents, borné à {@code limit} éléments, ordonné par score puis par numéro de
+     * document (à score égal, le sondage indexé le plus récemment est considéré comme plus pertinent).
+     */
+    private static final class TopDocs
+    {
+        private final int     limit;
+        private       int[]   heap   = new int[16];
+        private       float[] scores = new float[16];
+        private       int     size;
+
+        TopDocs(int pLimit)
+        {
+            limit = pLimit;
+        }
+
+        void offer(int pDoc, float pScore)
+        {
+            if (size < limit)
+            {
+                if (size == heap.length)
+                {
+                    heap = Arrays.copyOf(heap, (int) Math.min(size * 2L, limit));
+                    scores = Arrays.copyOf(scores, heap.length);
+                }
+                heap[size] = pDoc;
+                scores[size] = pScore;
+                siftUp(size++);
+            }
+            else if (limit > 0 && less(heap[0], scores[0], pDoc, pScore))
+            {
+                heap[0] = pDoc;
+                scores[0] = pScore;
+                siftDown(0);
+            }
+        }
+
+        int[] drainDescending()
+        {
+            int[] result = new int[size];
+            for (int i = result.length - 1; i >= 0; i--)
+            {
+                result[i] = heap[0];
+                size--;
+                heap[0] = heap[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private static boolean less(int a, float scoreA, int b, float scoreB)
+        {
+            return scoreA < scoreB || (scoreA == scoreB && a < b);
+        }
+
+        private void siftUp(int pIndex)
+        {
+            int doc = heap[pIndex];
+            float score = scores[pIndex];
+            while (pIndex > 0)
+            {
+                int parent = (pIndex - 1) >>> 1;
+                if (!less(doc, score, heap[parent], scores[parent]))
+                {
+                    break;
+                }
+                heap[pIndex] = heap[parent];
+                scores[pIndex] = scores[parent];
+                pIndex = parent;
+            }
+            heap[pIndex] = doc;
+            scores[pIndex] = score;
+        }
+
+        private void siftDown(int pIndex)
+        {
+            int doc = heap[pIndex];
+            float score = scores[pIndex];
+            int half = size >>> 1;
+            while (pIndex < half)
+            {
+                int child = 2 * pIndex + 1;
+                if (child + 1 < size && less(heap[child + 1], scores[child + 1], heap[child], scores[child]))
+                {
+                    child++;
+                }
+                if (!less(heap[child], scores[child], doc, score))
+                {
+                    break;
+                }
+                heap[pIndex] = heap[child];
+                scores[pIndex] = scores[child];
+                pIndex = child;
+            }
+            heap[pIndex] = doc;
+            scores[pIndex] = score;
+        }
+    }
+
+    private void removeLocked(long pId)
+    {
+        Integer doc = mDocBySondageId.remove(pId);
+        if (doc != null)
+        {
+            mDeletedDocs.set(doc);
+            mDeletedCount++;
+        }
+    }
+
+    /**
+     * Reconstruit les postings sans les documents supprimés quand ceux-ci représentent plus d'un quart de l'index.
+     * Les numéros de documents sont réattribués en conservant leur ordre.
+     */
+    private void compactIfNeeded()
+    {
+        if (mDeletedCount < 1024 || mDeletedCount * 4 < mDocCount)
+        {
+            return;
+        }
+        int[] newDocs = new int[mDocCount];
+        int next = 0;
+        long[] ids = new long[Math.max(1024, mDocBySondageId.size() * 2)];
+        for (int doc = 0; doc < mDocCount; doc++)
+        {
+            if (mDeletedDocs.get(doc))
+            {
+                newDocs[doc] = -1;
+            }
+            else
+            {
+                newDocs[doc] = next;
+                ids[next] = mSondageIdByDoc[doc];
+                mDocBySondageId.put(ids[next], next);
+                next++;
+            }
+        }
+        mPostings.values().removeIf(postings -> postings.remap(newDocs) == 0);
+        mSondageIdByDoc = ids;
+        mDocCount = next;
+        mDeletedDocs.clear();
+        mDeletedCount = 0;
+    }
+
+    /**
+     * Liste des documents contenant un terme, triée par numéro de document.
+     */
+    private static final class Postings
+    {
+        private int[]  docs    = new int[4];
+        private byte[] weights = new byte[4];
+        private int    size;
+
+        void add(int pDoc, int pWeight)
+        {
+            if (size == docs.length)
+            {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = pDoc;
+            weights[size] = (byte) Math.min(pWeight, Byte.MAX_VALUE);
+            size++;
+        }
+
+        int remap(int[] pNewDocs)
+        {
+            int kept = 0;
+            for (int i = 0; i < size; i++)
+            {
+                int doc = pNewDocs[docs[i]];
+                if (doc >= 0)
+                {
+                    docs[kept] = doc;
+                    weights[kept] = weights[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+}
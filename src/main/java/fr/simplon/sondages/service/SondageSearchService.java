@@ -0,0 +1,164 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.outbox.ClusterChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Recherche plein texte sur les sondages.
+ * <p>
+ * L'index est construit au démarrage de l'application puis tenu à jour par les contrôleurs à chaque création,
+ * modification ou suppression de sondage, et par {@link fr.simplon.sondages.outbox.ClusterChangeFeed} pour celles
+ * des autres instances.
+ * </p>
+ */
+@Service
+public class SondageSearchService implements ClusterChangeListener
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SondageSearchService.class);
+
+    /** Nombre de sondages lus par requête lors de la construction de l'index. */
+    private static final int BATCH_SIZE = 10_000;
+
+    private final SondageSearchIndex mIndex = new SondageSearchIndex();
+    private final SondageRepository  mRepository;
+
+    /**
+     * Résultat d'une recherche.
+     *
+     * @param sondages  Les sondages de la page demandée, du plus pertinent au moins pertinent.
+     * @param totalHits Le nombre total de sondages correspondant à la recherche.
+     */
+    public record Result(List<Sondage> sondages, int totalHits)
+    {
+    }
+
+    @Autowired
+    public SondageSearchService(SondageRepository pRepository)
+    {
+        mRepository = pRepository;
+    }
+
+    /**
+     * Construit l'index à partir de la base de données, par lots ordonnés par identifiant.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild()
+    {
+        long start = System.currentTimeMillis();
+        mIndex.clear();
+        long after = 0L;
+        List<Sondage> batch;
+        do
+        {
+            batch = mRepository.findBatchAfter(after, PageRequest.ofSize(BATCH_SIZE));
+            for (Sondage sondage : batch)
+            {
+                mIndex.index(sondage);
+                after = sondage.getId();
+            }
+        }
+        while (batch.size() == BATCH_SIZE);
+        LOG.info("Index de recherche construit : {} sondages en {} ms", mIndex.size(),
+                 System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Indexe un sondage créé ou modifié.
+     *
+     * @param sondage Le sondage enregistré en BDD.
+     */
+    public void indexSondage(Sondage sondage)
+    {
+        mIndex.index(sondage);
+    }
+
+    /**
+     * Relit un sondage modifié sans passer par l'entité (requête {@code UPDATE} directe) et le réindexe.
+     *
+     * @param id L'identifiant du sondage modifié.
+     */
+    public void reindexSondage(Long id)
+    {
+        mRepository.findById(id).ifPresentOrElse(mIndex::index, () -> mIndex.remove(id));
+    }
+
+    /**
+     * Retire un sondage supprimé de l'index.
+     *
+     * @param id L'identifiant du sondage supprimé.
+     */
+    public void removeSondage(Long id)
+    {
+        mIndex.remove(id);
+    }
+
+    /**
+     * Relit et réindexe les sondages créés, modifiés ou supprimés par les autres instances.
+     */
+    @Override
+    public void onRemoteChanges(List<OutboxEvent> events)
+    {
+        // Dernier événement de chaque sondage
+        Map<Long, OutboxEvent.Type> changes = new LinkedHashMap<>();
+        for (OutboxEvent event : events)
+        {
+            if (event.getType().isSondageChange())
+            {
+                changes.put(event.getSondageId(), event.getType());
+            }
+        }
+        changes.forEach((id, type) -> {
+            if (type == OutboxEvent.Type.SONDAGE_DELETED)
+            {
+                removeSondage(id);
+            }
+            else
+            {
+                reindexSondage(id);
+            }
+        });
+    }
+
+    /**
+     * Recherche les sondages correspondant à une requête.
+     *
+     * @param query La requête en texte libre.
+     * @param page  Le numéro de page (commence à 0).
+     * @param size  Le nombre de résultats par page.
+     * @return Les sondages de la page demandée classés par pertinence.
+     */
+    public Result search(String query, int page, int size)
+    {
+        SondageSearchIndex.Hits hits = mIndex.search(query, page, size);
+        Map<Long, Sondage> byId = mRepository.findAllById(hits.ids()).stream()//
+                .collect(Collectors.toMap(Sondage::getId, Function.identity()));
+
+        // findAllById ne garantit pas l'ordre : on remet les sondages dans l'ordre de pertinence
+        List<Sondage> sondages = new ArrayList<>(hits.ids().size());
+        for (Long id : hits.ids())
+        {
+            Sondage sondage = byId.get(id);
+            if (sondage != null)
+            {
+                sondages.add(sondage);
+            }
+        }
+        return new Result(sondages, hits.totalHits());
+    }
+}
@@ -0,0 +1,191 @@
+package fr.simplon.sondages.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Maintenance des partitions de la table {@code vote} (MySQL), partitionnée par intervalles d'identifiants de sondage
+ * (voir {@code db/upgrade/034-vote-partitions.sql}) : la partition {@code p<N>} contient les votes des sondages
+ * d'identifiant inférieur à N, la partition {@code pmax} ceux des sondages suivants.
+ * <p>
+ * La tâche, lancée selon {@code sondages.votes.partitions.cron} :
+ * <ul>
+ *     <li>découpe {@code pmax} tant qu'elle est vide, pour qu'il reste toujours une partition d'avance (opération
+ *     instantanée sur une partition vide) ;</li>
+ *     <li>supprime les partitions dont tous les sondages ont déjà été supprimés (votes restants d'une suppression
+ *     interrompue, ou d'une partition que {@link SondageDeletionService} n'a pas pu retirer) : un
+ *     {@code DROP PARTITION} libère l'espace en temps constant, sans {@code DELETE}. Aucun sondage, bulletin ni
+ *     option n'est supprimé ici.</li>
+ * </ul>
+ * {@link SondageDeletionService} retire aussi la partition du dernier sondage supprimé d'une tranche
+ * ({@link #partitionFreedBy(long)}), au lieu d'effacer ses votes par lots.
+ * Désactivée par défaut ({@code sondages.votes.partitions.maintenance.enabled}).
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "sondages.votes.partitions.maintenance.enabled", havingValue = "true")
+public class VotePartitionMaintenance
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VotePartitionMaintenance.class);
+
+    private static final String MAX_PARTITION = "pmax";
+
+    private final JdbcTemplate mJdbcTemplate;
+    private final long         mPartitionSize;
+
+    /**
+     * Partition de la table des votes : sondages d'identifiant compris entre {@code from} (inclus) et {@code to}
+     * (exclu).
+     */
+    record Partition(String name, long from, long to)
+    {
+    }
+
+    @Autowired
+    public VotePartitionMaintenance(
+            JdbcTemplate pJdbcTemplate,
+            @Value("${sondages.votes.partitions.size:10000}") long pPartitionSize)
+    {
+        mJdbcTemplate = pJdbcTemplate;
+        mPartitionSize = pPartitionSize;
+    }
+
+    @Scheduled(cron = "${sondages.votes.partitions.cron:0 30 3 * * *}")
+    public void maintain()
+    {
+        List<Partition> partitions = readPartitions();
+        if (partitions.isEmpty())
+        {
+            LOG.warn("La table vote n'est pas partitionnée, voir db/upgrade/034-vote-partitions.sql");
+            return;
+        }
+        long maxSondageId = maxSondageId();
+        addPartitions(partitions, maxSondageId);
+        dropDeletedPartitions(partitions, maxSondageId);
+    }
+
+    /**
+     * @return Les partitions bornées de la table des votes (sans {@code pmax}), dans l'ordre.
+     */
+    List<Partition> readPartitions()
+    {
+        List<String[]> rows = mJdbcTemplate.query(
+                "SELECT partition_name, partition_description FROM information_schema.partitions "
+                        + "WHERE table_schema = DATABASE() AND table_name = 'vote' AND partition_name IS NOT NULL "
+                        + "ORDER BY partition_ordinal_position",
+                (rs, i) -> new String[]{rs.getString(1), rs.getString(2)});
+        List<Partition> partitions = new ArrayList<>(rows.size());
+        long from = 0L;
+        for (String[] row : rows)
+        {
+            if (!MAX_PARTITION.equals(row[0]))
+            {
+                long to = Long.parseLong(row[1]);
+                partitions.add(new Partition(row[0], from, to));
+                from = to;
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * @param sondageId L'identifiant d'un sondage sur le point d'être supprimé.
+     * @return La partition où il ne restera aucun sondage après sa suppression, vide si d'autres sondages y restent ou
+     * si la tranche peut encore en recevoir de nouveaux.
+     */
+    Optional<Partition> partitionFreedBy(long sondageId)
+    {
+        long maxSondageId = maxSondageId();
+        for (Partition partition : readPartitions())
+        {
+            if (sondageId >= partition.from() && sondageId < partition.to())
+            {
+                if (partition.to() > maxSondageId)
+                {
+                    return Optional.empty();
+                }
+                Long others = mJdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM sondage WHERE id >= ? AND id < ? AND id <> ?", Long.class,
+                        partition.from(), partition.to(), sondageId);
+                return others != null && others == 0L ? Optional.of(partition) : Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Retire une partition de la table des votes s'il ne reste aucun sondage dans sa tranche.
+     *
+     * @param partition La partition.
+     * @return Vrai si la partition a été retirée.
+     */
+    boolean dropIfEmpty(Partition partition)
+    {
+        Long remaining = mJdbcTemplate.queryForObject("SELECT COUNT(*) FROM sondage WHERE id >= ? AND id < ?",
+                                                      Long.class, partition.from(), partition.to());
+        if (remaining == null || remaining != 0L)
+        {
+            return false;
+        }
+        mJdbcTemplate.execute("ALTER TABLE vote DROP PARTITION " + partition.name());
+        LOG.info("Partition {} des sondages supprimés retirée de la table vote", partition.name());
+        return true;
+    }
+
+    private long maxSondageId()
+    {
+        return mJdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM sondage", Long.class);
+    }
+
+    /**
+     * Découpe {@code pmax} jusqu'à ce qu'une partition entière reste libre au-delà du dernier sondage. Le découpage
+     * n'est instantané que si {@code pmax} est vide : sinon ses votes seraient recopiés table verrouillée, il est donc
+     * refusé.
+     */
+    private void addPartitions(List<Partition> partitions, long maxSondageId)
+    {
+        long upper = partitions.isEmpty() ? 0L : partitions.get(partitions.size() - 1).to();
+        while (upper <= maxSondageId + mPartitionSize)
+        {
+            Boolean used = mJdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM vote PARTITION (" + MAX_PARTITION + "))", Boolean.class);
+            if (!Boolean.FALSE.equals(used))
+            {
+                LOG.warn("La partition {} de la table vote contient des votes (sondages d'identifiant {} ou plus) : "
+                                 + "découpage refusé, à faire application arrêtée", MAX_PARTITION, upper);
+                return;
+            }
+            upper += mPartitionSize;
+            mJdbcTemplate.execute("ALTER TABLE vote REORGANIZE PARTITION " + MAX_PARTITION + " INTO (PARTITION p"
+                                          + upper + " VALUES LESS THAN (" + upper + "), PARTITION " + MAX_PARTITION
+                                          + " VALUES LESS THAN MAXVALUE)");
+            LOG.info("Partition p{} ajoutée à la table vote", upper);
+        }
+    }
+
+    /**
+     * Supprime les partitions dont il ne reste aucun sondage.
+     */
+    private void dropDeletedPartitions(List<Partition> partitions, long maxSondageId)
+    {
+        for (Partition partition : partitions)
+        {
+            // La partition du dernier sondage peut encore recevoir de nouveaux sondages
+            if (partition.to() > maxSondageId)
+            {
+                break;
+            }
+            dropIfEmpty(partition);
+        }
+    }
+}
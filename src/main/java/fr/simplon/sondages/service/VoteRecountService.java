@@ -0,0 +1,346 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dto.RecountJobStatus;
+import fr.simplon.sondages.dto.VoteTally;
+import fr.simplon.sondages.tally.VoteCountMap;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recomptage des votes, lancé par un administrateur : vérifie que les décomptes servis par {@link VoteTallyService}
+ * correspondent aux lignes de la table {@code vote}, et les corrige après un incident.
+ * <p>
+ * La table est lue par intervalles d'identifiants de votes ({@code sondages.recount.range-size}), en parallèle dans un
+ * pool fork/join de {@code sondages.recount.parallelism} fils (pas plus que de connexions disponibles). Chaque
+ * intervalle est lu sur le primaire en flux JDBC ({@code sondages.recount.fetch-size} lignes par aller-retour), sans
+ * entité ni contexte de persistance, et compté dans une {@link VoteCountMap} ; les tables sont fusionnées en remontant
+ * les tâches.
+ * </p>
+ * <p>
+ * Les décomptes servis sont comparés pour chaque sondage recompté et pour chaque sondage dont un décompte est gardé en
+ * mémoire. Seuls les votes existant au lancement sont lus : quand un décompte servi diffère du recomptage, les votes
+ * arrivés depuis sont ajoutés et le décompte servi est relu avant de signaler une différence. Un décompte lu sur un réplica en
+ * retard est aussi signalé. Avec correction, les décomptes différents sont oubliés sur cette instance (recalculés à la
+ * lecture suivante), ainsi que les lectures des sondages concernés gardées en mémoire et la page d'accueil.
+ * </p>
+ * <p>
+ * Un seul recomptage à la fois ; l'état des tâches est conservé une heure après leur fin.
+ * </p>
+ */
+@Service
+public class VoteRecountService
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VoteRecountService.class);
+
+    /** Durée de conservation de l'état d'une tâche terminée. */
+    private static final Duration JOB_RETENTION = Duration.ofHours(1);
+
+    /** Nombre maximum de différences détaillées dans l'état d'une tâche. */
+    private static final int MAX_REPORTED_DIFFERENCES = 1000;
+
+    /** Nombre de sondages dont les décomptes servis sont lus ensemble. */
+    private static final int COMPARE_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate      mJdbcTemplate;
+    private final VoteTallyService  mTallyService;
+    private final HotSondages       mHotSondages;
+    private final HomePageSnapshots mSnapshots;
+    private final int               mParallelism;
+    private final long              mRangeSize;
+
+    private final ExecutorService         mExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "vote-recount");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, RecountJob> mJobs     = new ConcurrentHashMap<>();
+
+    @Autowired
+    public VoteRecountService(
+            JdbcTemplate pJdbcTemplate,
+            VoteTallyService pTallyService,
+            HotSondages pHotSondages,
+            HomePageSnapshots pSnapshots,
+            @Value("${sondages.recount.parallelism:4}") int pParallelism,
+            @Value("${sondages.recount.range-size:1000000}") long pRangeSize,
+            @Value("${sondages.recount.fetch-size:10000}") int pFetchSize)
+    {
+        mJdbcTemplate = new JdbcTemplate(pJdbcTemplate.getDataSource());
+        mJdbcTemplate.setFetchSize(pFetchSize);
+        mTallyService = pTallyService;
+        mHotSondages = pHotSondages;
+        mSnapshots = pSnapshots;
+        mParallelism = Math.max(1, pParallelism);
+        mRangeSize = Math.max(1L, pRangeSize);
+    }
+
+    /**
+     * Lance un recomptage en tâche de fond.
+     *
+     * @param fix Vrai pour corriger les décomptes différents, faux pour seulement les signaler.
+     * @return L'état initial de la tâche, vide si un recomptage est déjà en cours (voir {@link #current()}).
+     */
+    public synchronized Optional<RecountJobStatus> start(boolean fix)
+    {
+        if (current().isPresent())
+        {
+            return Optional.empty();
+        }
+        purgeFinishedJobs();
+        RecountJob job = new RecountJob(UUID.randomUUID().toString(), fix);
+        mJobs.put(job.id, job);
+        mExecutor.execute(() -> {
+            job.state = RecountJobStatus.State.RUNNING;
+            RecountJobStatus.State result = RecountJobStatus.State.DONE;
+            try
+            {
+                recount(job);
+            }
+            catch (RuntimeException e)
+            {
+                LOG.error("Échec du recomptage des votes", e);
+                result = RecountJobStatus.State.FAILED;
+            }
+            job.finishedAt = LocalDateTime.now();
+            job.state = result;
+        });
+        return Optional.of(job.toStatus());
+    }
+
+    /**
+     * @return Le recomptage en attente ou en cours, vide s'il n'y en a pas.
+     */
+    public Optional<RecountJobStatus> current()
+    {
+        return mJobs.values().stream()//
+                .filter(job -> job.finishedAt == null)//
+                .findFirst()//
+                .map(RecountJob::toStatus);
+    }
+
+    /**
+     * @param jobId L'identifiant d'un recomptage.
+     * @return L'état du recomptage, vide s'il n'existe pas (ou plus).
+     */
+    public Optional<RecountJobStatus> getJob(String jobId)
+    {
+        return Optional.ofNullable(mJobs.get(jobId)).map(RecountJob::toStatus);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        mExecutor.shutdownNow();
+    }
+
+    private void recount(RecountJob job)
+    {
+        long[] bounds = mJdbcTemplate.queryForObject("SELECT COALESCE(MIN(id), 0), COALESCE(MAX(id), 0) FROM vote",
+                                                     (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long maxId = bounds[1];
+        ForkJoinPool pool = new ForkJoinPool(mParallelism);
+        VoteCountMap counts;
+        try
+        {
+            counts = pool.invoke(new RangeTask(job, bounds[0], maxId + 1));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        job.sondages = counts.size();
+        LOG.info("{} votes recomptés pour {} sondages", job.scannedVotes.sum(), counts.size());
+
+        List<Long> batch = new ArrayList<>(COMPARE_BATCH_SIZE);
+        counts.forEach((id, countTrue, countFalse) -> {
+            batch.add(id);
+            if (batch.size() == COMPARE_BATCH_SIZE)
+            {
+                compare(job, counts, batch, maxId);
+                batch.clear();
+            }
+        });
+        compare(job, counts, batch, maxId);
+        batch.clear();
+
+        // Décomptes en mémoire de sondages dont aucun vote n'a été relu (tous leurs votes ont disparu)
+        for (Long id : mTallyService.cachedIds())
+        {
+            if (counts.countTrue(id) == 0L && counts.countFalse(id) == 0L)
+            {
+                batch.add(id);
+                if (batch.size() == COMPARE_BATCH_SIZE)
+                {
+                    compare(job, counts, batch, maxId);
+                    batch.clear();
+                }
+            }
+        }
+        compare(job, counts, batch, maxId);
+        if (job.fix && job.differenceCount.get() > 0L)
+        {
+            mSnapshots.invalidate();
+        }
+    }
+
+    /**
+     * Compare les décomptes servis de quelques sondages au recomptage.
+     */
+    private void compare(RecountJob job, VoteCountMap counts, List<Long> ids, long maxId)
+    {
+        if (ids.isEmpty())
+        {
+            return;
+        }
+        Map<Long, VoteTally> served = mTallyService.served(ids);
+        for (Long id : ids)
+        {
+            VoteTally recounted = new VoteTally(counts.countTrue(id), counts.countFalse(id));
+            if (!recounted.equals(served.getOrDefault(id, VoteTally.EMPTY)))
+            {
+                // Votes enregistrés depuis le lancement, puis décompte servi relu après eux
+                recounted = plusLaterVotes(id, recounted, maxId);
+                VoteTally current = mTallyService.served(List.of(id)).getOrDefault(id, VoteTally.EMPTY);
+                if (!recounted.equals(current))
+                {
+                    job.addDifference(new RecountJobStatus.Difference(id, recounted, current));
+                    if (job.fix)
+                    {
+                        mTallyService.forget(List.of(id));
+                        mHotSondages.changed(id);
+                    }
+                }
+            }
+        }
+    }
+
+    private VoteTally plusLaterVotes(Long sondageId, VoteTally recounted, long maxId)
+    {
+        VoteTally[] tally = {recounted};
+        RowCallbackHandler handler = rs -> {
+            tally[0] = tally[0].plus(rs.getBoolean(1), rs.getLong(2));
+        };
+        mJdbcTemplate.query("SELECT value, COUNT(*) FROM vote WHERE id_sondage = ? AND id > ? GROUP BY value",
+                            handler, sondageId, maxId);
+        return tally[0];
+    }
+
+    private void purgeFinishedJobs()
+    {
+        LocalDateTime limit = LocalDateTime.now().minus(JOB_RETENTION);
+        mJobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(limit));
+    }
+
+    /**
+     * Recomptage des votes d'identifiant compris entre {@code from} (inclus) et {@code to} (exclu), découpé en
+     * intervalles de {@code sondages.recount.range-size} votes.
+     */
+    private final class RangeTask extends RecursiveTask<VoteCountMap>
+    {
+        private final RecountJob mJob;
+        private final long       mFrom;
+        private final long       mTo;
+
+        RangeTask(RecountJob pJob, long pFrom, long pTo)
+        {
+            mJob = pJob;
+            mFrom = pFrom;
+            mTo = pTo;
+        }
+
+        @Override
+        protected VoteCountMap compute()
+        {
+            if (mTo - mFrom > mRangeSize)
+            {
+                long middle = mFrom + (mTo - mFrom) / 2;
+                RangeTask left = new RangeTask(mJob, mFrom, middle);
+                left.fork();
+                VoteCountMap right = new RangeTask(mJob, middle, mTo).compute();
+                VoteCountMap counts = left.join();
+                // La plus petite table est ajoutée à la plus grande
+                if (counts.size() < right.size())
+                {
+                    right.addAll(counts);
+                    return right;
+                }
+                counts.addAll(right);
+                return counts;
+            }
+
+            VoteCountMap counts = new VoteCountMap();
+            RowCallbackHandler handler = rs -> {
+                counts.add(rs.getLong(1), rs.getBoolean(2), 1L);
+                mJob.scannedVotes.increment();
+            };
+            mJdbcTemplate.query("SELECT id_sondage, value FROM vote WHERE id >= ? AND id < ?", handler, mFrom, mTo);
+            return counts;
+        }
+    }
+
+    /**
+     * Recomptage en cours ou terminé.
+     */
+    private static final class RecountJob
+    {
+        private final    String                            id;
+        private final    boolean                           fix;
+        private final    LocalDateTime                     startedAt       = LocalDateTime.now();
+        private final    LongAdder                         scannedVotes    = new LongAdder();
+        private final    AtomicLong                        differenceCount = new AtomicLong();
+        private final    List<RecountJobStatus.Difference> differences     = new ArrayList<>();
+        private volatile long                              sondages;
+        private volatile RecountJobStatus.State            state           = RecountJobStatus.State.PENDING;
+        private volatile LocalDateTime                     finishedAt;
+
+        RecountJob(String pId, boolean pFix)
+        {
+            id = pId;
+            fix = pFix;
+        }
+
+        void addDifference(RecountJobStatus.Difference difference)
+        {
+            differenceCount.incrementAndGet();
+            synchronized (differences)
+            {
+                if (differences.size() < MAX_REPORTED_DIFFERENCES)
+                {
+                    differences.add(difference);
+                }
+            }
+        }
+
+        RecountJobStatus toStatus()
+        {
+            List<RecountJobStatus.Difference> reported;
+            synchronized (differences)
+            {
+                reported = List.copyOf(differences);
+            }
+            return new RecountJobStatus(id, state, fix, scannedVotes.sum(), sondages, differenceCount.get(),
+                                        reported, startedAt, finishedAt);
+        }
+    }
+}
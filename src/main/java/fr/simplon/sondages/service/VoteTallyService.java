@@ -0,0 +1,266 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.VoteCount;
+import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.dto.VoteTally;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.outbox.ClusterChangeListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Décompte des votes des sondages, calculé par des requêtes d'agrégation (sans charger les entités
+ * {@link fr.simplon.sondages.entity.Vote}).
+ * <p>
+ * Les décomptes sont gardés en mémoire ({@code sondages.votes.tally-cache-size} sondages au plus). Celui d'un sondage
+ * est oublié après chaque vote enregistré par cette instance (à la validation de la transaction) ou par une autre
+ * instance (voir {@link fr.simplon.sondages.outbox.ClusterChangeFeed}), et au plus tard après
+ * {@code sondages.votes.tally-cache-ttl}, qui borne aussi le retard d'un décompte lu sur le réplica. Métrique
+ * {@code cache.gets} ({@code cache=tallies}).
+ * </p>
+ */
+@Service
+public class VoteTallyService implements ClusterChangeListener
+{
+    /** Nombre maximum d'identifiants dans une clause IN. */
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final VoteRepository         mVoteRepository;
+    private final long                   mTtlNanos;
+    private final Map<Long, CachedTally> mCache;
+    /** Incrémenté à chaque oubli : un décompte lu pendant un vote n'est pas gardé. */
+    private final AtomicLong             mGeneration = new AtomicLong();
+    private final AtomicLong             mHits       = new AtomicLong();
+    private final AtomicLong             mMisses     = new AtomicLong();
+
+    private record CachedTally(VoteTally tally, long expiresAt)
+    {
+    }
+
+    @Autowired
+    public VoteTallyService(
+            VoteRepository pVoteRepository,
+            MeterRegistry pRegistry,
+            @Value("${sondages.votes.tally-cache-size:10000}") int pCacheSize,
+            @Value("${sondages.votes.tally-cache-ttl:PT30S}") Duration pTtl)
+    {
+        mVoteRepository = pVoteRepository;
+        mTtlNanos = pTtl.toNanos();
+        mCache = new LinkedHashMap<>(Math.min(pCacheSize, 1024), 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedTally> eldest)
+            {
+                return size() > pCacheSize;
+            }
+        };
+        FunctionCounter.builder("cache.gets", mHits, AtomicLong::get)//
+                .tags("cache", "tallies", "result", "hit")//
+                .description("Décomptes trouvés dans le cache")//
+                .register(pRegistry);
+        FunctionCounter.builder("cache.gets", mMisses, AtomicLong::get)//
+                .tags("cache", "tallies", "result", "miss")//
+                .description("Décomptes calculés en BDD")//
+                .register(pRegistry);
+    }
+
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @return Le décompte des votes du sondage.
+     */
+    public VoteTally tally(Long sondageId)
+    {
+        return tallies(List.of(sondageId)).getOrDefault(sondageId, VoteTally.EMPTY);
+    }
+
+    /**
+     * @param sondageIds Les identifiants de plusieurs sondages.
+     * @return Le décompte des votes de chaque sondage ayant au moins un vote.
+     */
+    public Map<Long, VoteTally> tallies(Collection<Long> sondageIds)
+    {
+        Map<Long, VoteTally> tallies = new HashMap<>();
+        long now = System.nanoTime();
+        List<Long> missing = readCache(sondageIds, tallies, now);
+        mHits.addAndGet(sondageIds.size() - missing.size());
+        if (missing.isEmpty())
+        {
+            return tallies;
+        }
+
+        mMisses.addAndGet(missing.size());
+        long generation = mGeneration.get();
+        Map<Long, VoteTally> loaded = load(missing);
+        tallies.putAll(loaded);
+        synchronized (mCache)
+        {
+            if (mGeneration.get() == generation)
+            {
+                for (Long id : missing)
+                {
+                    mCache.put(id, new CachedTally(loaded.getOrDefault(id, VoteTally.EMPTY), now + mTtlNanos));
+                }
+            }
+        }
+        return tallies;
+    }
+
+    /**
+     * Prend en compte un vote : le décompte du sondage est oublié à la validation de la transaction en cours (tout de
+     * suite s'il n'y en a pas).
+     *
+     * @param sondageId L'identifiant du sondage.
+     */
+    public void voted(Long sondageId)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    evict(List.of(sondageId));
+                }
+            });
+        }
+        else
+        {
+            evict(List.of(sondageId));
+        }
+    }
+
+    /**
+     * Décomptes tels qu'ils seraient servis maintenant, sans les ajouter au cache ni aux métriques : valeur gardée en
+     * mémoire si elle existe, calcul en BDD sinon. Utilisé pour vérifier les décomptes sans évincer du cache les
+     * sondages consultés.
+     *
+     * @param sondageIds Les identifiants de plusieurs sondages.
+     * @return Le décompte des votes de chaque sondage ayant au moins un vote.
+     */
+    public Map<Long, VoteTally> served(Collection<Long> sondageIds)
+    {
+        Map<Long, VoteTally> tallies = new HashMap<>();
+        long now = System.nanoTime();
+        List<Long> missing = readCache(sondageIds, tallies, now);
+        if (!missing.isEmpty())
+        {
+            tallies.putAll(load(missing));
+        }
+        return tallies;
+    }
+
+    /**
+     * @return Les sondages dont un décompte non vide est gardé en mémoire (non expiré).
+     */
+    public List<Long> cachedIds()
+    {
+        long now = System.nanoTime();
+        List<Long> ids = new ArrayList<>();
+        synchronized (mCache)
+        {
+            mCache.forEach((id, cached) -> {
+                if (now - cached.expiresAt() < 0 && !cached.tally().equals(VoteTally.EMPTY))
+                {
+                    ids.add(id);
+                }
+            });
+        }
+        return ids;
+    }
+
+    /**
+     * Oublie tout de suite les décomptes de plusieurs sondages (décomptes faux trouvés par un recomptage).
+     *
+     * @param sondageIds Les identifiants des sondages.
+     */
+    public void forget(Collection<Long> sondageIds)
+    {
+        evict(sondageIds);
+    }
+
+    /**
+     * Oublie les décomptes des sondages qui ont reçu des votes ou ont été supprimés par les autres instances.
+     */
+    @Override
+    public void onRemoteChanges(List<OutboxEvent> events)
+    {
+        evict(events.stream()//
+                      .filter(e -> e.getType() == OutboxEvent.Type.VOTE_CREATED
+                              || e.getType() == OutboxEvent.Type.SONDAGE_DELETED)//
+                      .map(OutboxEvent::getSondageId)//
+                      .distinct()//
+                      .toList());
+    }
+
+    private void evict(Collection<Long> sondageIds)
+    {
+        if (sondageIds.isEmpty())
+        {
+            return;
+        }
+        synchronized (mCache)
+        {
+            mGeneration.incrementAndGet();
+            sondageIds.forEach(mCache::remove);
+        }
+    }
+
+    /**
+     * Copie les décomptes en mémoire et non expirés dans {@code tallies}.
+     *
+     * @return Les sondages dont le décompte n'est pas en mémoire.
+     */
+    private List<Long> readCache(Collection<Long> sondageIds, Map<Long, VoteTally> tallies, long now)
+    {
+        List<Long> missing = new ArrayList<>();
+        synchronized (mCache)
+        {
+            for (Long id : sondageIds)
+            {
+                CachedTally cached = mCache.get(id);
+                if (cached != null && now - cached.expiresAt() < 0)
+                {
+                    if (!cached.tally().equals(VoteTally.EMPTY))
+                    {
+                        tallies.put(id, cached.tally());
+                    }
+                }
+                else
+                {
+                    missing.add(id);
+                }
+            }
+        }
+        return missing;
+    }
+
+    private Map<Long, VoteTally> load(List<Long> ids)
+    {
+        Map<Long, VoteTally> tallies = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY)
+        {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+            for (VoteCount count : mVoteRepository.countBySondageIds(chunk))
+            {
+                tallies.merge(count.sondageId(), VoteTally.EMPTY.plus(count.value(), count.count()),
+                              (a, b) -> new VoteTally(a.countTrue() + b.countTrue(), a.countFalse() + b.countFalse()));
+            }
+        }
+        return tallies;
+    }
+}
@@ -0,0 +1,104 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.VoterRepository;
+import fr.simplon.sondages.entity.Voter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Correspondance nom → identifiant des votants, utilisée à chaque vote.
+ * <p>
+ * Les identifiants des votants récents sont gardés en mémoire (au plus {@code sondages.voters.cache-size}, les moins
+ * récemment utilisés sont oubliés en premier) : un votant connu ne coûte aucune requête. Un identifiant ne change
+ * jamais, le cache n'a donc pas besoin d'être invalidé ; il n'y est ajouté qu'à la validation de la transaction.
+ * </p>
+ */
+@Service
+public class VoterDirectory
+{
+    private final VoterRepository       mRepository;
+    private final Map<String, Integer> mCache;
+
+    @Autowired
+    public VoterDirectory(VoterRepository pRepository, @Value("${sondages.voters.cache-size:10000}") int pCacheSize)
+    {
+        mRepository = pRepository;
+        mCache = new LinkedHashMap<>(Math.min(pCacheSize, 1024), 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest)
+            {
+                return size() > pCacheSize;
+            }
+        };
+    }
+
+    /**
+     * @param name Le nom d'un votant.
+     * @return L'identifiant du votant, créé s'il n'a jamais voté.
+     */
+    public Integer idOf(String name)
+    {
+        Integer id;
+        synchronized (mCache)
+        {
+            id = mCache.get(name);
+        }
+        if (id == null)
+        {
+            id = mRepository.findIdByName(name).orElseGet(() -> {
+                // Si une autre transaction crée le même votant, INSERT IGNORE attend sa validation et ne fait rien
+                mRepository.insertIfAbsent(name);
+                return mRepository.findIdByNameForUpdate(name).orElseThrow();
+            });
+            cacheAfterCommit(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Garde l'identifiant en mémoire une fois la transaction courante validée : si elle est annulée, le votant créé par
+     * {@link VoterRepository#insertIfAbsent} n'existe pas et son identifiant ne doit pas être réutilisé.
+     */
+    private void cacheAfterCommit(String name, Integer id)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    cache(name, id);
+                }
+            });
+        }
+        else
+        {
+            cache(name, id);
+        }
+    }
+
+    private void cache(String name, Integer id)
+    {
+        synchronized (mCache)
+        {
+            mCache.put(name, id);
+        }
+    }
+
+    /**
+     * @param name Le nom d'un votant.
+     * @return Une référence au votant, sans le charger depuis la BDD.
+     */
+    public Voter referenceOf(String name)
+    {
+        return mRepository.getReferenceById(idOf(name));
+    }
+}
@@ -0,0 +1,113 @@
+package fr.simplon.sondages.tally;
+
+import fr.simplon.sondages.entity.Sondage;
+
+import java.util.Arrays;
+
+/**
+ * Encodage compact des bulletins, stocké dans la colonne {@code ballot.choices}.
+ * <ul>
+ *     <li>choix unique ou multiple : masque de bits des options choisies, un bit par option (bit {@code i % 8} de
+ *     l'octet {@code i / 8}), soit au plus 8 octets pour {@link Sondage#MAX_OPTIONS} options ;</li>
+ *     <li>classement : numéros des options classées, un octet par option, de la préférée à la moins aimée. Le
+ *     classement peut être partiel.</li>
+ * </ul>
+ * Les options sont désignées par leur rang dans {@link Sondage#getOptions()}, à partir de 0.
+ */
+public final class BallotCodec
+{
+    private BallotCodec()
+    {
+    }
+
+    /**
+     * Vérifie et encode les choix d'un votant.
+     *
+     * @param kind        Le type du sondage.
+     * @param optionCount Le nombre d'options du sondage.
+     * @param choices     Les options choisies (dans l'ordre de préférence pour un classement).
+     * @return Le bulletin encodé.
+     * @throws IllegalArgumentException Si les choix ne sont pas valides pour ce sondage.
+     */
+    public static byte[] encode(Sondage.Kind kind, int optionCount, int[] choices)
+    {
+        if (kind == Sondage.Kind.YES_NO)
+        {
+            throw new IllegalArgumentException("Un sondage oui/non n'accepte pas de bulletin");
+        }
+        if (choices == null || choices.length == 0)
+        {
+            throw new IllegalArgumentException("Aucune option choisie");
+        }
+        if (kind == Sondage.Kind.SINGLE_CHOICE && choices.length != 1)
+        {
+            throw new IllegalArgumentException("Une seule option peut être choisie");
+        }
+        long mask = 0L;
+        for (int choice : choices)
+        {
+            if (choice < 0 || choice >= optionCount)
+            {
+                throw new IllegalArgumentException("Option inconnue : " + choice);
+            }
+            if ((mask & (1L << choice)) != 0L)
+            {
+                throw new IllegalArgumentException("Option choisie plusieurs fois : " + choice);
+            }
+            mask |= 1L << choice;
+        }
+
+        if (kind == Sondage.Kind.RANKED)
+        {
+            byte[] ranking = new byte[choices.length];
+            for (int i = 0; i < choices.length; i++)
+            {
+                ranking[i] = (byte) choices[i];
+            }
+            return ranking;
+        }
+        byte[] bitmap = new byte[(optionCount + 7) / 8];
+        for (int i = 0; i < bitmap.length; i++)
+        {
+            bitmap[i] = (byte) (mask >>> (8 * i));
+        }
+        return bitmap;
+    }
+
+    /**
+     * @param bitmap Un bulletin de choix unique ou multiple.
+     * @return Le masque des options choisies (bit {@code i} pour l'option {@code i}).
+     */
+    public static long mask(byte[] bitmap)
+    {
+        long mask = 0L;
+        for (int i = 0; i < bitmap.length; i++)
+        {
+            mask |= (bitmap[i] & 0xFFL) << (8 * i);
+        }
+        return mask;
+    }
+
+    /**
+     * @param kind    Le type du sondage.
+     * @param encoded Un bulletin encodé par {@link #encode}.
+     * @return Les options choisies, dans l'ordre croissant ou dans l'ordre de préférence pour un classement.
+     */
+    public static int[] decode(Sondage.Kind kind, byte[] encoded)
+    {
+        if (kind == Sondage.Kind.RANKED)
+        {
+            int[] choices = new int[encoded.length];
+            Arrays.setAll(choices, i -> encoded[i] & 0xFF);
+            return choices;
+        }
+        long mask = mask(encoded);
+        int[] choices = new int[Long.bitCount(mask)];
+        for (int i = 0; mask != 0L; i++)
+        {
+            choices[i] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+        }
+        return choices;
+    }
+}
@@ -0,0 +1,58 @@
+package fr.simplon.sondages.tally;
+
+import java.util.Arrays;
+
+/**
+ * Décompte incrémental des bulletins d'un sondage à choix unique ou multiple : un compteur par option, mis à jour à
+ * chaque bulletin ajouté.
+ * <p>
+ * Non synchronisé : l'appelant protège les accès concurrents.
+ * </p>
+ */
+public final class ChoiceTally
+{
+    private final long[] mCounts;
+    private       long   mBallots;
+
+    /**
+     * @param optionCount Le nombre d'options du sondage.
+     */
+    public ChoiceTally(int optionCount)
+    {
+        mCounts = new long[optionCount];
+    }
+
+    /**
+     * @param bitmap Un bulletin encodé par {@link BallotCodec}.
+     */
+    public void add(byte[] bitmap)
+    {
+        long mask = BallotCodec.mask(bitmap);
+        while (mask != 0L)
+        {
+            int option = Long.numberOfTrailingZeros(mask);
+            if (option < mCounts.length)
+            {
+                mCounts[option]++;
+            }
+            mask &= mask - 1;
+        }
+        mBallots++;
+    }
+
+    /**
+     * @return Le nombre de bulletins décomptés.
+     */
+    public long ballots()
+    {
+        return mBallots;
+    }
+
+    /**
+     * @return Le nombre de voix de chaque option (copie).
+     */
+    public long[] counts()
+    {
+        return Arrays.copyOf(mCounts, mCounts.length);
+    }
+}
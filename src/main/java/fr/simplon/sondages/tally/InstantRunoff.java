@@ -0,0 +1,161 @@
+package fr.simplon.sondages.tally;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Dépouillement d'un sondage à classement par vote alternatif (instant runoff) : à chaque tour, chaque bulletin
+ * compte pour l'option la mieux classée non éliminée ; l'option qui a la majorité absolue des bulletins non épuisés
+ * gagne, sinon l'option qui a le moins de voix est éliminée (en cas d'égalité, celle de plus grand rang).
+ * <p>
+ * Chaque tour parcourt les classements distincts d'un {@link RankedTally.Snapshot}, pondérés par leur nombre de
+ * bulletins. Au-delà de {@link #THRESHOLD} classements, le parcours est découpé et exécuté en parallèle dans le
+ * {@link ForkJoinPool#commonPool() pool commun}.
+ * </p>
+ */
+public final class InstantRunoff
+{
+    /** Nombre de classements en dessous duquel un tour est compté sans découpage. */
+    static final int THRESHOLD = 4096;
+
+    /**
+     * Tour de dépouillement.
+     *
+     * @param counts     Le nombre de voix de chaque option (0 pour les options déjà éliminées).
+     * @param exhausted  Le nombre de bulletins dont toutes les options classées sont éliminées.
+     * @param eliminated L'option éliminée à la fin du tour, -1 pour le dernier tour.
+     */
+    public record Round(long[] counts, long exhausted, int eliminated)
+    {
+    }
+
+    /**
+     * Résultat du dépouillement.
+     *
+     * @param winner L'option gagnante, -1 s'il n'y a aucun bulletin.
+     * @param rounds Les tours successifs.
+     */
+    public record Result(int winner, List<Round> rounds)
+    {
+    }
+
+    private InstantRunoff()
+    {
+    }
+
+    /**
+     * @param snapshot Les classements à dépouiller.
+     * @return Le gagnant et le détail des tours.
+     */
+    public static Result run(RankedTally.Snapshot snapshot)
+    {
+        int optionCount = snapshot.optionCount();
+        long eliminated = 0L;
+        int remaining = optionCount;
+        List<Round> rounds = new ArrayList<>();
+        while (true)
+        {
+            long[] counts = count(snapshot, eliminated);
+            long active = 0L;
+            int best = -1;
+            int worst = -1;
+            for (int option = 0; option < optionCount; option++)
+            {
+                if ((eliminated & (1L << option)) == 0L)
+                {
+                    active += counts[option];
+                    if (best < 0 || counts[option] > counts[best])
+                    {
+                        best = option;
+                    }
+                    if (worst < 0 || counts[option] <= counts[worst])
+                    {
+                        worst = option;
+                    }
+                }
+            }
+            long[] optionCounts = Arrays.copyOf(counts, optionCount);
+            if (active == 0L)
+            {
+                rounds.add(new Round(optionCounts, counts[optionCount], -1));
+                return new Result(-1, rounds);
+            }
+            if (counts[best] * 2 > active || remaining == 1)
+            {
+                rounds.add(new Round(optionCounts, counts[optionCount], -1));
+                return new Result(best, rounds);
+            }
+            rounds.add(new Round(optionCounts, counts[optionCount], worst));
+            eliminated |= 1L << worst;
+            remaining--;
+        }
+    }
+
+    /**
+     * @return Le nombre de voix de chaque option, suivi du nombre de bulletins épuisés.
+     */
+    private static long[] count(RankedTally.Snapshot snapshot, long eliminated)
+    {
+        CountTask task = new CountTask(snapshot, eliminated, 0, snapshot.size());
+        return snapshot.size() <= THRESHOLD ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Décompte d'un tour sur une tranche de classements.
+     */
+    private static final class CountTask extends RecursiveTask<long[]>
+    {
+        private final RankedTally.Snapshot mSnapshot;
+        private final long                 mEliminated;
+        private final int                  mFrom;
+        private final int                  mTo;
+
+        CountTask(RankedTally.Snapshot pSnapshot, long pEliminated, int pFrom, int pTo)
+        {
+            mSnapshot = pSnapshot;
+            mEliminated = pEliminated;
+            mFrom = pFrom;
+            mTo = pTo;
+        }
+
+        @Override
+        protected long[] compute()
+        {
+            int optionCount = mSnapshot.optionCount();
+            if (mTo - mFrom > THRESHOLD)
+            {
+                int middle = (mFrom + mTo) >>> 1;
+                CountTask left = new CountTask(mSnapshot, mEliminated, mFrom, middle);
+                left.fork();
+                long[] counts = new CountTask(mSnapshot, mEliminated, middle, mTo).compute();
+                long[] leftCounts = left.join();
+                for (int i = 0; i <= optionCount; i++)
+                {
+                    counts[i] += leftCounts[i];
+                }
+                return counts;
+            }
+
+            long[] counts = new long[optionCount + 1];
+            byte[][] rankings = mSnapshot.rankings();
+            long[] weights = mSnapshot.weights();
+            for (int i = mFrom; i < mTo; i++)
+            {
+                int top = optionCount;
+                for (byte option : rankings[i])
+                {
+                    if ((mEliminated & (1L << (option & 0xFF))) == 0L)
+                    {
+                        top = option & 0xFF;
+                        break;
+                    }
+                }
+                counts[top] += weights[i];
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package fr.simplon.sondages.tally;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bulletins d'un sondage à classement, regroupés par classement distinct : chaque classement n'est gardé qu'une fois
+ * avec son nombre de bulletins. Le dépouillement ({@link InstantRunoff}) travaille ainsi sur quelques milliers de
+ * classements au plus, quel que soit le nombre de bulletins.
+ * <p>
+ * Non synchronisé : l'appelant protège les accès concurrents et passe un {@link #snapshot()} au dépouillement.
+ * </p>
+ */
+public final class RankedTally
+{
+    private final int                      mOptionCount;
+    private final Map<ByteBuffer, Integer> mIndex    = new HashMap<>();
+    private       byte[][]                 mRankings = new byte[16][];
+    private       long[]                   mWeights  = new long[16];
+    private       int                      mSize;
+    private       long                     mBallots;
+
+    /**
+     * Classements distincts et leur nombre de bulletins, figés au moment de l'appel à {@link #snapshot()}.
+     *
+     * @param optionCount Le nombre d'options du sondage.
+     * @param rankings    Les classements distincts (seuls les {@code size} premiers sont utilisés).
+     * @param weights     Le nombre de bulletins de chaque classement.
+     * @param size        Le nombre de classements distincts.
+     * @param ballots     Le nombre total de bulletins.
+     */
+    public record Snapshot(int optionCount, byte[][] rankings, long[] weights, int size, long ballots)
+    {
+    }
+
+    /**
+     * @param optionCount Le nombre d'options du sondage.
+     */
+    public RankedTally(int optionCount)
+    {
+        mOptionCount = optionCount;
+    }
+
+    /**
+     * @param ranking Un bulletin encodé par {@link BallotCodec} (non modifié ensuite).
+     */
+    public void add(byte[] ranking)
+    {
+        Integer index = mIndex.get(ByteBuffer.wrap(ranking));
+        if (index == null)
+        {
+            if (mSize == mRankings.length)
+            {
+                mRankings = Arrays.copyOf(mRankings, mSize * 2);
+                mWeights = Arrays.copyOf(mWeights, mSize * 2);
+            }
+            index = mSize++;
+            mRankings[index] = ranking;
+            mIndex.put(ByteBuffer.wrap(ranking), index);
+        }
+        mWeights[index]++;
+        mBallots++;
+    }
+
+    /**
+     * @return Le nombre de bulletins décomptés.
+     */
+    public long ballots()
+    {
+        return mBallots;
+    }
+
+    /**
+     * @return L'état courant, utilisable sans verrou pendant que d'autres bulletins sont ajoutés.
+     */
+    public Snapshot snapshot()
+    {
+        // Les classements déjà enregistrés ne changent plus : seul le tableau des nombres de bulletins est copié
+        return new Snapshot(mOptionCount, mRankings, Arrays.copyOf(mWeights, mSize), mSize, mBallots);
+    }
+}
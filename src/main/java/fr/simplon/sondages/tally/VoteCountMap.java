@@ -0,0 +1,164 @@
+package fr.simplon.sondages.tally;
+
+/**
+ * Nombre de votes "pour" et "contre" par identifiant de sondage, dans des tableaux de types primitifs (adressage
+ * ouvert : en cas de collision, la case suivante est essayée) : ni objet {@link Long} ni entrée de
+ * {@link java.util.HashMap} par sondage, pour recompter des millions de votes sans pression sur le ramasse-miettes.
+ * <p>
+ * Les identifiants de sondage sont strictement positifs : 0 marque une case libre. Non synchronisé : chaque tâche de
+ * recomptage remplit sa propre table, fusionnée ensuite avec {@link #addAll}.
+ * </p>
+ */
+public final class VoteCountMap
+{
+    private long[] mKeys;
+    private long[] mTrue;
+    private long[] mFalse;
+    private int    mSize;
+
+    /**
+     * Visite d'un sondage et de ses décomptes.
+     */
+    @FunctionalInterface
+    public interface Visitor
+    {
+        void visit(long sondageId, long countTrue, long countFalse);
+    }
+
+    public VoteCountMap()
+    {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Nombre de sondages attendu.
+     */
+    public VoteCountMap(int expectedSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        mKeys = new long[capacity];
+        mTrue = new long[capacity];
+        mFalse = new long[capacity];
+    }
+
+    /**
+     * @param sondageId L'identifiant du sondage (strictement positif).
+     * @param value     La valeur des votes.
+     * @param count     Le nombre de votes à ajouter.
+     */
+    public void add(long sondageId, boolean value, long count)
+    {
+        if (sondageId <= 0L)
+        {
+            throw new IllegalArgumentException("Identifiant de sondage invalide : " + sondageId);
+        }
+        int slot = slot(sondageId);
+        if (mKeys[slot] == 0L)
+        {
+            if ((mSize + 1) * 2 > mKeys.length)
+            {
+                resize();
+                slot = slot(sondageId);
+            }
+            mKeys[slot] = sondageId;
+            mSize++;
+        }
+        if (value)
+        {
+            mTrue[slot] += count;
+        }
+        else
+        {
+            mFalse[slot] += count;
+        }
+    }
+
+    /**
+     * Ajoute les décomptes d'une autre table à celle-ci.
+     *
+     * @param other Une autre table.
+     */
+    public void addAll(VoteCountMap other)
+    {
+        other.forEach((id, countTrue, countFalse) -> {
+            add(id, true, countTrue);
+            add(id, false, countFalse);
+        });
+    }
+
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @return Le nombre de votes "pour" du sondage.
+     */
+    public long countTrue(long sondageId)
+    {
+        int slot = slot(sondageId);
+        return mKeys[slot] == sondageId ? mTrue[slot] : 0L;
+    }
+
+    /**
+     * @param sondageId L'identifiant d'un sondage.
+     * @return Le nombre de votes "contre" du sondage.
+     */
+    public long countFalse(long sondageId)
+    {
+        int slot = slot(sondageId);
+        return mKeys[slot] == sondageId ? mFalse[slot] : 0L;
+    }
+
+    /**
+     * @return Le nombre de sondages.
+     */
+    public int size()
+    {
+        return mSize;
+    }
+
+    /**
+     * @param visitor Appelé pour chaque sondage, dans un ordre quelconque.
+     */
+    public void forEach(Visitor visitor)
+    {
+        for (int slot = 0; slot < mKeys.length; slot++)
+        {
+            if (mKeys[slot] != 0L)
+            {
+                visitor.visit(mKeys[slot], mTrue[slot], mFalse[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return La case du sondage, ou la case libre où l'ajouter.
+     */
+    private int slot(long sondageId)
+    {
+        int mask = mKeys.length - 1;
+        int slot = (int) ((sondageId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (mKeys[slot] != 0L && mKeys[slot] != sondageId)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize()
+    {
+        long[] keys = mKeys;
+        long[] countsTrue = mTrue;
+        long[] countsFalse = mFalse;
+        mKeys = new long[keys.length * 2];
+        mTrue = new long[keys.length * 2];
+        mFalse = new long[keys.length * 2];
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] != 0L)
+            {
+                int slot = slot(keys[i]);
+                mKeys[slot] = keys[i];
+                mTrue[slot] = countsTrue[i];
+                mFalse[slot] = countsFalse[i];
+            }
+        }
+    }
+}
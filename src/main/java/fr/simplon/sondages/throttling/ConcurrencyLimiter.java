@@ -0,0 +1,152 @@
+package fr.simplon.sondages.throttling;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Limite adaptative du nombre de requêtes traitées en même temps (AIMD).
+ * <p>
+ * Tant que les requêtes sont plus rapides que {@code latencyTarget}, la limite augmente d'environ 1 chaque fois que
+ * {@code limit} requêtes se terminent alors qu'elle est presque atteinte. Dès qu'une requête est plus lente (BDD
+ * surchargée, pool de connexions épuisé), la limite est réduite de 10 %, au plus une fois par {@code latencyTarget}.
+ * </p>
+ * <p>
+ * Chaque {@link Priority} n'a droit qu'à une part de la limite : quand le nombre de requêtes en cours augmente, les
+ * requêtes {@link Priority#SHEDDABLE} sont refusées les premières, les {@link Priority#CRITICAL} les dernières.
+ * </p>
+ */
+public class ConcurrencyLimiter
+{
+    /**
+     * Classe de priorité d'une requête.
+     */
+    public enum Priority
+    {
+        /** Écritures (votes, création de sondages) et API. */
+        CRITICAL(1.0),
+        /** Pages. */
+        NORMAL(0.9),
+        /** Rafraîchissements de fragments, que le navigateur peut refaire plus tard. */
+        SHEDDABLE(0.5);
+
+        private final double mShare;
+
+        Priority(double pShare)
+        {
+            mShare = pShare;
+        }
+    }
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final int           mMinLimit;
+    private final int           mMaxLimit;
+    private final long          mLatencyTarget;
+    private final LongSupplier  mNanoClock;
+    private final AtomicInteger mInFlight = new AtomicInteger();
+
+    private volatile double mLimit;
+    private          long   mLastDecrease;
+
+    /**
+     * @param pInitialLimit  Limite au démarrage.
+     * @param pMinLimit      Limite minimum.
+     * @param pMaxLimit      Limite maximum (au plus le nombre de threads du serveur).
+     * @param pLatencyTarget Durée au-delà de laquelle une requête est considérée comme ralentie.
+     */
+    public ConcurrencyLimiter(int pInitialLimit, int pMinLimit, int pMaxLimit, Duration pLatencyTarget)
+    {
+        this(pInitialLimit, pMinLimit, pMaxLimit, pLatencyTarget, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(int pInitialLimit, int pMinLimit, int pMaxLimit, Duration pLatencyTarget, LongSupplier pNanoClock)
+    {
+        mLimit = pInitialLimit;
+        mMinLimit = pMinLimit;
+        mMaxLimit = pMaxLimit;
+        mLatencyTarget = pLatencyTarget.toNanos();
+        mNanoClock = pNanoClock;
+        mLastDecrease = pNanoClock.getAsLong() - mLatencyTarget;
+    }
+
+    /**
+     * Réserve une place pour une requête.
+     *
+     * @param priority La priorité de la requête.
+     * @return Le jeton à libérer à la fin de la requête, vide si la requête doit être refusée.
+     */
+    public Optional<Permit> tryAcquire(Priority priority)
+    {
+        int allowed = Math.max(1, (int) (mLimit * priority.mShare));
+        while (true)
+        {
+            int inFlight = mInFlight.get();
+            if (inFlight >= allowed)
+            {
+                return Optional.empty();
+            }
+            if (mInFlight.compareAndSet(inFlight, inFlight + 1))
+            {
+                return Optional.of(new Permit(mNanoClock.getAsLong()));
+            }
+        }
+    }
+
+    /**
+     * @return La limite courante.
+     */
+    public int getLimit()
+    {
+        return (int) mLimit;
+    }
+
+    /**
+     * @return Le nombre de requêtes en cours.
+     */
+    public int getInFlight()
+    {
+        return mInFlight.get();
+    }
+
+    private synchronized void onSample(long latency, int inFlight, long now)
+    {
+        double limit = mLimit;
+        if (latency > mLatencyTarget)
+        {
+            if (now - mLastDecrease >= mLatencyTarget)
+            {
+                mLastDecrease = now;
+                mLimit = Math.max(mMinLimit, limit * DECREASE_FACTOR);
+            }
+        }
+        else if (inFlight >= limit / 2)
+        {
+            mLimit = Math.min(mMaxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * Place réservée par une requête en cours.
+     */
+    public final class Permit
+    {
+        private final long mStartedAt;
+
+        private Permit(long pStartedAt)
+        {
+            mStartedAt = pStartedAt;
+        }
+
+        /**
+         * Libère la place à la fin de la requête et ajuste la limite selon sa durée.
+         */
+        public void release()
+        {
+            long now = mNanoClock.getAsLong();
+            int inFlight = mInFlight.getAndDecrement();
+            onSample(now - mStartedAt, inFlight, now);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fr.simplon.sondages.throttling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Délestage des requêtes quand le serveur (en pratique la BDD) ralentit : au-delà de la limite de
+ * {@link ConcurrencyLimiter}, les requêtes reçoivent tout de suite une 503 avec l'en-tête {@code Retry-After} au lieu
+ * d'attendre une connexion jusqu'à expiration.
+ * <p>
+ * Les écritures et l'API sont prioritaires, les rafraîchissements de {@code /fragments/sondages} sont refusés les
+ * premiers. Les ressources statiques et {@code /actuator} ne sont pas limités. Métriques :
+ * {@code sondages.concurrency.limit}, {@code sondages.concurrency.in-flight} et
+ * {@code sondages.concurrency.shed{priority}}.
+ * </p>
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter
+{
+    private final ConcurrencyLimiter                        mLimiter;
+    private final String                                    mRetryAfter;
+    private final Map<ConcurrencyLimiter.Priority, Counter> mShed = new EnumMap<>(ConcurrencyLimiter.Priority.class);
+
+    /**
+     * @param pLimiter    La limite de requêtes simultanées.
+     * @param pRetryAfter Délai (en secondes) conseillé aux clients refusés.
+     * @param pRegistry   Le registre des métriques.
+     */
+    public LoadSheddingFilter(ConcurrencyLimiter pLimiter, long pRetryAfter, MeterRegistry pRegistry)
+    {
+        mLimiter = pLimiter;
+        mRetryAfter = String.valueOf(pRetryAfter);
+        pRegistry.gauge("sondages.concurrency.limit", pLimiter, ConcurrencyLimiter::getLimit);
+        pRegistry.gauge("sondages.concurrency.in-flight", pLimiter, ConcurrencyLimiter::getInFlight);
+        for (ConcurrencyLimiter.Priority priority : ConcurrencyLimiter.Priority.values())
+        {
+            mShed.put(priority, Counter.builder("sondages.concurrency.shed")//
+                    .description("Requêtes refusées par la limite adaptative")//
+                    .tag("priority", priority.name().toLowerCase())//
+                    .register(pRegistry));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        String path = request.getServletPath();
+        return path.startsWith("/actuator/") || path.lastIndexOf('.') > path.lastIndexOf('/');
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        ConcurrencyLimiter.Priority priority = priority(request);
+        Optional<ConcurrencyLimiter.Permit> permit = mLimiter.tryAcquire(priority);
+        if (permit.isEmpty())
+        {
+            mShed.get(priority).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, mRetryAfter);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Serveur surchargé, réessayez plus tard.");
+            return;
+        }
+        try
+        {
+            chain.doFilter(request, response);
+        }
+        finally
+        {
+            permit.get().release();
+        }
+    }
+
+    static ConcurrencyLimiter.Priority priority(HttpServletRequest request)
+    {
+        String path = request.getServletPath();
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod()) || path.startsWith("/api/"))
+        {
+            return ConcurrencyLimiter.Priority.CRITICAL;
+        }
+        if (path.startsWith("/fragments/"))
+        {
+            return ConcurrencyLimiter.Priority.SHEDDABLE;
+        }
+        return ConcurrencyLimiter.Priority.NORMAL;
+    }
+}
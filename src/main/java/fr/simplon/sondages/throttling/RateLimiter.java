@@ -0,0 +1,108 @@
+package fr.simplon.sondages.throttling;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Seaux à jetons par clé (utilisateur, adresse IP, sondage...), sans verrou.
+ * <p>
+ * Chaque seau contient au plus {@code capacity} jetons et se remplit d'un jeton toutes les {@code period / capacity}.
+ * Il est représenté par un seul {@link AtomicLong} : l'instant auquel il sera de nouveau plein (algorithme GCRA).
+ * Consommer un jeton avance cet instant par un {@code compareAndSet}, sans verrou ni tâche de remplissage.
+ * </p>
+ * <p>
+ * Un seau plein est équivalent à un seau absent : quand il y a plus de {@code maxKeys} clés, les seaux pleins sont
+ * retirés (au plus une fois par seconde). Si toutes les clés sont actives, les nouvelles clés ne sont pas limitées.
+ * </p>
+ */
+public class RateLimiter
+{
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final long                              mInterval;
+    private final long                              mBurst;
+    private final int                               mMaxKeys;
+    private final LongSupplier                      mNanoClock;
+    private final ConcurrentMap<String, AtomicLong> mBuckets   = new ConcurrentHashMap<>();
+    private final AtomicLong                        mNextSweep = new AtomicLong();
+
+    /**
+     * @param pCapacity Nombre de requêtes acceptées d'affilée, et par période.
+     * @param pPeriod   Durée de remplissage d'un seau vide.
+     * @param pMaxKeys  Nombre de clés suivies au-delà duquel les seaux pleins sont retirés.
+     */
+    public RateLimiter(int pCapacity, Duration pPeriod, int pMaxKeys)
+    {
+        this(pCapacity, pPeriod, pMaxKeys, System::nanoTime);
+    }
+
+    RateLimiter(int pCapacity, Duration pPeriod, int pMaxKeys, LongSupplier pNanoClock)
+    {
+        mInterval = pPeriod.toNanos() / pCapacity;
+        mBurst = mInterval * pCapacity;
+        mMaxKeys = pMaxKeys;
+        mNanoClock = pNanoClock;
+    }
+
+    /**
+     * Consomme un jeton du seau de la clé.
+     *
+     * @param key La clé.
+     * @return 0 si la requête est acceptée, sinon le temps (en ns) à attendre avant qu'un jeton soit disponible.
+     */
+    public long tryAcquire(String key)
+    {
+        long now = mNanoClock.getAsLong();
+        AtomicLong bucket = mBuckets.get(key);
+        if (bucket == null)
+        {
+            if (mBuckets.size() >= mMaxKeys && !sweep(now))
+            {
+                return 0L;
+            }
+            bucket = mBuckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        while (true)
+        {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + mInterval;
+            long wait = next - now - mBurst;
+            if (wait > 0)
+            {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next))
+            {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * @return Le nombre de clés suivies.
+     */
+    public int size()
+    {
+        return mBuckets.size();
+    }
+
+    /**
+     * Retire les seaux pleins, si le dernier nettoyage date de plus d'une seconde.
+     *
+     * @return Vrai s'il reste de la place pour de nouvelles clés.
+     */
+    private boolean sweep(long now)
+    {
+        long nextSweep = mNextSweep.get();
+        if (now - nextSweep >= 0 && mNextSweep.compareAndSet(nextSweep, now + SWEEP_INTERVAL))
+        {
+            mBuckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+        return mBuckets.size() < mMaxKeys;
+    }
+}
@@ -0,0 +1,67 @@
+package fr.simplon.sondages.throttling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Protection du serveur contre les excès de requêtes.
+ * <ul>
+ *     <li>Limitation du débit des votes et des bulletins ({@code sondages.votes.rate-limit.*}) : nombre de votes par
+ *     minute acceptés par utilisateur, par adresse IP et par sondage. Derrière un proxy, activer
+ *     {@code server.forward-headers-strategy} pour que l'adresse IP soit celle du client.</li>
+ *     <li>Limite adaptative des requêtes simultanées ({@code sondages.throttling.concurrency.*}), voir
+ *     {@link LoadSheddingFilter}.</li>
+ * </ul>
+ */
+@Configuration
+public class ThrottlingConfig
+{
+    @Bean
+    @ConditionalOnProperty(name = "sondages.votes.rate-limit.enabled", matchIfMissing = true)
+    public FilterRegistrationBean<VoteRateLimitFilter> voteRateLimitFilter(
+            MeterRegistry registry,
+            @Value("${sondages.votes.rate-limit.per-user:30}") int perUser,
+            @Value("${sondages.votes.rate-limit.per-ip:120}") int perIp,
+            @Value("${sondages.votes.rate-limit.per-sondage:3000}") int perSondage,
+            @Value("${sondages.votes.rate-limit.max-keys:100000}") int maxKeys)
+    {
+        Duration minute = Duration.ofMinutes(1);
+        FilterRegistrationBean<VoteRateLimitFilter> registration = new FilterRegistrationBean<>(new VoteRateLimitFilter(
+                new RateLimiter(perUser, minute, maxKeys),
+                new RateLimiter(perIp, minute, maxKeys),
+                new RateLimiter(perSondage, minute, maxKeys),
+                registry));
+        registration.addUrlPatterns("/votes/*", "/api/sondages/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 2);
+        return registration;
+    }
+
+    /**
+     * Délestage placé avant Spring Security, pour refuser les requêtes avant toute lecture de session ou de la BDD.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "sondages.throttling.concurrency.enabled", matchIfMissing = true)
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilter(
+            MeterRegistry registry,
+            @Value("${sondages.throttling.concurrency.initial-limit:20}") int initialLimit,
+            @Value("${sondages.throttling.concurrency.min-limit:4}") int minLimit,
+            @Value("${sondages.throttling.concurrency.max-limit:200}") int maxLimit,
+            @Value("${sondages.throttling.concurrency.latency-target:PT0.5S}") Duration latencyTarget,
+            @Value("${sondages.throttling.concurrency.retry-after:PT2S}") Duration retryAfter)
+    {
+        FilterRegistrationBean<LoadSheddingFilter> registration = new FilterRegistrationBean<>(new LoadSheddingFilter(
+                new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencyTarget),
+                Math.max(1L, retryAfter.toSeconds()),
+                registry));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
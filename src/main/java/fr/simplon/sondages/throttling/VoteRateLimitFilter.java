@@ -0,0 +1,136 @@
+package fr.simplon.sondages.throttling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Limite le nombre de votes ({@code POST /votes/{sondageId}}) et de bulletins
+ * ({@code POST /api/sondages/{sondageId}/ballots}) par utilisateur connecté, par adresse IP et par sondage.
+ * <p>
+ * Les votes en trop reçoivent une 429 avec l'en-tête {@code Retry-After}, avant toute lecture en BDD. Le filtre est
+ * placé après Spring Security pour connaître l'utilisateur.
+ * </p>
+ */
+public class VoteRateLimitFilter extends OncePerRequestFilter
+{
+    private static final String  VOTE_PATH   = "/votes/";
+    private static final Pattern BALLOT_PATH = Pattern.compile("/api/sondages/([^/]+)/ballots");
+
+    private final RateLimiter mPerUser;
+    private final RateLimiter mPerIp;
+    private final RateLimiter mPerSondage;
+    private final Counter     mUserRejections;
+    private final Counter     mIpRejections;
+    private final Counter     mSondageRejections;
+
+    public VoteRateLimitFilter(RateLimiter pPerUser, RateLimiter pPerIp, RateLimiter pPerSondage, MeterRegistry pRegistry)
+    {
+        mPerUser = pPerUser;
+        mPerIp = pPerIp;
+        mPerSondage = pPerSondage;
+        mUserRejections = rejections(pRegistry, "user");
+        mIpRejections = rejections(pRegistry, "ip");
+        mSondageRejections = rejections(pRegistry, "sondage");
+        pRegistry.gauge("sondages.votes.rate-limit.keys", this,
+                        f -> f.mPerUser.size() + f.mPerIp.size() + f.mPerSondage.size());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        return !"POST".equals(request.getMethod()) || sondageSegment(request.getServletPath()) == null;
+    }
+
+    /**
+     * @param path Le chemin d'une requête.
+     * @return L'identifiant du sondage visé par un vote ou un bulletin, tel qu'écrit dans le chemin ; null si la
+     * requête n'en est pas un.
+     */
+    static String sondageSegment(String path)
+    {
+        if (path.startsWith(VOTE_PATH))
+        {
+            return path.substring(VOTE_PATH.length());
+        }
+        Matcher ballot = BALLOT_PATH.matcher(path);
+        return ballot.matches() ? ballot.group(1) : null;
+    }
+
+    /**
+     * @param path Le chemin d'une requête.
+     * @return L'identifiant du sondage visé par un vote ou un bulletin, comme le lit le contrôleur ({@code /votes/01}
+     * et {@code /votes/+1} visent le sondage 1) ; null si la requête n'en est pas un ou si l'identifiant n'est pas un
+     * nombre (la requête sera refusée en 400).
+     */
+    static Long sondageId(String path)
+    {
+        String segment = sondageSegment(path);
+        if (segment == null)
+        {
+            return null;
+        }
+        try
+        {
+            return Long.valueOf(segment);
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        long wait = mPerIp.tryAcquire(request.getRemoteAddr());
+        Counter rejections = mIpRejections;
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (wait == 0L && authentication != null && authentication.isAuthenticated())
+        {
+            wait = mPerUser.tryAcquire(authentication.getName());
+            rejections = mUserRejections;
+        }
+        Long sondageId = sondageId(request.getServletPath());
+        if (wait == 0L && sondageId != null)
+        {
+            wait = mPerSondage.tryAcquire(sondageId.toString());
+            rejections = mSondageRejections;
+        }
+
+        if (wait == 0L)
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+        rejections.increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L)));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Trop de votes, réessayez plus tard.");
+    }
+
+    private static Counter rejections(MeterRegistry registry, String key)
+    {
+        return Counter.builder("sondages.votes.rate-limited")//
+                .description("Votes refusés par la limite de débit")//
+                .tag("key", key)//
+                .register(registry);
+    }
+}
@@ -0,0 +1,29 @@
+package fr.simplon.sondages.web;
+
+import fr.simplon.sondages.service.HomePageSnapshots;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Page d'accueil précalculée pour les visiteurs anonymes ({@code sondages.home.*}), voir {@link HomePageSnapshots}.
+ */
+@Configuration
+@ConditionalOnExpression("${sondages.home.snapshot-pages:3} > 0")
+public class HomePageSnapshotConfig
+{
+    /**
+     * Filtre placé avant le délestage et Spring Security : servir une page précalculée ne coûte qu'une copie mémoire.
+     */
+    @Bean
+    public FilterRegistrationBean<HomePageSnapshotFilter> homePageSnapshotFilter(HomePageSnapshots snapshots)
+    {
+        FilterRegistrationBean<HomePageSnapshotFilter> registration =
+                new FilterRegistrationBean<>(new HomePageSnapshotFilter(snapshots));
+        registration.addUrlPatterns("/", "/index");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 2);
+        return registration;
+    }
+}
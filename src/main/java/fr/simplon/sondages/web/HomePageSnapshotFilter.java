@@ -0,0 +1,105 @@
+package fr.simplon.sondages.web;
+
+import fr.simplon.sondages.service.HomePageSnapshots;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sert le HTML précalculé des premières pages de la page d'accueil aux visiteurs anonymes (voir
+ * {@link HomePageSnapshots}), sans session, ni accès à la BDD, ni rendu Thymeleaf.
+ * <p>
+ * Seules les requêtes sans cookie ni en-tête {@code Authorization} sont considérées comme anonymes (la page affichée
+ * dépend de l'utilisateur connecté), avec la taille de page par défaut. Quand une page n'a pas encore été calculée, la
+ * réponse de la requête est enregistrée.
+ * </p>
+ */
+public class HomePageSnapshotFilter extends OncePerRequestFilter
+{
+    private final HomePageSnapshots mSnapshots;
+
+    public HomePageSnapshotFilter(HomePageSnapshots pSnapshots)
+    {
+        mSnapshots = pSnapshots;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        String path = request.getServletPath();
+        return !"GET".equals(request.getMethod()) || !("/".equals(path) || "/index".equals(path))
+                || request.getCookies() != null || request.getHeader(HttpHeaders.AUTHORIZATION) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        int page = snapshotPage(request.getParameterMap());
+        if (!mSnapshots.isSnapshotPage(page))
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean refresh = mSnapshots.isRefreshRequest(request.getHeader(HomePageSnapshots.REFRESH_HEADER));
+        HomePageSnapshots.Html html = refresh ? null : mSnapshots.html(page);
+        if (html != null)
+        {
+            response.setContentType(html.contentType());
+            response.setContentLength(html.body().length);
+            response.getOutputStream().write(html.body());
+            return;
+        }
+
+        long generation = mSnapshots.generation();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try
+        {
+            chain.doFilter(request, wrapper);
+            if (wrapper.getStatus() == HttpServletResponse.SC_OK && wrapper.getContentType() != null
+                    && MediaType.TEXT_HTML.isCompatibleWith(MediaType.parseMediaType(wrapper.getContentType())))
+            {
+                mSnapshots.storeHtml(page, new HomePageSnapshots.Html(wrapper.getContentAsByteArray(),
+                                                                      wrapper.getContentType()), generation);
+            }
+        }
+        finally
+        {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * @param parameters Les paramètres de la requête.
+     * @return Le numéro de page demandé, -1 si la requête ne correspond pas à une page précalculée.
+     */
+    static int snapshotPage(Map<String, String[]> parameters)
+    {
+        int page = 0;
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet())
+        {
+            if (!"page".equals(parameter.getKey()) || parameter.getValue().length != 1)
+            {
+                return -1;
+            }
+            try
+            {
+                page = Integer.parseInt(parameter.getValue()[0]);
+            }
+            catch (NumberFormatException e)
+            {
+                return -1;
+            }
+        }
+        return page;
+    }
+}
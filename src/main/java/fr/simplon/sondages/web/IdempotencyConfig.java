@@ -0,0 +1,37 @@
+package fr.simplon.sondages.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Clés d'idempotence des votes, des bulletins et des créations de sondages ({@code sondages.idempotency.*}), voir
+ * {@link IdempotencyFilter}.
+ */
+@Configuration
+public class IdempotencyConfig
+{
+    /**
+     * Filtre placé juste après Spring Security (pour connaître l'utilisateur), avant la limite de débit des votes : une
+     * répétition ne consomme pas le quota de l'utilisateur.
+     */
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            MeterRegistry registry,
+            @Value("${sondages.idempotency.ttl:PT1H}") Duration ttl,
+            @Value("${sondages.idempotency.max-memory:16MB}") DataSize maxMemory,
+            @Value("${sondages.idempotency.max-body-size:64KB}") DataSize maxBodySize)
+    {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(new IdempotencyFilter(
+                new IdempotencyStore(ttl, maxMemory.toBytes()), (int) maxBodySize.toBytes(), registry));
+        registration.addUrlPatterns("/votes/*", "/api/sondages", "/api/sondages/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+}
@@ -0,0 +1,285 @@
+package fr.simplon.sondages.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Traitement unique des {@code POST} répétés (vote, bulletin, création de sondage) : le client envoie une clé dans
+ * l'en-tête {@code Idempotency-Key} (ou le champ de formulaire {@code idempotency-key}), et une requête répétée avec la
+ * même clé reçoit la réponse d'origine, avec l'en-tête {@code Idempotent-Replayed: true}, sans validation ni accès à la
+ * BDD.
+ * <p>
+ * Les clés sont propres à chaque utilisateur et à chaque URL. Une requête qui reprend une clé avec un autre corps
+ * (champs de formulaire ou contenu JSON) est refusée en 422 : la clé désigne une seule opération. Une répétition reçue
+ * pendant le traitement de la requête d'origine reçoit une 409 avec {@code Retry-After}. Les réponses en erreur
+ * serveur (5xx) ne sont pas enregistrées : le client peut réessayer. Les réponses plus grandes que
+ * {@code maxBodySize} (page des votes d'un sondage très suivi) sont remplacées par une redirection vers la même URL en
+ * {@code GET}.
+ * </p>
+ */
+public class IdempotencyFilter extends OncePerRequestFilter
+{
+    public static final String HEADER = "Idempotency-Key";
+    public static final String PARAMETER = "idempotency-key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    /** Champs de formulaire qui ne font pas partie de l'opération (le jeton CSRF change à chaque affichage). */
+    private static final Set<String> UNHASHED_PARAMETERS = Set.of(PARAMETER, "_csrf");
+
+    private final IdempotencyStore mStore;
+    private final int              mMaxBodySize;
+    private final Counter          mReplays;
+
+    public IdempotencyFilter(IdempotencyStore pStore, int pMaxBodySize, MeterRegistry pRegistry)
+    {
+        mStore = pStore;
+        mMaxBodySize = pMaxBodySize;
+        mReplays = Counter.builder("sondages.idempotency.replays")//
+                .description("Requêtes répétées servies depuis les réponses enregistrées")//
+                .register(pRegistry);
+        pRegistry.gauge("sondages.idempotency.bytes", pStore, IdempotencyStore::bytes);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        return !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        String key = request.getHeader(HEADER);
+        if (key == null)
+        {
+            key = request.getParameter(PARAMETER);
+        }
+        if (key == null || key.isBlank())
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (key.length() > MAX_KEY_LENGTH)
+        {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), HEADER + " trop long");
+            return;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String user = authentication == null ? "" : authentication.getName();
+        String scopedKey = user + '\n' + request.getRequestURI() + '\n' + key;
+
+        byte[] requestHash;
+        if (isForm(request))
+        {
+            requestHash = hashParameters(request);
+        }
+        else
+        {
+            // Corps relu par le contrôleur depuis la copie en mémoire
+            byte[] body = request.getInputStream().readAllBytes();
+            requestHash = sha256().digest(body);
+            request = new CachedBodyRequest(request, body);
+        }
+
+        IdempotencyStore.StoredResponse stored = mStore.begin(scopedKey, requestHash);
+        if (stored != null)
+        {
+            replay(stored, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try
+        {
+            chain.doFilter(request, wrapper);
+            completed = wrapper.getStatus() < 500;
+        }
+        finally
+        {
+            if (completed)
+            {
+                mStore.complete(scopedKey, requestHash, toStored(request, wrapper));
+            }
+            else
+            {
+                mStore.abandon(scopedKey);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private IdempotencyStore.StoredResponse toStored(HttpServletRequest request, ContentCachingResponseWrapper wrapper)
+    {
+        if (wrapper.getContentSize() > mMaxBodySize)
+        {
+            return new IdempotencyStore.StoredResponse(
+                    HttpStatus.SEE_OTHER.value(), null, request.getRequestURI(), new byte[0]);
+        }
+        return new IdempotencyStore.StoredResponse(wrapper.getStatus(),
+                                                   wrapper.getContentType(),
+                                                   wrapper.getHeader(HttpHeaders.LOCATION),
+                                                   wrapper.getContentAsByteArray());
+    }
+
+    private static boolean isForm(HttpServletRequest request)
+    {
+        try
+        {
+            String contentType = request.getContentType();
+            return contentType != null
+                    && MediaType.APPLICATION_FORM_URLENCODED.includes(MediaType.parseMediaType(contentType));
+        }
+        catch (InvalidMediaTypeException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @return L'empreinte des champs du formulaire, triés par nom (sans la clé d'idempotence ni le jeton CSRF).
+     */
+    private static byte[] hashParameters(HttpServletRequest request)
+    {
+        MessageDigest digest = sha256();
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+            if (!UNHASHED_PARAMETERS.contains(name))
+            {
+                for (String value : values)
+                {
+                    digest.update((name + '=' + value + '\n').getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        });
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void replay(IdempotencyStore.StoredResponse stored, HttpServletResponse response) throws IOException
+    {
+        if (stored.keyReused())
+        {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), HEADER + " déjà utilisé pour une autre requête");
+            return;
+        }
+        if (stored.inProgress())
+        {
+            response.setStatus(HttpStatus.CONFLICT.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
+        }
+        mReplays.increment();
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.contentType() != null)
+        {
+            response.setContentType(stored.contentType());
+        }
+        if (stored.location() != null)
+        {
+            response.setHeader(HttpHeaders.LOCATION, stored.location());
+        }
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    /**
+     * Requête dont le corps, déjà lu pour calculer son empreinte, est relu depuis une copie en mémoire.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper
+    {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest pRequest, byte[] pBody)
+        {
+            super(pRequest);
+            body = pBody;
+        }
+
+        @Override
+        public ServletInputStream getInputStream()
+        {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream()
+            {
+                @Override
+                public int read()
+                {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len)
+                {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished()
+                {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady()
+                {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener)
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws UnsupportedEncodingException
+        {
+            String encoding = getCharacterEncoding() == null ? StandardCharsets.UTF_8.name() : getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package fr.simplon.sondages.web;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Réponses aux requêtes {@code POST} déjà traitées, par clé d'idempotence, pour les renvoyer aux clients qui
+ * renvoient la même requête.
+ * <p>
+ * Les réponses sont gardées {@code ttl} et leur taille totale est limitée à {@code maxBytes} : les moins récemment
+ * utilisées sont oubliées en premier. Une clé dont la requête est en cours de traitement est réservée, pour que les
+ * requêtes répétées en parallèle ne soient pas traitées deux fois.
+ * </p>
+ * <p>
+ * Chaque clé est associée à l'empreinte du corps de la requête d'origine : la même clé envoyée avec un autre corps
+ * n'est pas une répétition ({@link StoredResponse#keyReused()}).
+ * </p>
+ */
+public class IdempotencyStore
+{
+    /** Taille comptée pour une entrée, en plus du corps de la réponse. */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long               mTtlNanos;
+    private final long               mMaxBytes;
+    private final LongSupplier       mNanoClock;
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>(256, 0.75f, true);
+    private       long               mBytes;
+
+    /**
+     * Réponse enregistrée.
+     *
+     * @param status      Le code HTTP.
+     * @param contentType Le type du contenu (peut être null).
+     * @param location    L'en-tête {@code Location} (peut être null).
+     * @param body        Le corps de la réponse, null si la requête est encore en cours.
+     */
+    public record StoredResponse(int status, String contentType, String location, byte[] body)
+    {
+        /** Marqueur d'une requête en cours de traitement. */
+        static final StoredResponse IN_PROGRESS = new StoredResponse(0, null, null, null);
+
+        /** Marqueur d'une clé déjà utilisée pour une requête de corps différent. */
+        static final StoredResponse KEY_REUSED = new StoredResponse(0, null, null, new byte[0]);
+
+        /**
+         * @return Vrai si la requête d'origine est encore en cours de traitement.
+         */
+        public boolean inProgress()
+        {
+            return body == null;
+        }
+
+        /**
+         * @return Vrai si la clé a déjà servi pour une requête dont le corps est différent.
+         */
+        public boolean keyReused()
+        {
+            return this == KEY_REUSED;
+        }
+
+        private int size()
+        {
+            return ENTRY_OVERHEAD + (body == null ? 0 : body.length);
+        }
+    }
+
+    private record Entry(StoredResponse response, byte[] requestHash, long expiresAt)
+    {
+    }
+
+    public IdempotencyStore(Duration pTtl, long pMaxBytes)
+    {
+        this(pTtl, pMaxBytes, System::nanoTime);
+    }
+
+    IdempotencyStore(Duration pTtl, long pMaxBytes, LongSupplier pNanoClock)
+    {
+        mTtlNanos = pTtl.toNanos();
+        mMaxBytes = pMaxBytes;
+        mNanoClock = pNanoClock;
+    }
+
+    /**
+     * Réserve une clé pour une nouvelle requête.
+     *
+     * @param key         La clé d'idempotence.
+     * @param requestHash L'empreinte du corps de la requête.
+     * @return Null si la clé est réservée pour cette requête, sinon la réponse déjà enregistrée (éventuellement
+     *         {@linkplain StoredResponse#inProgress() en cours}), ou {@link StoredResponse#KEY_REUSED} si la clé a servi
+     *         pour un autre corps.
+     */
+    public synchronized StoredResponse begin(String key, byte[] requestHash)
+    {
+        long now = mNanoClock.getAsLong();
+        Entry entry = mEntries.get(key);
+        if (entry != null && entry.expiresAt - now > 0)
+        {
+            return Arrays.equals(entry.requestHash, requestHash) ? entry.response : StoredResponse.KEY_REUSED;
+        }
+        put(key, StoredResponse.IN_PROGRESS, requestHash, now);
+        return null;
+    }
+
+    /**
+     * Enregistre la réponse d'une requête réservée avec {@link #begin(String, byte[])}.
+     */
+    public synchronized void complete(String key, byte[] requestHash, StoredResponse response)
+    {
+        put(key, response, requestHash, mNanoClock.getAsLong());
+    }
+
+    /**
+     * Libère une clé dont la requête a échoué, pour qu'elle puisse être traitée de nouveau.
+     */
+    public synchronized void abandon(String key)
+    {
+        Entry entry = mEntries.remove(key);
+        if (entry != null)
+        {
+            mBytes -= entry.response.size();
+        }
+    }
+
+    /**
+     * @return La taille totale des réponses enregistrées, en octets.
+     */
+    public synchronized long bytes()
+    {
+        return mBytes;
+    }
+
+    private void put(String key, StoredResponse response, byte[] requestHash, long now)
+    {
+        Entry previous = mEntries.put(key, new Entry(response, requestHash, now + mTtlNanos));
+        mBytes += response.size() - (previous == null ? 0 : previous.response.size());
+
+        Iterator<Entry> eldest = mEntries.values().iterator();
+        while (mBytes > mMaxBytes && eldest.hasNext())
+        {
+            Entry entry = eldest.next();
+            if (entry.response != response)
+            {
+                eldest.remove();
+                mBytes -= entry.response.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package fr.simplon.sondages.web;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistration;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
+
+/**
+ * Configuration des ressources statiques (CSS, JS, images).
+ * <p>
+ * Les liens générés par Thymeleaf avec {@code @{/styles.css}} sont réécrits avec l'empreinte MD5 du contenu du
+ * fichier ({@code /styles-&lt;md5&gt;.css}). Ces URLs ne changent que si le fichier change : elles sont servies avec
+ * {@code Cache-Control: max-age=1 an, public, immutable}. Les URLs sans empreinte doivent être revalidées à chaque
+ * utilisation.
+ * </p>
+ * <p>
+ * Si une variante précompressée ({@code .br} ou {@code .gz}, générée au build) existe, elle est servie aux navigateurs
+ * qui l'acceptent.
+ * </p>
+ */
+@Configuration
+public class StaticResourcesConfiguration implements WebMvcConfigurer
+{
+    private static final String STATIC_LOCATION = "classpath:/static/";
+
+    /** Nom de fichier contenant une empreinte MD5 ajoutée par {@link VersionResourceResolver}. */
+    private static final String FINGERPRINTED_FILE = "/{file:[\\w.-]+-[0-9a-f]{32}\\.\\w+}";
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry)
+    {
+        configureChain(registry.addResourceHandler(FINGERPRINTED_FILE)//
+                               .setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()));
+        configureChain(registry.addResourceHandler("/**")//
+                               .setCacheControl(CacheControl.noCache()));
+    }
+
+    /**
+     * Filtre qui réécrit les URLs des ressources statiques dans les pages générées par Thymeleaf.
+     */
+    @Bean
+    public FilterRegistrationBean<ResourceUrlEncodingFilter> resourceUrlEncodingFilter()
+    {
+        FilterRegistrationBean<ResourceUrlEncodingFilter> registration =
+                new FilterRegistrationBean<>(new ResourceUrlEncodingFilter());
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+
+    private static void configureChain(ResourceHandlerRegistration registration)
+    {
+        registration.addResourceLocations(STATIC_LOCATION)//
+                .resourceChain(true)//
+                .addResolver(new EncodedResourceResolver())//
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+    }
+}
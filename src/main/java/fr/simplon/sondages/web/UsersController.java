@@ -5,10 +5,7 @@ import fr.simplon.sondages.dto.UserForm;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -86,7 +83,7 @@ public class UsersController
         }
         return "/inscription";
     }
-    @PostMapping("/insciption")
+    @PostMapping("/inscription")
     @Transactional
     public String inscription(
             @Valid @ModelAttribute(name = "user") UserForm user,
@@ -116,42 +113,44 @@ public class UsersController
         return "redirect:/login";
     }
 
-
-
-
-    @PutMapping("/changermdp")
-    public String getchangermdp( UserForm) {
-        userDetailsManager.changePassword(); = new User
-
-
-
+    @GetMapping("/changermdp")
+    public String getChangePassword(Principal principal)
+    {
+        if (principal == null)
+        {
+            return "redirect:/login";
+        }
         return "changermdp";
     }
-    @PutMapping("/changemdp")
-    public ResponseEntity<String> updateUserPassword(
-            @AuthenticationPrincipal Principal principal,
-            @RequestBody UserForm userForm) {
 
-        if (principal == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body("You must be authenticated to change your password");
+    /**
+     * Changement du mot de passe de l'utilisateur connecté. Le mot de passe actuel est vérifié avant la modification ;
+     * l'utilisateur est retiré du cache des utilisateurs par {@link UserDetailsManager#changePassword}.
+     */
+    @PostMapping("/changermdp")
+    public String changePassword(
+            @RequestParam("current-password") String currentPassword,
+            @RequestParam("new-password") String newPassword,
+            @RequestParam("confirm-password") String confirmPassword,
+            Principal principal,
+            Model model)
+    {
+        if (principal == null)
+        {
+            return "redirect:/login";
         }
-
-        String username = principal.getName();
-        User user = UserForm.findByLogin(login);
-
-        if (!user.equals(userForm.getCurrentPassword())) {
-            return ResponseEntity.badRequest().body("Current password is incorrect");
+        UserDetails user = userDetailsManager.loadUserByUsername(principal.getName());
+        if (!passwordEncoder.matches(currentPassword, user.getPassword()))
+        {
+            model.addAttribute("error", "Le mot de passe actuel est incorrect");
+            return "changermdp";
         }
-
-        if (!userForm.getNewPassword().equals(userForm.getConfirmNewPassword())) {
-            return ResponseEntity.badRequest().body("Passwords do not match");
+        if (newPassword.isBlank() || !newPassword.equals(confirmPassword))
+        {
+            model.addAttribute("error", "Les mots de passe ne correspondent pas");
+            return "changermdp";
         }
-
-        user.setPassword(userForm.getNewPassword());
-        userRepository.save(user);
-
-        return ResponseEntity.ok("Password updated successfully");
+        userDetailsManager.changePassword(currentPassword, passwordEncoder.encode(newPassword));
+        return "redirect:/";
     }
-
-}
\ No newline at end of file
+}
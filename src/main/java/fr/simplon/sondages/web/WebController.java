@@ -1,61 +1,115 @@
 package fr.simplon.sondages.web;
 
+import fr.simplon.sondages.api.RecordNotFoundException;
 import fr.simplon.sondages.dao.SondageRepository;
 import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.dto.VoteTally;
 import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.service.HomePageSnapshots;
+import fr.simplon.sondages.service.HotSondages;
+import fr.simplon.sondages.service.SondageCounter;
+import fr.simplon.sondages.service.VoteTallyService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Contrôleur pour URLs qui retournent des pages HTML standard (c'est à dire pas de JSON).
+ * <p>
+ * Les pages sont en lecture seule ({@code @Transactional(readOnly = true)}, lues sur le réplica s'il est configuré) :
+ * tout ce que les templates affichent est chargé dans le modèle avant le rendu, y compris le décompte des votes.
+ * </p>
  */
 @Controller
 public class WebController
 {
-    /** Nombre de sondages par page de résultats. */
-    public static final int DEFAULT_PAGE_COUNT = 5;
+    /** Tailles de page proposées à l'utilisateur (filtrées par la taille maximum configurée). */
+    private static final int[] PAGE_SIZE_CHOICES = {5, 10, 20, 50};
 
     private SondageRepository mSondageRepository;
     private VoteRepository    mVoteRepository;
+    private SondageCounter    mSondageCounter;
+    private VoteTallyService  mTallyService;
+    private HotSondages       mHotSondages;
+    private HomePageSnapshots mSnapshots;
+    private int               mDefaultPageSize;
+    private int               mMaxPageSize;
+
+    /**
+     * Sondage et décompte de ses votes, partagés entre les requêtes simultanées.
+     */
+    private record SondageView(Sondage sondage, Map<Long, VoteTally> tallies)
+    {
+    }
 
     /**
      * Constructeur.
      *
      * @param pSondageRepository
      * @param pVoteRepository
+     * @param pSondageCounter    Compteur en cache du nombre de sondages.
+     * @param pTallyService      Décompte des votes des sondages affichés.
+     * @param pHotSondages      Lectures des sondages très demandés, gardées en mémoire et regroupées.
+     * @param pSnapshots         Premières pages précalculées.
+     * @param pDefaultPageSize   Nombre de sondages par page quand le client n'en demande pas.
+     * @param pMaxPageSize       Nombre maximum de sondages par page accepté par le serveur.
      */
     @Autowired
-    public WebController(SondageRepository pSondageRepository, VoteRepository pVoteRepository)
+    public WebController(
+            SondageRepository pSondageRepository,
+            VoteRepository pVoteRepository,
+            SondageCounter pSondageCounter,
+            VoteTallyService pTallyService,
+            HotSondages pHotSondages,
+            HomePageSnapshots pSnapshots,
+            @Value("${sondages.pagination.default-size:5}") int pDefaultPageSize,
+            @Value("${sondages.pagination.max-size:50}") int pMaxPageSize)
     {
         mSondageRepository = pSondageRepository;
         mVoteRepository = pVoteRepository;
+        mSondageCounter = pSondageCounter;
+        mTallyService = pTallyService;
+        mHotSondages = pHotSondages;
+        mSnapshots = pSnapshots;
+        mMaxPageSize = Math.max(1, pMaxPageSize);
+        mDefaultPageSize = Math.max(1, Math.min(pDefaultPageSize, mMaxPageSize));
     }
 
     /**
      * Page d'accueil.
      *
      * @param page  Numéro de page de sondages (optionnel).
+     * @param size  Nombre de sondages par page (optionnel, borné par le serveur).
+     * @param slice Si vrai, pas de comptage des sondages : seuls les liens précédent/suivant sont affichés.
      * @param model Modèle Thymeleaf.
      * @return La page d'accueil HTML.
      */
     @GetMapping(path = {"/", "/index"})
+    @Transactional(readOnly = true)
     public String index(
-            @RequestParam(required = false, defaultValue = "0") Integer page, Model model)
+            @RequestParam(required = false, defaultValue = "0") Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false, defaultValue = "false") boolean slice,
+            Model model)
     {
-        fillModelWithPaginationAttributes(model, page);
+        fillModelWithPaginationAttributes(model, page, size, slice);
         model.addAttribute("newSondage", new Sondage());
         return "index";
     }
@@ -64,14 +118,20 @@ public class WebController
      * Fournit le HTML correspondant à la liste de tous les sondages (avec pagination).
      *
      * @param page  Numéro de la page demandée.
+     * @param size  Nombre de sondages par page (optionnel, borné par le serveur).
+     * @param slice Si vrai, pas de comptage des sondages.
      * @param model Modèle Thymeleaf.
      * @return Le HTML correspondant à la liste des sondages demandés.
      */
     @GetMapping(path = "/fragments/sondages")
+    @Transactional(readOnly = true)
     public String fragmentSondages(
-            @RequestParam(required = false, defaultValue = "0") Integer page, Model model)
+            @RequestParam(required = false, defaultValue = "0") Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false, defaultValue = "false") boolean slice,
+            Model model)
     {
-        fillModelWithPaginationAttributes(model, page);
+        fillModelWithPaginationAttributes(model, page, size, slice);
         return "index :: all-sondages";
     }
 
@@ -85,41 +145,98 @@ public class WebController
     @GetMapping(path = "/fragments/sondages/{id}")
     public String fragmentSondage(@PathVariable Long id, Model model)
     {
-        Optional<Sondage> sondage = mSondageRepository.findById(id);
-        model.addAttribute("sondage", sondage.get());
+        // Lecture partagée entre les requêtes simultanées, gardée en mémoire si le sondage est très demandé
+        SondageView view = mHotSondages.load("fragment-sondage", id, () -> mSondageRepository.findById(id)//
+                .map(s -> new SondageView(s, tallies(List.of(s))))//
+                .orElseThrow(() -> new RecordNotFoundException(id)));
+        model.addAttribute("sondage", view.sondage());
+        model.addAttribute("tallies", view.tallies());
         return "fragment-sondage :: single-sondage";
     }
 
     /**
      * Remplissage du modèle avec les attributs liés à la pagination.
+     * <p>
+     * Les sondages sont lus sous forme de {@link Slice} (une ligne de plus que la taille de page pour savoir s'il
+     * existe une page suivante) : aucune requête de comptage n'est exécutée. En mode page, le nombre de pages est
+     * calculé à partir du compteur en cache {@link SondageCounter}.
+     * </p>
      *
      * @param model Modèle à remplir.
      * @param page  Numéro de page courante.
+     * @param size  Nombre de sondages par page demandé par le client (null pour la valeur par défaut).
+     * @param slice Mode sans comptage.
+     */
+    private void fillModelWithPaginationAttributes(Model model, int page, Integer size, boolean slice)
+    {
+        int pageSize = size == null ? mDefaultPageSize : Math.max(1, Math.min(size, mMaxPageSize));
+        page = Math.max(0, page);
+
+        // Premières pages précalculées tant qu'aucun sondage n'a changé
+        boolean snapshot = pageSize == mDefaultPageSize && !slice && mSnapshots.isSnapshotPage(page);
+        if (snapshot)
+        {
+            Map<String, Object> attributes = mSnapshots.model(page);
+            if (attributes != null)
+            {
+                model.addAllAttributes(attributes);
+                return;
+            }
+        }
+
+        long generation = mSnapshots.generation();
+        Slice<Sondage> sondages = getSondages(page, pageSize);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("sondages", sondages.getContent());
+        attributes.put("tallies", tallies(sondages.getContent()));
+        attributes.put("page", page);
+        attributes.put("size", pageSize);
+        attributes.put("slice", slice);
+        attributes.put("hasNext", sondages.hasNext());
+        attributes.put("pageSizes", IntStream.of(PAGE_SIZE_CHOICES).filter(s -> s <= mMaxPageSize).toArray());
+        if (!slice)
+        {
+            long count = mSondageCounter.count();
+            long pageCount = count % pageSize > 0L ? (count / pageSize + 1) : (count / pageSize);
+            attributes.put("pageCount", pageCount);
+        }
+        model.addAllAttributes(attributes);
+
+        if (snapshot)
+        {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime nextClosing = sondages.stream()//
+                    .map(Sondage::getClosedAt)//
+                    .filter(closedAt -> closedAt.isAfter(now))//
+                    .min(Comparator.naturalOrder())//
+                    .orElse(null);
+            mSnapshots.storeModel(page, attributes, generation, nextClosing);
+        }
+    }
+
+    /**
+     * @param sondages Des sondages.
+     * @return Le décompte des votes de chaque sondage (aussi ceux sans vote), calculé en une seule requête.
      */
-    private void fillModelWithPaginationAttributes(Model model, int page)
+    private Map<Long, VoteTally> tallies(List<Sondage> sondages)
     {
-        long count = mSondageRepository.count();
-        long pageCount = count % DEFAULT_PAGE_COUNT > 0L ? (count / DEFAULT_PAGE_COUNT + 1) : (count / DEFAULT_PAGE_COUNT);
-        List<Sondage> all = getSondages(page);
-        model.addAttribute("sondages", all);
-        model.addAttribute("page", page);
-        model.addAttribute("pageCount", pageCount);
+        Map<Long, VoteTally> tallies = mTallyService.tallies(sondages.stream().map(Sondage::getId).toList());
+        return sondages.stream()//
+                .map(Sondage::getId)//
+                .collect(Collectors.toMap(Function.identity(), id -> tallies.getOrDefault(id, VoteTally.EMPTY)));
     }
 
     /**
      * Retourne la liste des sondages avec d'abord les sondages ouverts, classés par date de fermeture croissante.
+     * Le tri est fait par la BDD, voir {@link SondageRepository#findSliceOpenFirst(Pageable, LocalDateTime)}.
      *
-     * @param page Le numéro de page demandée.
+     * @param page     Le numéro de page demandée.
+     * @param pageSize Le nombre de sondages par page.
      * @return
      */
-    private List<Sondage> getSondages(int page)
+    private Slice<Sondage> getSondages(int page, int pageSize)
     {
-        Pageable pageable = PageRequest.of(page, DEFAULT_PAGE_COUNT, Sort.by("closedAt").ascending());
-        Page<Sondage> all = mSondageRepository.findAllOrderByClosedAt(pageable, LocalDateTime.now());
-        List<Sondage> openSondages = all.filter(sondage -> sondage.getClosedAt().compareTo(LocalDateTime.now()) > 0).stream().collect(Collectors.toList());
-        List<Sondage> closedSondages = all.filter(sondage -> sondage.getClosedAt().compareTo(LocalDateTime.now()) < 0).stream().collect(Collectors.toList());
-        openSondages.addAll(closedSondages);
-        return openSondages;
+        return mSondageRepository.findSliceOpenFirst(PageRequest.of(page, pageSize), LocalDateTime.now());
     }
 
     @Controller
@@ -0,0 +1,40 @@
+-- Schéma initial, tel que créé par Hibernate (ddl-auto=update) et schema.sql avant l'utilisation de Flyway.
+-- Les bases existantes ne rejouent pas ce script : elles sont marquées en version 1 au premier démarrage
+-- (spring.flyway.baseline-on-migrate).
+
+CREATE TABLE sondage
+(
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    closed_at   DATETIME(6)  NOT NULL,
+    created_at  DATETIME(6)  NOT NULL,
+    created_by  VARCHAR(255) NOT NULL,
+    description VARCHAR(120),
+    question    VARCHAR(120),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE vote
+(
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    `user`     VARCHAR(255) NOT NULL,
+    value      BIT          NOT NULL,
+    voted_at   DATETIME(6)  NOT NULL,
+    id_sondage BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_vote_sondage FOREIGN KEY (id_sondage) REFERENCES sondage (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE users
+(
+    username VARCHAR(50)  NOT NULL,
+    password VARCHAR(100) NOT NULL,
+    enabled  TINYINT      NOT NULL DEFAULT 1,
+    PRIMARY KEY (username)
+) ENGINE = InnoDB;
+
+CREATE TABLE authorities
+(
+    username  VARCHAR(50) NOT NULL,
+    authority VARCHAR(50) NOT NULL,
+    FOREIGN KEY (username) REFERENCES users (username)
+) ENGINE = InnoDB;
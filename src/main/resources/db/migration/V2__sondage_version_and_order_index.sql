@@ -0,0 +1,5 @@
+-- Version des sondages pour le verrouillage optimiste (ETag / If-Match) et index de tri de la page d'accueil.
+
+ALTER TABLE sondage
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD INDEX idx_sondage_closed_at (closed_at, id);
@@ -0,0 +1,41 @@
+-- Table des votants : chaque vote ne référence plus que l'identifiant entier du votant au lieu de répéter son nom.
+--
+-- La table des votes est recopiée puis échangée plutôt que modifiée sur place : un seul parcours des votes, et la
+-- nouvelle table et ses index sont compacts dès leur création. Les tailles avant/après se lisent dans
+-- information_schema.tables (data_length, index_length).
+
+CREATE TABLE voter
+(
+    id   INT          NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_voter_name UNIQUE (name)
+) ENGINE = InnoDB;
+
+INSERT IGNORE INTO voter (name)
+SELECT DISTINCT `user`
+FROM vote;
+
+CREATE TABLE vote_new
+(
+    id         BIGINT      NOT NULL AUTO_INCREMENT,
+    id_sondage BIGINT      NOT NULL,
+    id_voter   INT         NOT NULL,
+    value      BIT         NOT NULL,
+    voted_at   DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_vote_sondage_voter (id_sondage, id_voter),
+    CONSTRAINT fk_vote_voter FOREIGN KEY (id_voter) REFERENCES voter (id)
+) ENGINE = InnoDB;
+
+INSERT INTO vote_new (id, id_sondage, id_voter, value, voted_at)
+SELECT v.id, v.id_sondage, u.id, v.value, v.voted_at
+FROM vote v
+         JOIN voter u ON u.name = v.`user`
+ORDER BY v.id;
+
+RENAME TABLE vote TO vote_old, vote_new TO vote;
+DROP TABLE vote_old;
+
+ALTER TABLE vote
+    ADD CONSTRAINT fk_vote_sondage FOREIGN KEY (id_sondage) REFERENCES sondage (id);
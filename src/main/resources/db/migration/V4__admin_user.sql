@@ -0,0 +1,10 @@
+-- Compte administrateur initial (auparavant recréé à chaque démarrage par schema.sql et data.sql) et unicité des
+-- rôles par utilisateur.
+
+CREATE UNIQUE INDEX ix_auth_username ON authorities (username, authority);
+
+INSERT IGNORE INTO users (username, password, enabled)
+VALUES ('admin', '{bcrypt}$2a$10$fKQ/Ti4P.FyPfR7OgDU08OGYP6Ug9sFwLQ5RQBSktAlqqegnzGWra', 1);
+
+INSERT IGNORE INTO authorities (username, authority)
+VALUES ('admin', 'ROLE_ADMIN');
@@ -0,0 +1,22 @@
+-- Événements de modification des sondages et des votes, écrits dans la même transaction que la modification et
+-- publiés par OutboxRelay vers les systèmes abonnés. outbox_offset garde, pour chaque destination, l'identifiant du
+-- dernier événement publié.
+
+CREATE TABLE outbox_event
+(
+    id         BIGINT        NOT NULL AUTO_INCREMENT,
+    type       VARCHAR(32)   NOT NULL,
+    sondage_id BIGINT        NOT NULL,
+    vote_id    BIGINT,
+    payload    VARCHAR(8000) NOT NULL,
+    created_at DATETIME(6)   NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE outbox_offset
+(
+    sink       VARCHAR(64) NOT NULL,
+    last_id    BIGINT      NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (sink)
+) ENGINE = InnoDB;
@@ -0,0 +1,5 @@
+-- Instance qui a écrit l'événement : chaque instance ignore ses propres événements quand elle applique les
+-- modifications faites par les autres instances à ses caches (ClusterChangeFeed).
+
+ALTER TABLE outbox_event
+    ADD COLUMN origin VARCHAR(64);
@@ -0,0 +1,26 @@
+-- Sondages à choix (unique ou multiple) et à classement, en plus des sondages oui/non.
+-- Les bulletins sont stockés sous forme compacte (voir fr.simplon.sondages.tally.BallotCodec) : masque de bits des
+-- options choisies, ou numéros des options dans l'ordre de préférence (un octet par option).
+
+ALTER TABLE sondage
+    ADD COLUMN kind VARCHAR(16) NOT NULL DEFAULT 'YES_NO';
+
+CREATE TABLE sondage_option
+(
+    id_sondage   BIGINT       NOT NULL,
+    option_index INT          NOT NULL,
+    label        VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id_sondage, option_index)
+) ENGINE = InnoDB;
+
+CREATE TABLE ballot
+(
+    id         BIGINT        NOT NULL AUTO_INCREMENT,
+    id_sondage BIGINT        NOT NULL,
+    id_voter   INT           NOT NULL,
+    choices    VARBINARY(64) NOT NULL,
+    voted_at   DATETIME(6)   NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_ballot_sondage_voter (id_sondage, id_voter),
+    KEY idx_ballot_sondage_id (id_sondage, id)
+) ENGINE = InnoDB;
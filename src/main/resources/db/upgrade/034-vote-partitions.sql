@@ -0,0 +1,45 @@
+-- Partitionnement de la table des votes par intervalles d'identifiants de sondage (MySQL 8).
+--
+-- La partition p<N> contient les votes des sondages d'identifiant inférieur à N, pmax ceux des sondages suivants.
+-- Les identifiants de sondage croissant avec le temps, les votes d'une même période sont regroupés : les requêtes
+-- filtrées par sondage ne lisent qu'une partition, et la partition d'une tranche dont tous les sondages ont été
+-- supprimés est retirée d'un coup (voir VotePartitionMaintenance, qui crée aussi les partitions suivantes au fil de
+-- l'eau).
+--
+-- MySQL impose que chaque clé unique contienne la colonne de partitionnement (d'où la clé primaire (id, id_sondage))
+-- et refuse les clés étrangères sur une table partitionnée.
+--
+-- À exécuter application arrêtée, sur le schéma où vote référence son votant par id_voter, avec les clés étrangères
+-- fk_vote_sondage et fk_vote_voter (script 033-voter.sql, repris depuis dans la migration Flyway V3__voter.sql). La
+-- taille des partitions doit être la même que la propriété sondages.votes.partitions.size.
+
+SET @partition_size = 10000;
+SET SESSION group_concat_max_len = 1000000;
+
+ALTER TABLE vote DROP FOREIGN KEY fk_vote_sondage, DROP FOREIGN KEY fk_vote_voter;
+
+-- Une partition par tranche de sondages existants, plus une tranche d'avance
+SELECT CONCAT('ALTER TABLE vote DROP PRIMARY KEY, ADD PRIMARY KEY (id, id_sondage) ',
+              'PARTITION BY RANGE (id_sondage) (',
+              GROUP_CONCAT(CONCAT('PARTITION p', b, ' VALUES LESS THAN (', b, ')') ORDER BY b SEPARATOR ', '),
+              ', PARTITION pmax VALUES LESS THAN MAXVALUE)')
+INTO @ddl
+FROM (WITH RECURSIVE bounds(b) AS (SELECT @partition_size
+                                   UNION ALL
+                                   SELECT b + @partition_size
+                                   FROM bounds
+                                   WHERE b <= (SELECT COALESCE(MAX(id), 0) FROM sondage) + @partition_size)
+      SELECT b
+      FROM bounds) AS partition_bounds;
+
+PREPARE partition_vote FROM @ddl;
+EXECUTE partition_vote;
+DEALLOCATE PREPARE partition_vote;
+
+-- Vérification : une requête sur un sondage ne doit lire qu'une partition (colonne "partitions" du plan)
+EXPLAIN SELECT COUNT(*) FROM vote WHERE id_sondage = 1;
+
+SELECT partition_name, partition_description, table_rows
+FROM information_schema.partitions
+WHERE table_schema = DATABASE() AND table_name = 'vote'
+ORDER BY partition_ordinal_position;
@@ -23,6 +23,31 @@ document.onreadystatechange = () => {
         let formCreatePolling = document.getElementById(FORM_CREATE_SONDAGE);
         btnRefreshPollings.addEventListener("click", refreshAllSondages);
         formCreatePolling.addEventListener("submit", createNewPolling);
+        // Formulaires de vote, y compris ceux ajoutés après un rafraîchissement
+        document.addEventListener("submit", fillIdempotencyKey, true);
+    }
+}
+
+/**
+ * Génère une clé d'idempotence : un formulaire renvoyé (réseau instable, rechargement de la page) avec la même clé
+ * n'est traité qu'une fois par le serveur.
+ * @returns {string}
+ */
+function newIdempotencyKey() {
+    if (window.crypto && crypto.randomUUID) {
+        return crypto.randomUUID();
+    }
+    return Date.now().toString(36) + Math.random().toString(36).substring(2);
+}
+
+/**
+ * Renseigne la clé d'idempotence d'un formulaire de vote au moment de son envoi.
+ * @param {SubmitEvent} event
+ */
+function fillIdempotencyKey(event) {
+    let input = event.target.querySelector("input[name='idempotency-key']");
+    if (input && !input.value) {
+        input.value = newIdempotencyKey();
     }
 }
 
@@ -32,16 +57,18 @@ document.onreadystatechange = () => {
  */
 function refreshAllSondages(event) {
 
-    let pageCourante = document.querySelector(".page-courante").textContent;
-    pageCourante -= 1;
+    let pagination = document.querySelector(".pagination").dataset;
+    let params = new URLSearchParams({page: pagination.page, size: pagination.size, slice: pagination.slice});
 
-    fetch(BASEURL_FRAGMENT_SONDAGES+'?page='+pageCourante)
-        .then(result => result.text())
+    // Serveur surchargé (503) : on garde la liste affichée
+    fetch(BASEURL_FRAGMENT_SONDAGES + '?' + params)
+        .then(result => result.ok ? result.text() : Promise.reject(result.status))
         .then(text => {
             let div = document.getElementById(DIV_SONDAGES);
             let documentFragment = document.createRange().createContextualFragment(text);
             div.innerHTML = documentFragment.firstChild.innerHTML;
         })
+        .catch(status => console.log("Liste des sondages non rechargée : " + status))
     ;
 }
 
@@ -54,12 +81,13 @@ function updateListWith(sondage) {
     console.log(sondage);
 
     fetch(BASEURL_FRAGMENT_SONDAGES + '/' + sondage.id)
-        .then(response => response.text())
+        .then(response => response.ok ? response.text() : Promise.reject(response.status))
         .then(text => {
             const div = document.getElementById(DIV_SONDAGES);
             let documentFragment = document.createRange().createContextualFragment(text);
             div.prepend(documentFragment.firstChild);
-        });
+        })
+        .catch(status => console.log("Sondage non affiché : " + status));
 }
 
 /**
@@ -81,14 +109,22 @@ function createNewPolling(event) {
 
     console.debug("Sending data to server : \n" + json);
 
+    // Même clé tant que le sondage n'a pas été créé : un nouvel envoi après une erreur réseau ne crée pas de doublon
+    if (!form.dataset.idempotencyKey) {
+        form.dataset.idempotencyKey = newIdempotencyKey();
+    }
+
     // Envoi des données au WebService
     fetch(BASEURL_WEBSERVICE_SONDAGES, {
         method: 'POST',
         body: json,
         headers: {
-            'Content-Type': 'application/json'
+            'Content-Type': 'application/json',
+            'Idempotency-Key': form.dataset.idempotencyKey
         }
     }).then(response => {
+        // Le serveur a répondu : le prochain envoi est un nouveau sondage (ou une correction)
+        delete form.dataset.idempotencyKey;
         if (response.ok) {
             // La requête s'est bien passée
             console.log("Sondage créé avec succès !");
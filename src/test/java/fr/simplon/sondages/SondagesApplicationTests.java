@@ -28,9 +28,9 @@ import java.time.temporal.ChronoUnit;
  * On crée un faux client web (RestTemplate) pour tester les différentes URLs REST du WebService :
  * <p>
  *     <ul>
- *         <li>GET /sondages ==&gt; {@link SondageController#sondages()}</li>
+ *         <li>GET /sondages ==&gt; {@link SondageController#sondages(String)}</li>
  *         <li>POST /sondages ==&gt; {@link SondageController#createSondage(Sondage, BindingResult, HttpServletRequest)}</li>
- *         <li>GET /sondages{id} ==&gt; {@link SondageController#getSondageById(Long)}</li>
+ *         <li>GET /sondages{id} ==&gt; {@link SondageController#getSondageById(Long, String)}</li>
  *         <li>PUT /sondages{id} ==&gt; {@link SondageController#updateSondage(Long, Sondage, BindingResult, HttpServletRequest)}</li>
  *         <li>DELETE /sondages{id} ==&gt; {@link SondageController#deleteSondage(Long)}</li>
  *     </ul>
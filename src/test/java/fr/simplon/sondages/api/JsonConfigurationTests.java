@@ -0,0 +1,112 @@
+package fr.simplon.sondages.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import fr.simplon.sondages.dto.SondageDto;
+import fr.simplon.sondages.entity.Sondage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du filtre {@code ?fields=} et du convertisseur CBOR, sans contexte Spring : le constructeur d'ObjectMapper est
+ * configuré comme par Spring Boot (dates ISO) puis par {@link JsonConfiguration}.
+ */
+class JsonConfigurationTests
+{
+    private static final SondageDto DTO = new SondageDto(
+            7L, "Description", "Question ?", LocalDateTime.of(2030, 1, 2, 3, 4, 5), LocalDateTime.of(2030, 2, 1, 0, 0),
+            "JUnit", Sondage.Kind.YES_NO, List.of(), 3, 1, 2L);
+
+    private JsonConfiguration configuration;
+    private ObjectMapper      json;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void init()
+    {
+        ObjectProvider<Jackson2ObjectMapperBuilder> builders = Mockito.mock(ObjectProvider.class);
+        configuration = new JsonConfiguration(builders);
+        Mockito.when(builders.getObject()).thenAnswer(invocation -> {
+            Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder()//
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            configuration.fieldsFilterCustomizer().customize(builder);
+            return builder;
+        });
+        json = builders.getObject().build();
+    }
+
+    private static JsonNode write(HttpMessageConverter<Object> converter, Object body, ObjectMapper reader)
+            throws IOException
+    {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(body, null, output);
+        return reader.readTree(output.getBodyAsBytes());
+    }
+
+    private static Set<String> fieldNames(JsonNode node)
+    {
+        Set<String> names = new HashSet<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    @Test
+    void testFieldsFilter() throws IOException
+    {
+        MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter(json);
+
+        JsonNode all = write(converter, JsonConfiguration.selectFields(DTO, null), json);
+        assertEquals(11, all.size());
+        assertEquals("2030-01-02T03:04:05", all.get("createdAt").asText());
+
+        JsonNode some = write(converter, JsonConfiguration.selectFields(List.of(DTO), " id, question ,, inconnu"), json);
+        assertEquals(Set.of("id", "question"), fieldNames(some.get(0)));
+        assertEquals(7, some.get(0).get("id").asInt());
+
+        // DTO non enveloppé : filtre par défaut du constructeur, tous les champs
+        assertEquals(11, write(converter, DTO, json).size());
+    }
+
+    @Test
+    void testCborConverterSharesJacksonConfiguration() throws IOException
+    {
+        List<HttpMessageConverter<?>> converters = new ArrayList<>();
+        converters.add(new MappingJackson2HttpMessageConverter(json));
+        converters.add(new MappingJackson2CborHttpMessageConverter());
+        configuration.extendMessageConverters(converters);
+
+        assertEquals(2, converters.size());
+        // JSON reste le format par défaut
+        assertInstanceOf(MappingJackson2HttpMessageConverter.class, converters.get(0));
+        @SuppressWarnings("unchecked")
+        HttpMessageConverter<Object> cbor = (HttpMessageConverter<Object>) converters.get(1);
+        assertTrue(cbor.canWrite(SondageDto.class, MediaType.parseMediaType("application/cbor")));
+
+        ObjectMapper cborReader = new ObjectMapper(new CBORFactory());
+        JsonNode all = write(cbor, DTO, cborReader);
+        assertEquals(11, all.size());
+        assertEquals("2030-01-02T03:04:05", all.get("createdAt").asText());
+        JsonNode some = write(cbor, JsonConfiguration.selectFields(DTO, "countTrue"), cborReader);
+        assertEquals(Set.of("countTrue"), fieldNames(some));
+        assertEquals(3, some.get("countTrue").asInt());
+    }
+}
@@ -0,0 +1,58 @@
+package fr.simplon.sondages.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du démarrage sans construction de la documentation OpenAPI (profil {@code fast-startup}).
+ */
+class LazySpringdocPostProcessorTests
+{
+    private static DefaultListableBeanFactory beanFactory()
+    {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        GenericBeanDefinition openApi = new GenericBeanDefinition();
+        openApi.setBeanClassName("org.springdoc.webmvc.api.OpenApiWebMvcResource");
+        beanFactory.registerBeanDefinition("openApiResource", openApi);
+        // Bean déclaré par une méthode @Bean d'une configuration springdoc
+        GenericBeanDefinition produced = new GenericBeanDefinition();
+        produced.setFactoryBeanName("org.springdoc.core.configuration.SpringDocConfiguration");
+        produced.setFactoryMethodName("openAPIBuilder");
+        beanFactory.registerBeanDefinition("openAPIBuilder", produced);
+        GenericBeanDefinition application = new GenericBeanDefinition();
+        application.setBeanClassName(SondageController.class.getName());
+        beanFactory.registerBeanDefinition("sondageController", application);
+        return beanFactory;
+    }
+
+    private static DefaultListableBeanFactory process(MockEnvironment environment)
+    {
+        DefaultListableBeanFactory beanFactory = beanFactory();
+        LazySpringdocPostProcessor processor = new LazySpringdocPostProcessor();
+        processor.setEnvironment(environment);
+        processor.postProcessBeanFactory(beanFactory);
+        return beanFactory;
+    }
+
+    @Test
+    void testOnlySpringdocBeansAreLazy()
+    {
+        DefaultListableBeanFactory beanFactory = process(new MockEnvironment());
+        assertTrue(beanFactory.getBeanDefinition("openApiResource").isLazyInit());
+        assertTrue(beanFactory.getBeanDefinition("openAPIBuilder").isLazyInit());
+        assertFalse(beanFactory.getBeanDefinition("sondageController").isLazyInit());
+    }
+
+    @Test
+    void testCanBeDisabled()
+    {
+        DefaultListableBeanFactory beanFactory = process(
+                new MockEnvironment().withProperty("sondages.startup.lazy-springdoc", "false"));
+        assertFalse(beanFactory.getBeanDefinition("openApiResource").isLazyInit());
+        assertFalse(beanFactory.getBeanDefinition("openAPIBuilder").isLazyInit());
+    }
+}
@@ -0,0 +1,84 @@
+package fr.simplon.sondages.api;
+
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dto.SondagePatch;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.outbox.OutboxWriter;
+import fr.simplon.sondages.service.HomePageSnapshots;
+import fr.simplon.sondages.service.HotSondages;
+import fr.simplon.sondages.service.SondageCounter;
+import fr.simplon.sondages.service.SondageDeletionService;
+import fr.simplon.sondages.service.SondageSearchService;
+import fr.simplon.sondages.service.VoteTallyService;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests des modifications concurrentes et de la validation des modifications partielles, avec des dépendances simulées
+ * par Mockito.
+ */
+class SondageControllerTests
+{
+    private SondageRepository repository;
+    private SondageController controller;
+
+    @BeforeEach
+    public void init()
+    {
+        repository = Mockito.mock(SondageRepository.class);
+        controller = new SondageController(repository, Mockito.mock(SondageSearchService.class),
+                                           Mockito.mock(SondageCounter.class), Mockito.mock(VoteTallyService.class),
+                                           Mockito.mock(SondageDeletionService.class), Mockito.mock(HotSondages.class),
+                                           Mockito.mock(HomePageSnapshots.class), Mockito.mock(OutboxWriter.class));
+    }
+
+    private static Sondage sondage(Long version)
+    {
+        Sondage sondage = new Sondage();
+        sondage.setDescription("Description");
+        sondage.setQuestion("Question ?");
+        sondage.setClosedAt(LocalDateTime.now().plusDays(1));
+        sondage.setCreatedBy("JUnit");
+        ReflectionTestUtils.setField(sondage, "id", 1L);
+        ReflectionTestUtils.setField(sondage, "version", version);
+        return sondage;
+    }
+
+    @Test
+    void testConcurrentUpdateIsPreconditionFailed()
+    {
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(sondage(3L)));
+        Mockito.when(repository.saveAndFlush(Mockito.any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Sondage.class, 1L));
+
+        Sondage update = sondage(null);
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> controller.updateSondage(
+                1L, update, new BeanPropertyBindingResult(update, "sondage"), "\"3\"", new MockHttpServletRequest()));
+        assertEquals(HttpStatus.PRECONDITION_FAILED, e.getStatusCode());
+    }
+
+    @Test
+    void testPatchRejectsBlankAuthor()
+    {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        assertEquals(1, validator.validate(new SondagePatch(null, null, null, "  ")).size());
+        assertEquals(1, validator.validate(new SondagePatch(null, null, null, "")).size());
+        assertTrue(validator.validate(new SondagePatch(null, null, null, " JUnit ")).isEmpty());
+        // Champ absent : l'auteur n'est pas modifié
+        assertTrue(validator.validate(new SondagePatch("Description", null, null, null)).isEmpty());
+    }
+}
@@ -0,0 +1,70 @@
+package fr.simplon.sondages.api;
+
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.entity.Vote;
+import fr.simplon.sondages.outbox.OutboxWriter;
+import fr.simplon.sondages.service.HomePageSnapshots;
+import fr.simplon.sondages.service.HotSondages;
+import fr.simplon.sondages.service.VoteTallyService;
+import fr.simplon.sondages.service.VoterDirectory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests des votes oui/non sur des sondages inconnus ou d'un autre type, avec des dépendances simulées par Mockito.
+ */
+class VoteControllerTests
+{
+    private SondageRepository repository;
+    private VoteRepository    voteRepository;
+    private VoteController    controller;
+
+    @BeforeEach
+    public void init()
+    {
+        repository = Mockito.mock(SondageRepository.class);
+        voteRepository = Mockito.mock(VoteRepository.class);
+        controller = new VoteController(repository, voteRepository, Mockito.mock(VoterDirectory.class),
+                                        Mockito.mock(HotSondages.class), Mockito.mock(HomePageSnapshots.class),
+                                        Mockito.mock(OutboxWriter.class), Mockito.mock(VoteTallyService.class));
+    }
+
+    private String vote(Long sondageId)
+    {
+        Vote vote = new Vote();
+        return controller.vote(sondageId, vote, new BeanPropertyBindingResult(vote, "vote"), new ExtendedModelMap());
+    }
+
+    @Test
+    void testUnknownSondageIsNotFound()
+    {
+        Mockito.when(repository.findById(42L)).thenReturn(Optional.empty());
+
+        RecordNotFoundException e = assertThrows(RecordNotFoundException.class, () -> vote(42L));
+        assertEquals(42L, e.getId());
+        Mockito.verifyNoInteractions(voteRepository);
+    }
+
+    @Test
+    void testRankedSondageIsRejected()
+    {
+        Sondage ranked = new Sondage();
+        ranked.setKind(Sondage.Kind.RANKED);
+        Mockito.when(repository.findById(7L)).thenReturn(Optional.of(ranked));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> vote(7L));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        Mockito.verifyNoInteractions(voteRepository);
+    }
+}
@@ -0,0 +1,140 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.entity.Sondage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la pagination de la page d'accueil ({@link SondageRepository#findSliceOpenFirst}) sur une base H2 en mode
+ * MySQL remplie de plusieurs milliers de sondages, dont beaucoup ont la même date de fermeture.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pagination;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SondagePaginationTests
+{
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 15, 12, 0);
+
+    private static final int SONDAGE_COUNT = 3000;
+
+    @Autowired
+    private SondageRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    /**
+     * Ordre attendu, calculé en Java : sondages ouverts puis fermés, par date de fermeture puis identifiant.
+     */
+    private List<Long> expected;
+
+    @BeforeEach
+    public void init()
+    {
+        // Dates de fermeture tirées parmi 400 valeurs possibles pour avoir beaucoup d'ex-aequo
+        Random random = new Random(42);
+        List<Sondage> sondages = new ArrayList<>(SONDAGE_COUNT);
+        for (int i = 0; i < SONDAGE_COUNT; i++)
+        {
+            sondages.add(new Sondage(null, "Sondage " + i, "Question " + i + " ?", NOW.minusDays(30),
+                                     NOW.plusHours(random.nextInt(400) - 250), "JUnit"));
+        }
+        repository.saveAll(sondages);
+        entityManager.flush();
+        entityManager.clear();
+
+        Comparator<Sondage> order = Comparator.comparing(Sondage::getClosedAt).thenComparing(Sondage::getId);
+        List<Sondage> all = repository.findAll();
+        expected = Stream.concat(all.stream().filter(s -> s.getClosedAt().isAfter(NOW)).sorted(order),
+                                 all.stream().filter(s -> !s.getClosedAt().isAfter(NOW)).sorted(order))//
+                .map(Sondage::getId)//
+                .toList();
+        entityManager.clear();
+    }
+
+    @Test
+    void testPagesCoverAllSondagesInOrder()
+    {
+        for (int size : new int[]{7, 50, 1000})
+        {
+            List<Long> ids = new ArrayList<>();
+            Slice<Sondage> slice;
+            int page = 0;
+            do
+            {
+                slice = repository.findSliceOpenFirst(PageRequest.of(page++, size), NOW);
+                assertTrue(slice.getNumberOfElements() <= size);
+                slice.forEach(s -> ids.add(s.getId()));
+            }
+            while (slice.hasNext());
+
+            assertEquals(SONDAGE_COUNT, new HashSet<>(ids).size(), "Doublons ou sondages manquants, taille " + size);
+            assertEquals(expected, ids, "Ordre incorrect pour la taille de page " + size);
+        }
+    }
+
+    @Test
+    void testPagesAreStable()
+    {
+        for (int page : new int[]{0, 17, 40, 41, 100, 428})
+        {
+            List<Long> first = repository.findSliceOpenFirst(PageRequest.of(page, 7), NOW).map(Sondage::getId).toList();
+            entityManager.clear();
+            List<Long> second = repository.findSliceOpenFirst(PageRequest.of(page, 7), NOW).map(Sondage::getId).toList();
+            assertEquals(first, second);
+            assertEquals(expected.subList(Math.min(page * 7, SONDAGE_COUNT), Math.min(page * 7 + 7, SONDAGE_COUNT)),
+                         first);
+        }
+    }
+
+    @Test
+    void testLastPageHasNoNext()
+    {
+        int lastPage = (SONDAGE_COUNT - 1) / 7;
+        assertFalse(repository.findSliceOpenFirst(PageRequest.of(lastPage, 7), NOW).hasNext());
+        assertTrue(repository.findSliceOpenFirst(PageRequest.of(lastPage - 1, 7), NOW).hasNext());
+        assertTrue(repository.findSliceOpenFirst(PageRequest.of(lastPage + 1, 7), NOW).isEmpty());
+        // Décalage supérieur à Integer.MAX_VALUE : page vide plutôt qu'une ArithmeticException
+        assertTrue(repository.findSliceOpenFirst(PageRequest.of(Integer.MAX_VALUE, 7), NOW).isEmpty());
+    }
+
+    /**
+     * Vérifie que la BDD lit les sondages dans l'ordre de l'index {@code (closed_at, id)} au lieu de les trier.
+     */
+    @Test
+    void testOrderingUsesIndex()
+    {
+        for (String operator : new String[]{">", "<="})
+        {
+            String plan = String.valueOf(entityManager.getEntityManager().createNativeQuery(
+                    "EXPLAIN SELECT * FROM sondage WHERE closed_at " + operator
+                            + " TIMESTAMP '2026-01-15 12:00:00' ORDER BY closed_at, id LIMIT 8 OFFSET 40").getSingleResult()).toLowerCase();
+            assertTrue(plan.contains("idx_sondage_closed_at"), plan);
+            assertTrue(plan.contains("index sorted"), plan);
+        }
+    }
+}
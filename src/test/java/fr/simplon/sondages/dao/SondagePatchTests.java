@@ -0,0 +1,82 @@
+package fr.simplon.sondages.dao;
+
+import fr.simplon.sondages.dto.SondagePatch;
+import fr.simplon.sondages.entity.Sondage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la modification partielle conditionnelle des sondages ({@link SondageRepository#patch}).
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:patch;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SondagePatchTests
+{
+    @Autowired
+    private SondageRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Long id;
+
+    @BeforeEach
+    public void init()
+    {
+        LocalDateTime now = LocalDateTime.now();
+        id = repository.save(new Sondage(null, "Cantine", "Menu végétarien ?", now, now.plusDays(7), "JUnit")).getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void testPatchUpdatesOnlyGivenFieldsAndIncrementsVersion()
+    {
+        assertEquals(0L, repository.findVersionById(id).orElseThrow());
+
+        assertEquals(1, repository.patch(id, 0L, new SondagePatch(null, "Menu vegan ?", null, null)));
+        entityManager.clear();
+
+        Sondage sondage = repository.findById(id).orElseThrow();
+        assertEquals("Menu vegan ?", sondage.getQuestion());
+        assertEquals("Cantine", sondage.getDescription());
+        assertEquals("JUnit", sondage.getCreatedBy());
+        assertEquals(1L, sondage.getVersion());
+    }
+
+    @Test
+    void testPatchWithStaleVersionDoesNothing()
+    {
+        assertEquals(1, repository.patch(id, 0L, new SondagePatch("Réfectoire", null, null, null)));
+        assertEquals(0, repository.patch(id, 0L, new SondagePatch("Self", null, null, null)));
+        entityManager.clear();
+
+        assertEquals("Réfectoire", repository.findById(id).orElseThrow().getDescription());
+        assertEquals(1L, repository.findVersionById(id).orElseThrow());
+    }
+
+    @Test
+    void testPatchWithoutVersionAndUnknownId()
+    {
+        assertEquals(1, repository.patch(id, null, new SondagePatch(null, null, null, "Admin")));
+        assertEquals(0, repository.patch(-1L, null, new SondagePatch(null, null, null, "Admin")));
+        assertTrue(repository.findVersionById(-1L).isEmpty());
+    }
+}
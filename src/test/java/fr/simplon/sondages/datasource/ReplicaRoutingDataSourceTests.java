@@ -0,0 +1,93 @@
+package fr.simplon.sondages.datasource;
+
+import jakarta.servlet.http.Cookie;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du routage des connexions entre deux bases H2 jouant le rôle du primaire et du réplica.
+ */
+class ReplicaRoutingDataSourceTests
+{
+    private JdbcTemplate        jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    public void init()
+    {
+        DataSource routing = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(database("primary"), database("replica")));
+        jdbcTemplate = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    void testReadOnlyTransactionsGoToReplica()
+    {
+        assertEquals("replica", readOnly.execute(status -> currentDatabase()));
+        assertEquals("primary", readWrite.execute(status -> currentDatabase()));
+        assertEquals("primary", currentDatabase());
+    }
+
+    @Test
+    void testReadsAfterWriteGoToPrimary() throws Exception
+    {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+
+        MockHttpServletResponse voteResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/votes/1"), voteResponse, new MockFilterChain());
+        Cookie cookie = voteResponse.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertNotNull(cookie);
+
+        MockHttpServletRequest sameBrowser = new MockHttpServletRequest("GET", "/votes/1");
+        sameBrowser.setCookies(cookie);
+        assertEquals("primary", readInFilter(filter, sameBrowser));
+        assertEquals("replica", readInFilter(filter, new MockHttpServletRequest("GET", "/votes/1")));
+
+        MockHttpServletRequest expired = new MockHttpServletRequest("GET", "/votes/1");
+        expired.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME, String.valueOf(System.currentTimeMillis() - 1)));
+        assertEquals("replica", readInFilter(filter, expired));
+    }
+
+    private String readInFilter(ReadYourWritesFilter filter, MockHttpServletRequest request) throws Exception
+    {
+        AtomicReference<String> database = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(),
+                        (req, res) -> database.set(readOnly.execute(status -> currentDatabase())));
+        return database.get();
+    }
+
+    private String currentDatabase()
+    {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static DataSource database(String name)
+    {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS marker (name VARCHAR(20))");
+        jdbcTemplate.execute("DELETE FROM marker");
+        jdbcTemplate.update("INSERT INTO marker (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,198 @@
+package fr.simplon.sondages.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.simplon.sondages.dao.OutboxEventRepository;
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.dao.VoterRepository;
+import fr.simplon.sondages.dto.VoteTally;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.entity.Vote;
+import fr.simplon.sondages.entity.Voter;
+import fr.simplon.sondages.service.SondageCounter;
+import fr.simplon.sondages.service.VoteTallyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Deux instances de l'application simulées sur la même base H2 : chacune a son compteur de sondages, ses décomptes
+ * des votes et son {@link ClusterChangeFeed}. Les modifications d'une instance doivent être vues par l'autre après une
+ * seule lecture du flux, et une seule fois.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cluster;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClusterChangeFeedTests
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules()//
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Autowired
+    private OutboxEventRepository events;
+
+    @Autowired
+    private SondageRepository sondages;
+
+    @Autowired
+    private VoteRepository votes;
+
+    @Autowired
+    private VoterRepository voters;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    /**
+     * Caches d'une instance de l'application.
+     */
+    private final class Node
+    {
+        private final OutboxWriter      writer;
+        private final SondageCounter    counter;
+        private final VoteTallyService  tallies;
+        private final ClusterChangeFeed feed;
+
+        Node(String name)
+        {
+            InstanceId id = new InstanceId(name);
+            writer = new OutboxWriter(events, MAPPER, id);
+            counter = new SondageCounter(sondages, Duration.ofHours(1));
+            tallies = new VoteTallyService(votes, new SimpleMeterRegistry(), 100, Duration.ofHours(1));
+            feed = new ClusterChangeFeed(events, List.of(counter, tallies), id, 500, Duration.ofSeconds(5));
+        }
+
+        Sondage createSondage()
+        {
+            Sondage sondage = transaction.execute(status -> {
+                Sondage s = sondages.save(new Sondage(null, "Sondage", "Question ?", LocalDateTime.now(),
+                                                      LocalDateTime.now().plusDays(1), "JUnit"));
+                writer.sondageCreated(s);
+                return s;
+            });
+            counter.increment();
+            return sondage;
+        }
+
+        void vote(Sondage sondage, String name, boolean value)
+        {
+            transaction.executeWithoutResult(status -> {
+                Voter voter = voters.save(new Voter(null, name));
+                Vote vote = votes.save(new Vote(null, sondage, value, LocalDateTime.now(), voter));
+                writer.voteCreated(vote);
+                tallies.voted(sondage.getId());
+            });
+        }
+    }
+
+    @BeforeEach
+    public void init()
+    {
+        events.deleteAll();
+        votes.deleteAll();
+        voters.deleteAll();
+        sondages.deleteAll();
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void testRemoteChangesAreSeenAfterOnePoll()
+    {
+        Node a = new Node("a");
+        Node b = new Node("b");
+        assertEquals(0, a.counter.count());
+        assertEquals(0, b.counter.count());
+
+        Sondage sondage = a.createSondage();
+        assertEquals(1, a.counter.count());
+        assertEquals(VoteTally.EMPTY, a.tallies.tally(sondage.getId()));
+        assertEquals(VoteTally.EMPTY, b.tallies.tally(sondage.getId()));
+
+        a.vote(sondage, "Alice", true);
+        a.vote(sondage, "Bob", false);
+        // L'instance qui a écrit voit tout de suite ses modifications, l'autre garde ses caches jusqu'à la lecture
+        assertEquals(new VoteTally(1, 1), a.tallies.tally(sondage.getId()));
+        assertEquals(0, b.counter.count());
+        assertEquals(VoteTally.EMPTY, b.tallies.tally(sondage.getId()));
+
+        b.feed.sync();
+        assertEquals(1, b.counter.count());
+        assertEquals(new VoteTally(1, 1), b.tallies.tally(sondage.getId()));
+
+        // Ses propres événements ne sont pas appliqués une seconde fois
+        a.feed.sync();
+        assertEquals(1, a.counter.count());
+
+        b.createSondage();
+        a.feed.sync();
+        b.feed.sync();
+        assertEquals(2, a.counter.count());
+        assertEquals(2, b.counter.count());
+    }
+
+    @Test
+    void testEventCommittedLateIsAppliedOnce() throws Exception
+    {
+        Node a = new Node("a");
+        Node b = new Node("b");
+        assertEquals(0, b.counter.count());
+
+        // Transaction de l'instance a qui obtient un identifiant puis reste ouverte
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            a.writer.sondageCreated(sondages.save(new Sondage(null, "Lent", "Question ?", LocalDateTime.now(),
+                                                              LocalDateTime.now().plusDays(1), "JUnit")));
+            written.countDown();
+            try
+            {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+
+        a.createSondage();
+        b.feed.sync();
+        assertEquals(1, b.counter.count());
+
+        release.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+        b.feed.sync();
+        assertEquals(2, b.counter.count());
+        b.feed.sync();
+        assertEquals(2, b.counter.count());
+        assertEquals(2, sondages.count());
+    }
+}
@@ -0,0 +1,209 @@
+package fr.simplon.sondages.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpServer;
+import fr.simplon.sondages.dao.OutboxEventRepository;
+import fr.simplon.sondages.dao.OutboxOffsetRepository;
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.entity.OutboxEvent;
+import fr.simplon.sondages.entity.OutboxOffset;
+import fr.simplon.sondages.entity.Sondage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de l'enregistrement des événements et de leur publication vers un fichier NDJSON et un webhook local, sur une
+ * base H2 en mode MySQL.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTests
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules()//
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Autowired
+    private OutboxEventRepository events;
+
+    @Autowired
+    private OutboxOffsetRepository offsets;
+
+    @Autowired
+    private SondageRepository sondages;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private OutboxWriter        writer;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    public void init()
+    {
+        offsets.deleteAll();
+        events.deleteAll();
+        writer = new OutboxWriter(events, MAPPER, new InstanceId("test"));
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    private OutboxRelay relay(OutboxSink sink)
+    {
+        return new OutboxRelay(events, offsets, List.of(sink), MAPPER, transactionManager, 2, Duration.ofSeconds(5),
+                               Duration.ofDays(7));
+    }
+
+    private Long createSondage(String description)
+    {
+        return transaction.execute(status -> {
+            Sondage sondage = sondages.save(new Sondage(null, description, "Question ?", LocalDateTime.now(),
+                                                        LocalDateTime.now().plusDays(1), "JUnit"));
+            writer.sondageCreated(sondage);
+            return sondage.getId();
+        });
+    }
+
+    @Test
+    void testEventIsWrittenOnlyIfTransactionCommits()
+    {
+        createSondage("Validé");
+        transaction.execute(status -> {
+            writer.sondageDeleted(999L);
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(List.of(OutboxEvent.Type.SONDAGE_CREATED), events.findAll().stream().map(OutboxEvent::getType).toList());
+    }
+
+    @Test
+    void testFileSinkReceivesEachEventOnceAndResumes(@TempDir Path directory) throws IOException
+    {
+        Path file = directory.resolve("events.ndjson");
+        OutboxRelay relay = relay(new NdjsonFileSink(file));
+        Long first = createSondage("Un");
+        createSondage("Deux");
+        createSondage("Trois");
+
+        relay.relay();
+        relay.relay();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        JsonNode event = MAPPER.readTree(lines.get(0));
+        assertEquals("SONDAGE_CREATED", event.get("type").asText());
+        assertEquals(first.longValue(), event.get("sondageId").asLong());
+        assertEquals("Un", event.get("payload").get("description").asText());
+
+        // Nouvelle instance du relais : reprend après le dernier événement publié
+        createSondage("Quatre");
+        relay(new NdjsonFileSink(file)).relay();
+        lines = Files.readAllLines(file);
+        assertEquals(4, lines.size());
+        List<Long> ids = new ArrayList<>();
+        for (String line : lines)
+        {
+            ids.add(MAPPER.readTree(line).get("id").asLong());
+        }
+        assertEquals(ids.stream().sorted().distinct().toList(), ids);
+    }
+
+    @Test
+    void testWebhookFailureIsRetried() throws IOException
+    {
+        AtomicInteger calls = new AtomicInteger();
+        List<String> received = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/events", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            // Première livraison refusée
+            int status = calls.incrementAndGet() == 1 ? 500 : 204;
+            if (status == 204)
+            {
+                synchronized (received)
+                {
+                    body.lines().forEach(received::add);
+                }
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        try
+        {
+            URI url = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/events");
+            OutboxRelay relay = relay(new WebhookSink(url, Duration.ofSeconds(5)));
+            createSondage("Un");
+            createSondage("Deux");
+            createSondage("Trois");
+
+            relay.relay();
+            assertTrue(received.isEmpty());
+            assertEquals(0L, offsets.findById("webhook").map(OutboxOffset::getLastId).orElse(0L));
+
+            // Les identifiants ne commencent pas à 1 (événements des autres tests) : la destination sans position
+            // part du premier événement de la table
+            relay.relay();
+            assertEquals(3, received.size());
+            assertEquals(events.findAll().stream().mapToLong(OutboxEvent::getId).max().orElseThrow(),
+                         offsets.findById("webhook").orElseThrow().getLastId());
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testPublicationStopsAtRecentGap()
+    {
+        // Date d'écriture très en retard (horloge décalée de l'instance qui a écrit) : sans effet sur le délai
+        LocalDateTime past = LocalDateTime.now().minusDays(1);
+        List<OutboxEvent> batch = List.of(event(1, past), event(2, past), event(4, past), event(5, past));
+        OutboxGaps gaps = new OutboxGaps(Duration.ofSeconds(5));
+        long seen = 1_000_000_000L;
+        assertEquals(2, gaps.publishable(0, batch, seen).size());
+        assertEquals(2, gaps.publishable(0, batch, seen + Duration.ofSeconds(4).toNanos()).size());
+        // Identifiant 3 manquant depuis plus longtemps que le délai : transaction annulée
+        assertEquals(4, gaps.publishable(0, batch, seen + Duration.ofSeconds(5).toNanos()).size());
+    }
+
+    private static OutboxEvent event(long id, LocalDateTime createdAt)
+    {
+        OutboxEvent event = new OutboxEvent(OutboxEvent.Type.VOTE_CREATED, 1L, id, "{}", createdAt, "test");
+        ReflectionTestUtils.setField(event, "id", id);
+        return event;
+    }
+}
@@ -0,0 +1,93 @@
+package fr.simplon.sondages.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du hachage des mots de passe sur un nombre limité de threads.
+ */
+class BoundedPasswordEncoderTests
+{
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    public void shutdown()
+    {
+        encoder.shutdown();
+    }
+
+    @Test
+    void testEncodesMatchesAndDetectsWeakerHashes()
+    {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), 1, 1, Duration.ofSeconds(5));
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("other", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+    }
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder()
+        {
+            @Override
+            public String encode(CharSequence rawPassword)
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword)
+            {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        encoder = new BoundedPasswordEncoder(blocking, 1, 1, Duration.ofSeconds(5));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        encoder.bindTo(registry);
+
+        // Un hachage en cours et un en attente : le troisième est refusé immédiatement
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("sondages.password.hashing.queue").gauge().value() < 1 && System.nanoTime() < deadline)
+        {
+            Thread.onSpinWait();
+        }
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("c"));
+        assertEquals(1.0, registry.get("sondages.password.hashing.rejected").functionCounter().count());
+
+        release.countDown();
+        assertEquals("a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("b", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testGivesUpAfterTimeout()
+    {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(14), 1, 1, Duration.ofMillis(20));
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("secret"));
+    }
+}
@@ -0,0 +1,123 @@
+package fr.simplon.sondages.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du cache des utilisateurs, devant un gestionnaire en mémoire qui joue le rôle de la BDD.
+ */
+class CachingUserDetailsManagerTests
+{
+    private InMemoryUserDetailsManager database;
+    private CachingUserDetailsManager  users;
+    private SimpleMeterRegistry        registry;
+
+    @BeforeEach
+    public void init()
+    {
+        database = new InMemoryUserDetailsManager(User.withUsername("alice").password("{noop}secret").roles("USER").build());
+        users = new CachingUserDetailsManager(database, Duration.ofMinutes(5), Duration.ofMinutes(1), 100);
+        registry = new SimpleMeterRegistry();
+        users.bindTo(registry);
+    }
+
+    @Test
+    void testSecondLookupIsServedFromCache()
+    {
+        users.loadUserByUsername("alice");
+        users.loadUserByUsername("alice");
+        assertTrue(users.userExists("alice"));
+
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+        assertEquals(2.0, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void testErasedCredentialsDoNotLeakIntoCache()
+    {
+        User first = (User) users.loadUserByUsername("alice");
+        first.eraseCredentials();
+
+        assertEquals("{noop}secret", users.loadUserByUsername("alice").getPassword());
+    }
+
+    @Test
+    void testUnknownUsersAreCachedUntilCreated()
+    {
+        assertFalse(users.userExists("bob"));
+        assertThrows(UsernameNotFoundException.class, () -> users.loadUserByUsername("bob"));
+
+        users.createUser(User.withUsername("bob").password("{noop}pwd").roles("USER").build());
+        assertTrue(users.userExists("bob"));
+    }
+
+    @Test
+    void testUnknownUsersExpireSooner()
+    {
+        CachingUserDetailsManager shortNegative = new CachingUserDetailsManager(database, Duration.ofMinutes(5),
+                                                                                Duration.ZERO, 100);
+        assertFalse(shortNegative.userExists("bob"));
+        // Création par une autre instance : vue dès l'expiration du résultat négatif
+        database.createUser(User.withUsername("bob").password("{noop}pwd").roles("USER").build());
+        assertTrue(shortNegative.userExists("bob"));
+    }
+
+    @Test
+    void testLoadDuringUpdateIsNotCached()
+    {
+        // Lecture de l'ancien utilisateur, puis modification et oubli avant que la lecture ne soit mise en cache
+        InMemoryUserDetailsManager slow = new InMemoryUserDetailsManager(database.loadUserByUsername("alice"))
+        {
+            @Override
+            public UserDetails loadUserByUsername(String username)
+            {
+                UserDetails user = super.loadUserByUsername(username);
+                users.evict(username);
+                return user;
+            }
+        };
+        users = new CachingUserDetailsManager(slow, Duration.ofMinutes(5), Duration.ofMinutes(1), 100);
+        users.loadUserByUsername("alice");
+        assertEquals(0, users.size());
+    }
+
+    @Test
+    void testUpdatesAreSeenAfterEvictionOrExpiry()
+    {
+        users.loadUserByUsername("alice");
+        UserDetails changed = User.withUsername("alice").password("{noop}other").roles("USER").build();
+
+        // Modification faite par une autre instance : vue seulement après expiration
+        database.updateUser(changed);
+        assertEquals("{noop}secret", users.loadUserByUsername("alice").getPassword());
+
+        users.evict("alice");
+        assertEquals("{noop}other", users.loadUserByUsername("alice").getPassword());
+
+        CachingUserDetailsManager noCache = new CachingUserDetailsManager(database, Duration.ZERO, Duration.ZERO, 100);
+        noCache.loadUserByUsername("alice");
+        database.updateUser(User.withUsername("alice").password("{noop}third").roles("USER").build());
+        assertEquals("{noop}third", noCache.loadUserByUsername("alice").getPassword());
+    }
+
+    @Test
+    void testUpdatePasswordStoresNewHash()
+    {
+        UserDetails alice = users.loadUserByUsername("alice");
+        UserDetails updated = users.updatePassword(alice, "{noop}rehashed");
+
+        assertEquals("{noop}rehashed", updated.getPassword());
+        assertEquals(alice.getAuthorities(), updated.getAuthorities());
+        assertEquals("{noop}rehashed", database.loadUserByUsername("alice").getPassword());
+        assertEquals("{noop}rehashed", users.loadUserByUsername("alice").getPassword());
+    }
+}
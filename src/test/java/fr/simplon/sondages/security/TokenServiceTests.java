@@ -0,0 +1,62 @@
+package fr.simplon.sondages.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests des jetons signés de l'API.
+ */
+class TokenServiceTests
+{
+    private static final byte[]  SECRET = "0123456789abcdef0123456789abcdef".getBytes();
+    private static final Instant NOW    = Instant.parse("2026-01-15T12:00:00Z");
+
+    private static final Authentication ADMIN = UsernamePasswordAuthenticationToken.authenticated(
+            "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER"));
+
+    private static TokenService service(Instant now)
+    {
+        return new TokenService(SECRET, Duration.ofHours(1), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testVerifyReturnsUserAndRoles()
+    {
+        TokenService.Token token = service(NOW).issue(ADMIN);
+        assertEquals(NOW.plus(Duration.ofHours(1)), token.expiresAt());
+
+        Authentication authentication = service(NOW.plusSeconds(60)).verify(token.value()).orElseThrow();
+        assertEquals("admin", authentication.getName());
+        assertTrue(authentication.isAuthenticated());
+        assertEquals(Set.of("ROLE_ADMIN", "ROLE_USER"), AuthorityUtils.authorityListToSet(authentication.getAuthorities()));
+    }
+
+    @Test
+    void testRejectsExpiredTamperedAndForeignTokens()
+    {
+        String token = service(NOW).issue(ADMIN).value();
+        assertTrue(service(NOW.plus(Duration.ofHours(1))).verify(token).isEmpty());
+
+        // Rôles remplacés par ceux d'un autre jeton
+        String user = service(NOW).issue(UsernamePasswordAuthenticationToken.authenticated(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_USER"))).value();
+        String[] parts = token.split("\\.");
+        String[] userParts = user.split("\\.");
+        assertTrue(service(NOW).verify(String.join(".", userParts[0], userParts[1], userParts[2], parts[3])).isEmpty());
+
+        assertTrue(new TokenService("fedcba9876543210fedcba9876543210".getBytes(), Duration.ofHours(1),
+                                    Clock.fixed(NOW, ZoneOffset.UTC)).verify(token).isEmpty());
+        assertTrue(service(NOW).verify("n'importe quoi").isEmpty());
+        assertTrue(service(NOW).verify("a.b.c.%%").isEmpty());
+    }
+}
@@ -0,0 +1,124 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.BallotRepository;
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dto.PollResults;
+import fr.simplon.sondages.entity.Ballot;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.tally.BallotCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du dépouillement des sondages à choix et à classement, sur une base H2 en mode MySQL. Les bulletins sont
+ * enregistrés hors transaction de test : le dépouillement les relit dans sa propre transaction.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ballots;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(BallotService.class)
+class BallotServiceTests
+{
+    @Autowired
+    private BallotService service;
+
+    @Autowired
+    private SondageRepository sondages;
+
+    @Autowired
+    private BallotRepository ballots;
+
+    @BeforeEach
+    public void init()
+    {
+        ballots.deleteAll();
+    }
+
+    private Sondage createSondage(Sondage.Kind kind, String... options)
+    {
+        Sondage sondage = new Sondage(null, "Dépouillement", "Question ?", LocalDateTime.now(),
+                                      LocalDateTime.now().plusDays(1), "JUnit");
+        sondage.setKind(kind);
+        sondage.setOptions(List.of(options));
+        return sondages.save(sondage);
+    }
+
+    private void vote(Sondage sondage, int voterId, int... choices)
+    {
+        ballots.save(new Ballot(sondage.getId(), voterId,
+                                BallotCodec.encode(sondage.getKind(), sondage.getOptions().size(), choices),
+                                LocalDateTime.now()));
+    }
+
+    private static List<Long> counts(PollResults results)
+    {
+        return results.options().stream().map(PollResults.OptionResult::count).toList();
+    }
+
+    @Test
+    void testChoicesAreCountedIncrementally()
+    {
+        Sondage sondage = createSondage(Sondage.Kind.MULTIPLE_CHOICE, "Pizza", "Salade", "Soupe");
+        vote(sondage, 1, 0, 2);
+        vote(sondage, 2, 0);
+
+        PollResults results = service.results(sondage.getId()).orElseThrow();
+        assertEquals(2, results.ballots());
+        assertEquals(List.of(2L, 0L, 1L), counts(results));
+        assertEquals("Soupe", results.options().get(2).label());
+
+        // Bulletin enregistré par cette instance : relu à la demande suivante, sans recompter les précédents
+        vote(sondage, 3, 1);
+        service.cast(sondage.getId());
+        results = service.results(sondage.getId()).orElseThrow();
+        assertEquals(3, results.ballots());
+        assertEquals(List.of(2L, 1L, 1L), counts(results));
+    }
+
+    @Test
+    void testRankedPollHasRunoffWinner()
+    {
+        Sondage sondage = createSondage(Sondage.Kind.RANKED, "A", "B", "C");
+        vote(sondage, 1, 0, 1);
+        vote(sondage, 2, 0, 2);
+        vote(sondage, 3, 1, 0);
+        vote(sondage, 4, 1, 2);
+        vote(sondage, 5, 2, 1);
+
+        PollResults results = service.results(sondage.getId()).orElseThrow();
+        assertEquals(List.of(2L, 2L, 1L), counts(results));
+        // C éliminée au premier tour, sa voix passe à B
+        assertEquals(1, results.winner());
+        assertEquals(2, results.rounds().size());
+    }
+
+    @Test
+    void testUnknownAndYesNoPolls()
+    {
+        assertTrue(service.results(Long.MAX_VALUE).isEmpty());
+
+        Sondage yesNo = sondages.save(new Sondage(null, "Oui/non", "Question ?", LocalDateTime.now(),
+                                                  LocalDateTime.now().plusDays(1), "JUnit"));
+        assertThrows(IllegalArgumentException.class, () -> service.results(yesNo.getId()));
+    }
+}
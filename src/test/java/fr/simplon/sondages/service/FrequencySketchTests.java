@@ -0,0 +1,55 @@
+package fr.simplon.sondages.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de l'estimation des fréquences d'accès ({@link FrequencySketch}).
+ */
+class FrequencySketchTests
+{
+    @Test
+    void testHotKeysStandOutOfSkewedTraffic()
+    {
+        FrequencySketch sketch = new FrequencySketch(1000);
+        Random random = new Random(42);
+        // 80 % des accès sur 5 sondages, le reste réparti sur 5000
+        for (int i = 0; i < 5000; i++)
+        {
+            long key = random.nextInt(10) < 8 ? random.nextInt(5) : 100 + random.nextInt(5000);
+            sketch.increment(key);
+        }
+        for (long hot = 0; hot < 5; hot++)
+        {
+            assertTrue(sketch.frequency(hot) >= 8, "Sondage chaud " + hot + " : " + sketch.frequency(hot));
+        }
+        int cold = 0;
+        for (long key = 100; key < 5100; key++)
+        {
+            cold = Math.max(cold, sketch.frequency(key));
+        }
+        assertTrue(cold < sketch.frequency(0), "Sondage froid surestimé : " + cold);
+    }
+
+    @Test
+    void testFrequencyIsCappedAndAges()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 100; i++)
+        {
+            sketch.increment(1L);
+        }
+        assertEquals(15, sketch.frequency(1L));
+        assertEquals(0, sketch.frequency(2L));
+
+        // 160 accès (10 × capacité) font diviser les compteurs par deux : la clé 1 n'est plus demandée
+        for (int i = 0; i < 160; i++)
+        {
+            sketch.increment(2L + i % 2);
+        }
+        assertTrue(sketch.frequency(1L) < 15, String.valueOf(sketch.frequency(1L)));
+    }
+}
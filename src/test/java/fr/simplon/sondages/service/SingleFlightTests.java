@@ -0,0 +1,92 @@
+package fr.simplon.sondages.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du regroupement des chargements simultanés.
+ */
+class SingleFlightTests
+{
+    private static final int CALLERS = 16;
+
+    private final SingleFlight<Long, String> flight = new SingleFlight<>();
+
+    @Test
+    void testConcurrentCallersShareOneLoad() throws Exception
+    {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try
+        {
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++)
+            {
+                results.add(CompletableFuture.supplyAsync(() -> flight.load(42L, () -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return "sondage 42";
+                }), executor));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // Laisse le temps aux autres appelants d'arriver pendant le chargement
+            while (flight.coalesced() < CALLERS - 1)
+            {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (CompletableFuture<String> result : results)
+            {
+                assertEquals("sondage 42", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(1, flight.executed());
+            assertEquals(CALLERS - 1, flight.coalesced());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // Rien n'est gardé après le chargement
+        assertEquals("rechargé", flight.load(42L, () -> "rechargé"));
+        assertEquals(2, flight.executed());
+    }
+
+    @Test
+    void testFailureIsPropagatedAndNotKept()
+    {
+        IllegalStateException failure = new IllegalStateException("BDD indisponible");
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> flight.load(1L, () -> {
+            throw failure;
+        })));
+        assertEquals("ok", flight.load(1L, () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.entity.OutboxEvent;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du compteur de sondages en mémoire, avec un repository simulé par Mockito.
+ */
+class SondageCounterTests
+{
+    private final SondageRepository repository = Mockito.mock(SondageRepository.class);
+
+    private static OutboxEvent event(OutboxEvent.Type type)
+    {
+        return new OutboxEvent(type, 1L, null, "{}", LocalDateTime.now(), "autre");
+    }
+
+    @Test
+    void testCountIsReadOnceThenKeptUpToDate()
+    {
+        Mockito.when(repository.count()).thenReturn(10L);
+        SondageCounter counter = new SondageCounter(repository, Duration.ofHours(1));
+
+        // Pas encore lu : les créations ne sont pas comptées à partir d'une valeur inconnue
+        counter.increment();
+        assertEquals(10L, counter.count());
+        counter.increment();
+        counter.increment();
+        counter.decrement();
+        assertEquals(11L, counter.count());
+        Mockito.verify(repository, Mockito.times(1)).count();
+    }
+
+    @Test
+    void testRemoteChangesAreCounted()
+    {
+        Mockito.when(repository.count()).thenReturn(1L);
+        SondageCounter counter = new SondageCounter(repository, Duration.ofHours(1));
+        counter.count();
+
+        counter.onRemoteChanges(List.of(event(OutboxEvent.Type.SONDAGE_CREATED),
+                                        event(OutboxEvent.Type.SONDAGE_CREATED),
+                                        event(OutboxEvent.Type.VOTE_CREATED)));
+        assertEquals(3L, counter.count());
+        counter.onRemoteChanges(List.of(event(OutboxEvent.Type.SONDAGE_DELETED),
+                                        event(OutboxEvent.Type.SONDAGE_DELETED),
+                                        event(OutboxEvent.Type.SONDAGE_DELETED),
+                                        event(OutboxEvent.Type.SONDAGE_DELETED)));
+        // Jamais négatif
+        assertEquals(0L, counter.count());
+    }
+
+    @Test
+    void testStaleCountIsReadAgain()
+    {
+        Mockito.when(repository.count()).thenReturn(5L, 7L);
+        SondageCounter counter = new SondageCounter(repository, Duration.ZERO);
+
+        assertEquals(5L, counter.count());
+        // Sondages ajoutés directement en BDD : corrigé à la relecture suivante
+        assertEquals(7L, counter.count());
+    }
+}
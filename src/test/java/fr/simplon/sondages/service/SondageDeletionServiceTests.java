@@ -0,0 +1,155 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.BallotRepository;
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.dao.VoterRepository;
+import fr.simplon.sondages.dto.DeletionJobStatus;
+import fr.simplon.sondages.entity.Ballot;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.entity.Vote;
+import fr.simplon.sondages.entity.Voter;
+import fr.simplon.sondages.outbox.OutboxWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Suppression de sondages sur une base H2, par lots de 2 votes ou bulletins, en tâche de fond au-delà de 3.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:deletion;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SondageDeletionServiceTests
+{
+    @Autowired
+    private SondageRepository sondages;
+
+    @Autowired
+    private VoteRepository votes;
+
+    @Autowired
+    private VoterRepository voters;
+
+    @Autowired
+    private BallotRepository ballots;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SondageSearchService   searchService;
+    private SondageCounter         counter;
+    private OutboxWriter           outbox;
+    private SondageDeletionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void init()
+    {
+        votes.deleteAll();
+        ballots.deleteAll();
+        voters.deleteAll();
+        sondages.deleteAll();
+        searchService = Mockito.mock(SondageSearchService.class);
+        counter = Mockito.mock(SondageCounter.class);
+        outbox = Mockito.mock(OutboxWriter.class);
+        // Table des votes non partitionnée : pas de maintenance des partitions
+        service = new SondageDeletionService(sondages, votes, ballots, searchService, counter,
+                                             Mockito.mock(HomePageSnapshots.class), Mockito.mock(HotSondages.class),
+                                             outbox, transactionManager, Mockito.mock(ObjectProvider.class), 2, 3);
+    }
+
+    @AfterEach
+    public void shutdown()
+    {
+        service.shutdown();
+    }
+
+    private Sondage createSondage(int voteCount, int ballotCount)
+    {
+        Sondage sondage = sondages.save(new Sondage(null, "Suppression", "Question ?", LocalDateTime.now(),
+                                                    LocalDateTime.now().plusDays(1), "JUnit"));
+        for (int i = 0; i < voteCount; i++)
+        {
+            Voter voter = voters.save(new Voter(null, "votant-" + sondage.getId() + "-" + i));
+            votes.save(new Vote(null, sondage, i % 2 == 0, LocalDateTime.now(), voter));
+        }
+        for (int i = 0; i < ballotCount; i++)
+        {
+            ballots.save(new Ballot(sondage.getId(), i, new byte[]{1}, LocalDateTime.now()));
+        }
+        return sondage;
+    }
+
+    @Test
+    void testDeletionInSeveralChunks()
+    {
+        Sondage sondage = createSondage(5, 3);
+        Sondage other = createSondage(1, 1);
+
+        assertTrue(service.delete(sondage.getId()));
+        assertFalse(sondages.existsById(sondage.getId()));
+        assertEquals(0, votes.countBySondageId(sondage.getId()));
+        assertEquals(0, ballots.countBySondageId(sondage.getId()));
+        // Les votes des autres sondages ne sont pas touchés
+        assertEquals(1, votes.countBySondageId(other.getId()));
+        assertEquals(1, ballots.countBySondageId(other.getId()));
+        Mockito.verify(outbox).sondageDeleted(sondage.getId());
+        Mockito.verify(searchService).removeSondage(sondage.getId());
+        Mockito.verify(counter).decrement();
+
+        // Sondage déjà supprimé
+        assertFalse(service.delete(sondage.getId()));
+        Mockito.verify(counter, Mockito.times(1)).decrement();
+    }
+
+    @Test
+    void testAsyncThresholdCountsVotesAndBallots()
+    {
+        assertFalse(service.requiresAsyncDeletion(createSondage(3, 0).getId()));
+        assertFalse(service.requiresAsyncDeletion(createSondage(2, 1).getId()));
+        assertTrue(service.requiresAsyncDeletion(createSondage(3, 1).getId()));
+        assertTrue(service.requiresAsyncDeletion(createSondage(0, 4).getId()));
+    }
+
+    @Test
+    void testAsyncJobStatus() throws InterruptedException
+    {
+        Sondage sondage = createSondage(5, 3);
+
+        DeletionJobStatus status = service.deleteAsync(sondage.getId());
+        assertEquals(sondage.getId(), status.sondageId());
+        assertNull(status.finishedAt());
+        for (int i = 0; i < 200 && status.finishedAt() == null; i++)
+        {
+            Thread.sleep(25);
+            status = service.getJob(status.id()).orElseThrow();
+        }
+        assertEquals(DeletionJobStatus.State.DONE, status.state());
+        assertEquals(8, status.deletedVotes());
+        assertFalse(sondages.existsById(sondage.getId()));
+
+        assertTrue(service.getJob("inconnue").isEmpty());
+    }
+}
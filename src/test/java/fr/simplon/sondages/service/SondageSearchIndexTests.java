@@ -0,0 +1,113 @@
+package fr.simplon.sondages.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires de l'index inversé utilisé pour la recherche de sondages.
+ */
+class SondageSearchIndexTests
+{
+    private SondageSearchIndex index;
+
+    @BeforeEach
+    public void init()
+    {
+        index = new SondageSearchIndex();
+        index.index(1L, "Vacances d'été", "Voulez-vous plus de congés ?");
+        index.index(2L, "Cantine", "Faut-il un menu végétarien à la cantine ?");
+        index.index(3L, "Télétravail", "Êtes-vous pour deux jours de télétravail ?");
+    }
+
+    @Test
+    void testTokenizeFoldsAccentsAndIgnoresStopWords()
+    {
+        assertEquals(List.of("ete", "coeur", "teletravail"), SondageSearchIndex.tokenize("L'Été du CŒUR et le télétravail"));
+        assertTrue(SondageSearchIndex.tokenize(null).isEmpty());
+        assertTrue(SondageSearchIndex.tokenize("  de la  ").isEmpty());
+    }
+
+    @Test
+    void testSearchIgnoresAccentsAndCase()
+    {
+        assertEquals(List.of(3L), index.search("TELETRAVAIL", 0, 10).ids());
+        assertEquals(List.of(2L), index.search("végétarien", 0, 10).ids());
+        assertEquals(List.of(1L), index.search("ETE", 0, 10).ids());
+    }
+
+    @Test
+    void testQuestionRanksHigherThanDescription()
+    {
+        index.index(4L, "Menu", "Aimez-vous le poisson ?");
+        index.index(5L, "Poisson", "Faut-il changer de fournisseur ?");
+
+        SondageSearchIndex.Hits hits = index.search("poisson", 0, 10);
+        assertEquals(List.of(4L, 5L), hits.ids());
+        assertEquals(2, hits.totalHits());
+    }
+
+    @Test
+    void testDocumentsMatchingMoreTermsComeFirst()
+    {
+        SondageSearchIndex.Hits hits = index.search("cantine menu vacances", 0, 10);
+        assertEquals(List.of(2L, 1L), hits.ids());
+    }
+
+    @Test
+    void testPagination()
+    {
+        for (long id = 10; id < 35; id++)
+        {
+            index.index(id, "Sondage numéro " + id, "Question commune ?");
+        }
+
+        SondageSearchIndex.Hits first = index.search("commune", 0, 10);
+        SondageSearchIndex.Hits third = index.search("commune", 2, 10);
+        SondageSearchIndex.Hits beyond = index.search("commune", 3, 10);
+
+        assertEquals(25, first.totalHits());
+        assertEquals(10, first.ids().size());
+        assertEquals(5, third.ids().size());
+        assertTrue(beyond.ids().isEmpty());
+        assertEquals(25, beyond.totalHits());
+        // pPage * pSize dépasse Integer.MAX_VALUE : page vide, pas de débordement
+        assertTrue(index.search("commune", Integer.MAX_VALUE, 10).ids().isEmpty());
+        // À score égal, le dernier sondage indexé arrive en premier
+        assertEquals(34L, first.ids().get(0));
+        assertEquals(10L, third.ids().get(4));
+    }
+
+    @Test
+    void testUpdateAndRemove()
+    {
+        index.index(2L, "Cafétéria", "Faut-il ouvrir plus tôt ?");
+        assertTrue(index.search("cantine", 0, 10).ids().isEmpty());
+        assertEquals(List.of(2L), index.search("cafeteria", 0, 10).ids());
+
+        index.remove(2L);
+        assertTrue(index.search("cafeteria", 0, 10).ids().isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testCompactionKeepsResults()
+    {
+        for (long id = 100; id < 5100; id++)
+        {
+            index.index(id, "Lot " + id, "Question temporaire ?");
+        }
+        for (long id = 100; id < 5000; id++)
+        {
+            index.remove(id);
+        }
+
+        SondageSearchIndex.Hits hits = index.search("temporaire", 0, 200);
+        assertEquals(100, hits.totalHits());
+        assertEquals(5099L, hits.ids().get(0));
+        assertEquals(List.of(3L), index.search("teletravail", 0, 10).ids());
+    }
+}
@@ -0,0 +1,136 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.SondageRepository;
+import fr.simplon.sondages.dao.VoteRepository;
+import fr.simplon.sondages.dao.VoterRepository;
+import fr.simplon.sondages.dto.RecountJobStatus;
+import fr.simplon.sondages.dto.VoteTally;
+import fr.simplon.sondages.entity.Sondage;
+import fr.simplon.sondages.entity.Vote;
+import fr.simplon.sondages.entity.Voter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recomptage sur une base H2 de décomptes servis devenus faux : votes supprimés directement en BDD sans passer par
+ * {@link VoteTallyService}.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recount;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VoteRecountServiceTests
+{
+    @Autowired
+    private SondageRepository sondages;
+
+    @Autowired
+    private VoteRepository votes;
+
+    @Autowired
+    private VoterRepository voters;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private VoteTallyService   tallies;
+    private VoteRecountService recount;
+
+    @BeforeEach
+    public void init()
+    {
+        votes.deleteAll();
+        voters.deleteAll();
+        sondages.deleteAll();
+        tallies = new VoteTallyService(votes, new SimpleMeterRegistry(), 100, Duration.ofHours(1));
+        recount = new VoteRecountService(jdbcTemplate, tallies, Mockito.mock(HotSondages.class),
+                                         Mockito.mock(HomePageSnapshots.class), 2, 2, 100);
+    }
+
+    private Sondage createSondage()
+    {
+        return sondages.save(new Sondage(null, "Sondage", "Question ?", LocalDateTime.now(),
+                                         LocalDateTime.now().plusDays(1), "JUnit"));
+    }
+
+    private Vote vote(Sondage sondage, String name, boolean value)
+    {
+        Voter voter = voters.save(new Voter(null, name));
+        return votes.save(new Vote(null, sondage, value, LocalDateTime.now(), voter));
+    }
+
+    private RecountJobStatus run(boolean fix) throws InterruptedException
+    {
+        String id = recount.start(fix).orElseThrow().id();
+        RecountJobStatus status = recount.getJob(id).orElseThrow();
+        for (int i = 0; i < 200 && status.finishedAt() == null; i++)
+        {
+            Thread.sleep(25);
+            status = recount.getJob(id).orElseThrow();
+        }
+        assertEquals(RecountJobStatus.State.DONE, status.state());
+        return status;
+    }
+
+    @Test
+    void testWrongServedTalliesAreReportedAndFixed() throws InterruptedException
+    {
+        Sondage correct = createSondage();
+        Sondage partlyDeleted = createSondage();
+        Sondage allDeleted = createSondage();
+        vote(correct, "a", true);
+        vote(correct, "b", false);
+        vote(partlyDeleted, "c", true);
+        Vote lost = vote(partlyDeleted, "d", true);
+        Vote alone = vote(allDeleted, "e", false);
+        tallies.tallies(List.of(correct.getId(), partlyDeleted.getId(), allDeleted.getId()));
+
+        // Incident : votes supprimés sans que les décomptes en mémoire soient oubliés
+        jdbcTemplate.update("DELETE FROM vote WHERE id IN (?, ?)", lost.getId(), alone.getId());
+        assertEquals(new VoteTally(2, 0), tallies.tally(partlyDeleted.getId()));
+        assertEquals(new VoteTally(0, 1), tallies.tally(allDeleted.getId()));
+
+        RecountJobStatus report = run(false);
+        assertEquals(3, report.scannedVotes());
+        assertEquals(2, report.differenceCount());
+        Map<Long, RecountJobStatus.Difference> differences = report.differences().stream()//
+                .collect(Collectors.toMap(RecountJobStatus.Difference::sondageId, d -> d));
+        assertEquals(Set.of(partlyDeleted.getId(), allDeleted.getId()), differences.keySet());
+        // Sondage dont aucun vote n'a été relu : comparé quand même
+        assertEquals(VoteTally.EMPTY, differences.get(allDeleted.getId()).recounted());
+        assertEquals(new VoteTally(0, 1), differences.get(allDeleted.getId()).served());
+        // Sans correction, les décomptes faux sont toujours servis
+        assertEquals(new VoteTally(2, 0), tallies.tally(partlyDeleted.getId()));
+
+        assertEquals(2, run(true).differenceCount());
+        assertEquals(new VoteTally(1, 0), tallies.tally(partlyDeleted.getId()));
+        assertEquals(VoteTally.EMPTY, tallies.tally(allDeleted.getId()));
+        assertEquals(new VoteTally(1, 1), tallies.tally(correct.getId()));
+        assertEquals(0, run(false).differenceCount());
+    }
+}
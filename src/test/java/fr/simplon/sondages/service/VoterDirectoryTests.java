@@ -0,0 +1,58 @@
+package fr.simplon.sondages.service;
+
+import fr.simplon.sondages.dao.VoterRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la correspondance nom → identifiant des votants.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:voters;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none",
+        "spring.sql.init.mode=never",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "sondages.voters.cache-size=2"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(VoterDirectory.class)
+class VoterDirectoryTests
+{
+    @Autowired
+    private VoterDirectory directory;
+
+    @Autowired
+    private VoterRepository repository;
+
+    @Test
+    void testSameNameGivesSameId()
+    {
+        Integer alice = directory.idOf("Alice");
+        Integer bob = directory.idOf("Bob");
+
+        assertNotEquals(alice, bob);
+        assertEquals(alice, directory.idOf("Alice"));
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    void testEvictedNamesAreReadBack()
+    {
+        Integer alice = directory.idOf("Alice");
+        directory.idOf("Bob");
+        directory.idOf("Carol");
+
+        // Alice n'est plus en mémoire (cache de 2 votants) : son identifiant est relu, pas recréé
+        assertEquals(alice, directory.idOf("Alice"));
+        assertEquals(3, repository.count());
+    }
+}
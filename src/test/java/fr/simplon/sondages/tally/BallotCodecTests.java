@@ -0,0 +1,47 @@
+package fr.simplon.sondages.tally;
+
+import fr.simplon.sondages.entity.Sondage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de l'encodage des bulletins.
+ */
+class BallotCodecTests
+{
+    @Test
+    void testChoicesAreEncodedAsBitmap()
+    {
+        byte[] single = BallotCodec.encode(Sondage.Kind.SINGLE_CHOICE, 3, new int[]{2});
+        assertArrayEquals(new byte[]{0b100}, single);
+        assertEquals(0b100L, BallotCodec.mask(single));
+        assertArrayEquals(new int[]{2}, BallotCodec.decode(Sondage.Kind.SINGLE_CHOICE, single));
+
+        // Dernière option d'un sondage de Sondage.MAX_OPTIONS options : bit de poids fort du dernier octet
+        byte[] last = BallotCodec.encode(Sondage.Kind.MULTIPLE_CHOICE, Sondage.MAX_OPTIONS,
+                                         new int[]{Sondage.MAX_OPTIONS - 1, 0});
+        assertEquals(Sondage.MAX_OPTIONS / 8, last.length);
+        assertArrayEquals(new int[]{0, Sondage.MAX_OPTIONS - 1}, BallotCodec.decode(Sondage.Kind.MULTIPLE_CHOICE, last));
+    }
+
+    @Test
+    void testRankingKeepsPreferenceOrder()
+    {
+        byte[] ranking = BallotCodec.encode(Sondage.Kind.RANKED, 5, new int[]{4, 0, 2});
+        assertArrayEquals(new byte[]{4, 0, 2}, ranking);
+        assertArrayEquals(new int[]{4, 0, 2}, BallotCodec.decode(Sondage.Kind.RANKED, ranking));
+    }
+
+    @Test
+    void testInvalidChoicesAreRejected()
+    {
+        assertThrows(IllegalArgumentException.class, () -> BallotCodec.encode(Sondage.Kind.YES_NO, 2, new int[]{0}));
+        assertThrows(IllegalArgumentException.class, () -> BallotCodec.encode(Sondage.Kind.RANKED, 3, null));
+        assertThrows(IllegalArgumentException.class, () -> BallotCodec.encode(Sondage.Kind.RANKED, 3, new int[0]));
+        assertThrows(IllegalArgumentException.class,
+                     () -> BallotCodec.encode(Sondage.Kind.SINGLE_CHOICE, 3, new int[]{-1}));
+        assertThrows(IllegalArgumentException.class,
+                     () -> BallotCodec.encode(Sondage.Kind.MULTIPLE_CHOICE, 3, new int[]{0, 2, 0}));
+    }
+}
@@ -0,0 +1,122 @@
+package fr.simplon.sondages.tally;
+
+import fr.simplon.sondages.entity.Sondage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de l'encodage des bulletins ({@link BallotCodec}) et du vote alternatif ({@link InstantRunoff}).
+ */
+class InstantRunoffTests
+{
+    @Test
+    void testBallotEncoding()
+    {
+        byte[] bitmap = BallotCodec.encode(Sondage.Kind.MULTIPLE_CHOICE, 10, new int[]{9, 0, 3});
+        assertEquals(2, bitmap.length);
+        assertArrayEquals(new int[]{0, 3, 9}, BallotCodec.decode(Sondage.Kind.MULTIPLE_CHOICE, bitmap));
+
+        byte[] ranking = BallotCodec.encode(Sondage.Kind.RANKED, 64, new int[]{63, 2});
+        assertArrayEquals(new int[]{63, 2}, BallotCodec.decode(Sondage.Kind.RANKED, ranking));
+
+        assertThrows(IllegalArgumentException.class,
+                     () -> BallotCodec.encode(Sondage.Kind.SINGLE_CHOICE, 3, new int[]{0, 1}));
+        assertThrows(IllegalArgumentException.class,
+                     () -> BallotCodec.encode(Sondage.Kind.RANKED, 3, new int[]{1, 1}));
+        assertThrows(IllegalArgumentException.class,
+                     () -> BallotCodec.encode(Sondage.Kind.MULTIPLE_CHOICE, 3, new int[]{3}));
+    }
+
+    @Test
+    void testEliminatedOptionTransfersItsBallots()
+    {
+        RankedTally tally = new RankedTally(3);
+        add(tally, 8, 0, 1);
+        add(tally, 7, 1, 0);
+        add(tally, 5, 2, 1);
+
+        InstantRunoff.Result result = InstantRunoff.run(tally.snapshot());
+
+        // Pas de majorité au premier tour : l'option 2 est éliminée, ses bulletins vont à l'option 1
+        assertEquals(1, result.winner());
+        assertEquals(2, result.rounds().size());
+        assertArrayEquals(new long[]{8, 7, 5}, result.rounds().get(0).counts());
+        assertEquals(2, result.rounds().get(0).eliminated());
+        assertArrayEquals(new long[]{8, 12, 0}, result.rounds().get(1).counts());
+    }
+
+    @Test
+    void testPartialRankingsAreExhausted()
+    {
+        RankedTally tally = new RankedTally(3);
+        add(tally, 4, 0);
+        add(tally, 3, 1);
+        add(tally, 2, 2);
+
+        InstantRunoff.Result result = InstantRunoff.run(tally.snapshot());
+
+        assertEquals(0, result.winner());
+        assertEquals(2, result.rounds().get(1).exhausted());
+    }
+
+    @Test
+    void testParallelCountMatchesSequentialCount()
+    {
+        Random random = new Random(7);
+        RankedTally tally = new RankedTally(12);
+        List<int[]> ballots = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++)
+        {
+            List<Integer> options = new ArrayList<>();
+            for (int option = 0; option < 12; option++)
+            {
+                options.add(option);
+            }
+            Collections.shuffle(options, random);
+            int[] ranking = options.subList(0, 1 + random.nextInt(4)).stream().mapToInt(Integer::intValue).toArray();
+            ballots.add(ranking);
+            tally.add(BallotCodec.encode(Sondage.Kind.RANKED, 12, ranking));
+        }
+        assertTrue(tally.snapshot().size() > InstantRunoff.THRESHOLD);
+
+        InstantRunoff.Result result = InstantRunoff.run(tally.snapshot());
+
+        // Décompte naïf de chaque tour, bulletin par bulletin
+        long eliminated = 0L;
+        for (InstantRunoff.Round round : result.rounds())
+        {
+            long[] counts = new long[12];
+            for (int[] ranking : ballots)
+            {
+                for (int option : ranking)
+                {
+                    if ((eliminated & (1L << option)) == 0L)
+                    {
+                        counts[option]++;
+                        break;
+                    }
+                }
+            }
+            assertArrayEquals(counts, round.counts());
+            if (round.eliminated() >= 0)
+            {
+                eliminated |= 1L << round.eliminated();
+            }
+        }
+        assertEquals(50_000L, tally.ballots());
+    }
+
+    private static void add(RankedTally tally, int count, int... ranking)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            tally.add(BallotCodec.encode(Sondage.Kind.RANKED, 3, ranking));
+        }
+    }
+}
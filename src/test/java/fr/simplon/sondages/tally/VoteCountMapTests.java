@@ -0,0 +1,55 @@
+package fr.simplon.sondages.tally;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la table des décomptes par sondage utilisée par le recomptage ({@link VoteCountMap}).
+ */
+class VoteCountMapTests
+{
+    @Test
+    void testMergedPartialCountsMatchReference()
+    {
+        Random random = new Random(3);
+        VoteCountMap left = new VoteCountMap();
+        VoteCountMap right = new VoteCountMap();
+        Map<Long, long[]> reference = new HashMap<>();
+        // Deux moitiés de la table des votes comptées séparément, comme deux intervalles du recomptage
+        for (int i = 0; i < 200_000; i++)
+        {
+            long sondageId = 1 + random.nextInt(20_000);
+            boolean value = random.nextBoolean();
+            (i % 2 == 0 ? left : right).add(sondageId, value, 1L);
+            reference.computeIfAbsent(sondageId, id -> new long[2])[value ? 0 : 1]++;
+        }
+
+        left.addAll(right);
+
+        assertEquals(reference.size(), left.size());
+        reference.forEach((id, counts) -> {
+            assertEquals(counts[0], left.countTrue(id), "Pour, sondage " + id);
+            assertEquals(counts[1], left.countFalse(id), "Contre, sondage " + id);
+        });
+        long[] visited = new long[1];
+        left.forEach((id, countTrue, countFalse) -> visited[0] += countTrue + countFalse);
+        assertEquals(200_000L, visited[0]);
+    }
+
+    @Test
+    void testUnknownAndInvalidIds()
+    {
+        VoteCountMap counts = new VoteCountMap();
+        counts.add(42L, true, 3L);
+
+        assertEquals(3L, counts.countTrue(42L));
+        assertEquals(0L, counts.countFalse(42L));
+        assertEquals(0L, counts.countTrue(43L));
+        assertThrows(IllegalArgumentException.class, () -> counts.add(0L, true, 1L));
+    }
+}
@@ -0,0 +1,87 @@
+package fr.simplon.sondages.throttling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fr.simplon.sondages.throttling.ConcurrencyLimiter.Priority.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la limite adaptative de requêtes simultanées.
+ */
+class ConcurrencyLimiterTests
+{
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private ConcurrencyLimiter limiter(int initialLimit)
+    {
+        return new ConcurrencyLimiter(initialLimit, 2, 100, Duration.ofMillis(100), now::get);
+    }
+
+    @Test
+    void testSheddableRequestsAreRefusedFirst()
+    {
+        ConcurrencyLimiter limiter = limiter(10);
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            permits.add(limiter.tryAcquire(SHEDDABLE).orElseThrow());
+        }
+        assertTrue(limiter.tryAcquire(SHEDDABLE).isEmpty());
+
+        for (int i = 0; i < 4; i++)
+        {
+            permits.add(limiter.tryAcquire(NORMAL).orElseThrow());
+        }
+        assertTrue(limiter.tryAcquire(NORMAL).isEmpty());
+
+        permits.add(limiter.tryAcquire(CRITICAL).orElseThrow());
+        assertTrue(limiter.tryAcquire(CRITICAL).isEmpty());
+        assertEquals(10, limiter.getInFlight());
+
+        permits.forEach(ConcurrencyLimiter.Permit::release);
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire(SHEDDABLE).isPresent());
+    }
+
+    @Test
+    void testLimitGrowsWhenFastAndShrinksWhenSlow()
+    {
+        ConcurrencyLimiter limiter = limiter(10);
+        for (int round = 0; round < 50; round++)
+        {
+            List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.getLimit(); i++)
+            {
+                permits.add(limiter.tryAcquire(CRITICAL).orElseThrow());
+            }
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+            permits.forEach(ConcurrencyLimiter.Permit::release);
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 10, "limite " + grown);
+
+        // Une série de requêtes lentes ne réduit la limite qu'une fois
+        List<ConcurrencyLimiter.Permit> slow = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            slow.add(limiter.tryAcquire(CRITICAL).orElseThrow());
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        slow.forEach(ConcurrencyLimiter.Permit::release);
+        assertEquals((int) (grown * 0.9), limiter.getLimit(), 1);
+
+        for (int i = 0; i < 30; i++)
+        {
+            ConcurrencyLimiter.Permit permit = limiter.tryAcquire(CRITICAL).orElseThrow();
+            now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            permit.release();
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+}
@@ -0,0 +1,77 @@
+package fr.simplon.sondages.throttling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests des seaux à jetons de {@link RateLimiter}.
+ */
+class RateLimiterTests
+{
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void testBurstThenRefill()
+    {
+        RateLimiter limiter = new RateLimiter(6, Duration.ofMinutes(1), 100, now::get);
+        for (int i = 0; i < 6; i++)
+        {
+            assertEquals(0L, limiter.tryAcquire("alice"));
+        }
+        long wait = limiter.tryAcquire("alice");
+        assertEquals(TimeUnit.SECONDS.toNanos(10), wait);
+        assertEquals(0L, limiter.tryAcquire("bob"));
+
+        now.addAndGet(wait);
+        assertEquals(0L, limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("alice") > 0L);
+    }
+
+    @Test
+    void testIdleKeysAreSweptWhenFull()
+    {
+        RateLimiter limiter = new RateLimiter(2, Duration.ofSeconds(2), 2, now::get);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        assertEquals(2, limiter.size());
+
+        // "a" et "b" sont encore actifs : "c" n'est pas suivi
+        assertEquals(0L, limiter.tryAcquire("c"));
+        assertEquals(2, limiter.size());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0L, limiter.tryAcquire("c"));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void testConcurrentAcquisitionsNeverExceedCapacity()
+    {
+        RateLimiter limiter = new RateLimiter(1000, Duration.ofHours(1), 100, now::get);
+        AtomicInteger accepted = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++)
+        {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 500; i++)
+                {
+                    if (limiter.tryAcquire("sondage-1") == 0L)
+                    {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        futures.forEach(CompletableFuture::join);
+        assertEquals(1000, accepted.get());
+    }
+}
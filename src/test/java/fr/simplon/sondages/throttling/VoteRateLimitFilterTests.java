@@ -0,0 +1,52 @@
+package fr.simplon.sondages.throttling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la limite de débit par sondage de {@link VoteRateLimitFilter}.
+ */
+class VoteRateLimitFilterTests
+{
+    private final VoteRateLimitFilter filter = new VoteRateLimitFilter(
+            new RateLimiter(100, Duration.ofMinutes(1), 100), new RateLimiter(100, Duration.ofMinutes(1), 100),
+            new RateLimiter(1, Duration.ofMinutes(1), 100), new SimpleMeterRegistry());
+
+    private int post(String path) throws Exception
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    @Test
+    void testSondageIdIsParsed()
+    {
+        assertEquals(1L, VoteRateLimitFilter.sondageId("/votes/1"));
+        assertEquals(1L, VoteRateLimitFilter.sondageId("/votes/001"));
+        assertEquals(1L, VoteRateLimitFilter.sondageId("/api/sondages/+1/ballots"));
+        assertNull(VoteRateLimitFilter.sondageId("/votes/abc"));
+        assertNull(VoteRateLimitFilter.sondageId("/api/sondages/1"));
+    }
+
+    @Test
+    void testSpellingsOfOneSondageShareItsBucket() throws Exception
+    {
+        assertEquals(200, post("/votes/1"));
+        assertEquals(429, post("/votes/01"));
+        assertEquals(429, post("/api/sondages/+1/ballots"));
+        assertEquals(200, post("/votes/2"));
+        // Identifiant invalide (400 dans le contrôleur) : pas de seau par sondage
+        assertEquals(200, post("/votes/abc"));
+        assertEquals(200, post("/votes/abc"));
+    }
+}
@@ -0,0 +1,114 @@
+package fr.simplon.sondages.web;
+
+import fr.simplon.sondages.service.HomePageSnapshots;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la page d'accueil précalculée pour les visiteurs anonymes.
+ */
+class HomePageSnapshotFilterTests
+{
+    private final HomePageSnapshots      snapshots = new HomePageSnapshots(2, Duration.ofMinutes(1));
+    private final HomePageSnapshotFilter filter    = new HomePageSnapshotFilter(snapshots);
+    private final AtomicInteger          renders   = new AtomicInteger();
+
+    private final FilterChain chain = (request, response) -> {
+        response.setContentType("text/html;charset=UTF-8");
+        response.getWriter().write("<html>rendu " + renders.incrementAndGet() + "</html>");
+    };
+
+    @AfterEach
+    public void shutdown()
+    {
+        snapshots.shutdown();
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws Exception
+    {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest home(String page)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.setServletPath("/");
+        if (page != null)
+        {
+            request.addParameter("page", page);
+        }
+        return request;
+    }
+
+    @Test
+    void testAnonymousRequestsShareTheRenderedPage() throws Exception
+    {
+        assertEquals("<html>rendu 1</html>", get(home(null)).getContentAsString());
+        MockHttpServletResponse second = get(home("0"));
+        assertEquals("<html>rendu 1</html>", second.getContentAsString());
+        assertEquals("text/html;charset=UTF-8", second.getContentType());
+        assertEquals(1, renders.get());
+
+        // Page suivante : calculée séparément
+        assertEquals("<html>rendu 2</html>", get(home("1")).getContentAsString());
+        // Au-delà des pages précalculées, ou avec d'autres paramètres : rendu à chaque fois
+        get(home("2"));
+        get(home("2"));
+        MockHttpServletRequest sized = home("0");
+        sized.addParameter("size", "50");
+        get(sized);
+        assertEquals(5, renders.get());
+    }
+
+    @Test
+    void testUsersWithCookiesOrTokensAreNotServedSnapshots() throws Exception
+    {
+        get(home(null));
+        MockHttpServletRequest withCookie = home(null);
+        withCookie.setCookies(new Cookie("JSESSIONID", "abc"));
+        MockHttpServletRequest withToken = home(null);
+        withToken.addHeader("Authorization", "Bearer abc");
+
+        assertEquals("<html>rendu 2</html>", get(withCookie).getContentAsString());
+        assertEquals("<html>rendu 3</html>", get(withToken).getContentAsString());
+        assertEquals("<html>rendu 1</html>", get(home(null)).getContentAsString());
+    }
+
+    @Test
+    void testInvalidationKeepsStalePageUntilRefresh() throws Exception
+    {
+        long generation = snapshots.generation();
+        snapshots.storeModel(0, Map.of("page", 0), generation, null);
+        get(home(null));
+        assertNotNull(snapshots.model(0));
+
+        snapshots.invalidate();
+        assertNull(snapshots.model(0));
+        assertEquals("<html>rendu 1</html>", get(home(null)).getContentAsString());
+
+        // Une page calculée avant l'invalidation n'est pas enregistrée
+        snapshots.storeHtml(0, new HomePageSnapshots.Html(new byte[0], "text/html"), generation);
+        assertEquals("<html>rendu 1</html>", get(home(null)).getContentAsString());
+    }
+
+    @Test
+    void testSnapshotPageParameters()
+    {
+        assertEquals(0, HomePageSnapshotFilter.snapshotPage(Map.of()));
+        assertEquals(1, HomePageSnapshotFilter.snapshotPage(Map.of("page", new String[]{"1"})));
+        assertEquals(-1, HomePageSnapshotFilter.snapshotPage(Map.of("page", new String[]{"x"})));
+        assertEquals(-1, HomePageSnapshotFilter.snapshotPage(Map.of("slice", new String[]{"true"})));
+    }
+}
@@ -0,0 +1,180 @@
+package fr.simplon.sondages.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests des clés d'idempotence sur les {@code POST}.
+ */
+class IdempotencyFilterTests
+{
+    private final AtomicInteger calls  = new AtomicInteger();
+    private final AtomicInteger status = new AtomicInteger(201);
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(
+            new IdempotencyStore(Duration.ofHours(1), 1_000_000), 100, new SimpleMeterRegistry());
+
+    private final FilterChain chain = (request, response) -> {
+        int call = calls.incrementAndGet();
+        HttpServletResponse http = (HttpServletResponse) response;
+        http.setStatus(status.get());
+        http.setHeader("Location", "/api/sondages/" + call);
+        http.setContentType("application/json");
+        http.getWriter().write("{\"id\":" + call + "}");
+    };
+
+    private MockHttpServletResponse post(String key) throws IOException, ServletException
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/sondages");
+        if (key != null)
+        {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    @Test
+    void testRepeatedKeyReturnsOriginalResponse() throws Exception
+    {
+        MockHttpServletResponse first = post("abc");
+        MockHttpServletResponse second = post("abc");
+
+        assertEquals(1, calls.get());
+        assertEquals(201, second.getStatus());
+        assertEquals("{\"id\":1}", second.getContentAsString());
+        assertEquals("/api/sondages/1", second.getHeader("Location"));
+        assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+
+        post("def");
+        post(null);
+        post(null);
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void testFormParameterIsAccepted() throws Exception
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/votes/1");
+            request.addParameter(IdempotencyFilter.PARAMETER, "vote-1");
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testServerErrorsAreNotStored() throws Exception
+    {
+        status.set(503);
+        post("abc");
+        status.set(201);
+        assertEquals(201, post("abc").getStatus());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testLargeResponsesAreReplayedAsRedirect() throws Exception
+    {
+        FilterChain large = (request, response) -> {
+            calls.incrementAndGet();
+            response.getWriter().write("x".repeat(1000));
+        };
+        for (int i = 0; i < 2; i++)
+        {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/votes/7");
+            request.addHeader(IdempotencyFilter.HEADER, "big");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, large);
+            if (i == 0)
+            {
+                assertEquals(1000, response.getContentAsString().length());
+            }
+            else
+            {
+                assertEquals(303, response.getStatus());
+                assertEquals("/votes/7", response.getHeader("Location"));
+            }
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testRepeatDuringProcessingIsRejected() throws Exception
+    {
+        MockHttpServletResponse[] concurrent = new MockHttpServletResponse[1];
+        FilterChain reentrant = (request, response) -> {
+            calls.incrementAndGet();
+            concurrent[0] = post("abc");
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/sondages");
+        request.addHeader(IdempotencyFilter.HEADER, "abc");
+        filter.doFilter(request, new MockHttpServletResponse(), reentrant);
+
+        assertEquals(409, concurrent[0].getStatus());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testKeyReusedWithAnotherBodyIsRejected() throws Exception
+    {
+        FilterChain echo = (request, response) -> {
+            calls.incrementAndGet();
+            // Le corps lu pour l'empreinte reste lisible par le contrôleur
+            response.getOutputStream().write(request.getInputStream().readAllBytes());
+        };
+        String[] bodies = {"{\"question\":\"A ?\"}", "{\"question\":\"A ?\"}", "{\"question\":\"B ?\"}"};
+        MockHttpServletResponse[] responses = new MockHttpServletResponse[bodies.length];
+        for (int i = 0; i < bodies.length; i++)
+        {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/sondages");
+            request.addHeader(IdempotencyFilter.HEADER, "abc");
+            request.setContentType("application/json");
+            request.setContent(bodies[i].getBytes(StandardCharsets.UTF_8));
+            responses[i] = new MockHttpServletResponse();
+            filter.doFilter(request, responses[i], echo);
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(bodies[0], responses[0].getContentAsString());
+        assertEquals("true", responses[1].getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(422, responses[2].getStatus());
+    }
+
+    @Test
+    void testFormFieldsAreCompared() throws Exception
+    {
+        String[][] forms = {{"true", "jeton-1"}, {"true", "jeton-2"}, {"false", "jeton-1"}};
+        int[] statuses = new int[forms.length];
+        for (int i = 0; i < forms.length; i++)
+        {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/votes/1");
+            request.setContentType("application/x-www-form-urlencoded");
+            request.addParameter(IdempotencyFilter.PARAMETER, "vote-1");
+            request.addParameter("value", forms[i][0]);
+            request.addParameter("_csrf", forms[i][1]);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, chain);
+            statuses[i] = response.getStatus();
+        }
+
+        // Jeton CSRF différent : même vote, réponse d'origine ; autre valeur : refusé
+        assertArrayEquals(new int[]{201, 201, 422}, statuses);
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,93 @@
+package fr.simplon.sondages.web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests des URLs avec empreinte des ressources statiques et de leurs en-têtes de cache, dans un contexte Spring MVC
+ * réduit à {@link StaticResourcesConfiguration}.
+ */
+@SpringJUnitWebConfig(StaticResourcesConfigurationTests.WebConfig.class)
+class StaticResourcesConfigurationTests
+{
+    @Configuration
+    @EnableWebMvc
+    @Import(StaticResourcesConfiguration.class)
+    static class WebConfig
+    {
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private ResourceUrlProvider urlProvider;
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    public void init()
+    {
+        mvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    private static String md5(String path) throws IOException
+    {
+        try (InputStream in = new ClassPathResource("static" + path).getInputStream())
+        {
+            return DigestUtils.md5DigestAsHex(in);
+        }
+    }
+
+    @Test
+    void testFingerprintedUrlIsCachedForever() throws Exception
+    {
+        String url = urlProvider.getForLookupPath("/styles.css");
+        assertEquals("/styles-" + md5("/styles.css") + ".css", url);
+
+        mvc.perform(get(url))//
+                .andExpect(status().isOk())//
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"));
+        // Empreinte d'une ancienne version du fichier
+        mvc.perform(get("/styles-0123456789abcdef0123456789abcdef.css"))//
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testPlainUrlIsRevalidated() throws Exception
+    {
+        mvc.perform(get("/sondages.js"))//
+                .andExpect(status().isOk())//
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+    }
+
+    @Test
+    void testPrecompressedVariantIsServed() throws Exception
+    {
+        // Variante .gz écrite par le build (maven-antrun, phase process-resources)
+        assertTrue(new ClassPathResource("static/dates.js.gz").exists());
+        mvc.perform(get(urlProvider.getForLookupPath("/dates.js")).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))//
+                .andExpect(status().isOk())//
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))//
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING));
+    }
+}